@@ -1,5 +1,10 @@
 package be.esi.prj;
 
+import be.esi.prj.model.services.GeminiApiService;
+import be.esi.prj.model.services.GenerationCache;
+import be.esi.prj.model.services.OcrService;
+import be.esi.prj.model.services.ReviewJournal;
+import be.esi.prj.utils.IngestionExecutor;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -11,6 +16,10 @@ import java.net.URL;
 public class App extends Application{
     @Override
     public void start(Stage stage) throws Exception {
+        GeminiApiService.setGenerationCache(new GenerationCache(GenerationCache.DEFAULT_DIRECTORY,
+                GenerationCache.DEFAULT_MAX_BYTES, GenerationCache.DEFAULT_TIME_TO_LIVE));
+        // Notes restées dans le journal si l'application s'est arrêtée avant de les enregistrer
+        ReviewJournal.getInstance().recover();
         URL resource = App.class.getResource("fxml/login.fxml");
         FXMLLoader fxmlLoader = new FXMLLoader(resource);
         Parent root = fxmlLoader.load();
@@ -19,4 +28,11 @@ public class App extends Application{
         stage.setScene(scene);
         stage.show();
     }
+
+    @Override
+    public void stop() {
+        IngestionExecutor.getInstance().shutdown();
+        OcrService.getInstance().shutdown();
+        ReviewJournal.getInstance().close();
+    }
 }
@@ -8,10 +8,20 @@ import java.util.List;
  * Includes the answer, difficulty level, and related review history.
  */
 @Entity
+@Table(indexes = {
+        // Questions dues d'un dossier et décompte par difficulté (FolderRepository)
+        @Index(name = "idx_question_folder_user_difficulty", columnList = "folderId, userId, difficulty")
+})
 public class Question {
 
+    /*
+     * Identifiant attribué par SQLite à l'insertion. La colonne reste un INTEGER PRIMARY KEY, alias du rowid,
+     * plutôt qu'un bigint doublé d'un index. Les insertions ne sont pas groupées en lots JDBC, mais
+     * QuizService.saveAll les regroupe dans une même transaction, ce qui évite l'essentiel du coût.
+     */
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(columnDefinition = "integer")
     private Long questionId;
 
     @Column(nullable = false)
@@ -55,10 +65,22 @@ public class Question {
         return answer;
     }
 
+    public DifficultyLevel getDifficulty() {
+        return difficulty;
+    }
+
     public void setDifficulty(DifficultyLevel difficulty) {
         this.difficulty = difficulty;
     }
 
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
     // for test
     public void setQuestionId(Long questionId) {
         this.questionId = questionId;
@@ -8,6 +8,12 @@ import java.time.LocalDate;
  * Stores the review date, next scheduled review, difficulty selected, and ease factor.
  */
 @Entity
+@Table(indexes = {
+        // Un seul historique par question et par utilisateur, retrouvé par findReviewHistory et la jointure des
+        // questions dues. Un index unique plutôt qu'une contrainte : SQLite ne sait pas l'ajouter à une table existante
+        @Index(name = "uk_review_user_question", columnList = "user_Id, question_Id", unique = true),
+        @Index(name = "idx_review_user_next_date", columnList = "user_Id, nextReviewDate")
+})
 public class ReviewHistory {
 
     @Id
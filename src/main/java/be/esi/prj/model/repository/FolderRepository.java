@@ -5,7 +5,11 @@ import be.esi.prj.model.orm.Folder;
 import be.esi.prj.model.orm.User;
 
 import jakarta.persistence.*;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Repository for accessing and manipulating Folder entities.
@@ -32,6 +36,16 @@ public class FolderRepository {
         return query.getResultList();
     }
 
+    /**
+     * Retrieves all folders owned by a specific user, given the ID of the user.
+     */
+    public List<Folder> findByUserId(int userId) {
+        TypedQuery<Folder> query = em.createQuery(
+                "SELECT f FROM Folder f WHERE f.user.id = :userId", Folder.class);
+        query.setParameter("userId", userId);
+        return query.getResultList();
+    }
+
     /**
      * Deletes the given folder from the database.
      */
@@ -69,4 +83,56 @@ public class FolderRepository {
         Long count = query.getSingleResult();
         return count != null ? count.intValue() : 0;
     }
+
+    /**
+     * Returns the total and per-difficulty question counts of a folder with a single GROUP BY query.
+     */
+    public FolderStats getFolderStats(int folderId) {
+        List<Object[]> rows = em.createQuery("""
+            SELECT q.difficulty, COUNT(q) FROM Question q
+            WHERE q.folder.folderId = :folderId
+            GROUP BY q.difficulty
+        """, Object[].class)
+                .setParameter("folderId", folderId)
+                .getResultList();
+        int total = 0;
+        Map<DifficultyLevel, Integer> counts = new EnumMap<>(DifficultyLevel.class);
+        for (Object[] row : rows) {
+            int count = ((Number) row[1]).intValue();
+            total += count;
+            if (row[0] != null) {
+                counts.put((DifficultyLevel) row[0], count);
+            }
+        }
+        return new FolderStats(folderId, total, counts);
+    }
+
+    /**
+     * Returns the stats of every folder of a user, keyed by folder ID, with a single GROUP BY query.
+     * Folders without questions are included with zero counts.
+     */
+    public Map<Integer, FolderStats> getFolderStatsByUser(User user) {
+        List<Object[]> rows = em.createQuery("""
+            SELECT f.folderId, q.difficulty, COUNT(q) FROM Folder f
+            LEFT JOIN Question q ON q.folder = f
+            WHERE f.user = :user
+            GROUP BY f.folderId, q.difficulty
+        """, Object[].class)
+                .setParameter("user", user)
+                .getResultList();
+        Map<Integer, Integer> totals = new LinkedHashMap<>();
+        Map<Integer, Map<DifficultyLevel, Integer>> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            int folderId = (Integer) row[0];
+            int count = ((Number) row[2]).intValue();
+            totals.merge(folderId, count, Integer::sum);
+            Map<DifficultyLevel, Integer> folderCounts = counts.computeIfAbsent(folderId, id -> new EnumMap<>(DifficultyLevel.class));
+            if (row[1] != null) {
+                folderCounts.put((DifficultyLevel) row[1], count);
+            }
+        }
+        Map<Integer, FolderStats> stats = new LinkedHashMap<>();
+        totals.forEach((folderId, total) -> stats.put(folderId, new FolderStats(folderId, total, counts.get(folderId))));
+        return stats;
+    }
 }
@@ -0,0 +1,37 @@
+package be.esi.prj.model.repository;
+
+import be.esi.prj.model.orm.DifficultyLevel;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Number of questions of a folder, in total and per difficulty level.
+ *
+ * @param folderId the folder
+ * @param total the number of questions of the folder
+ * @param countsByDifficulty the number of questions per difficulty; missing levels count as zero
+ */
+public record FolderStats(int folderId, int total, Map<DifficultyLevel, Integer> countsByDifficulty) {
+
+    public FolderStats {
+        Map<DifficultyLevel, Integer> counts = new EnumMap<>(DifficultyLevel.class);
+        counts.putAll(countsByDifficulty);
+        countsByDifficulty = Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Stats of a folder without any question.
+     */
+    public static FolderStats empty(int folderId) {
+        return new FolderStats(folderId, 0, Map.of());
+    }
+
+    /**
+     * Returns the number of questions of the given difficulty.
+     */
+    public int count(DifficultyLevel difficulty) {
+        return countsByDifficulty.getOrDefault(difficulty, 0);
+    }
+}
@@ -22,14 +22,47 @@ public class QuizRepository {
         em.persist(question);
     }
 
+    /**
+     * Persists several questions in the current transaction.
+     */
+    public void saveAll(List<Question> questions) {
+        questions.forEach(em::persist);
+    }
+
+    /**
+     * Retrieves the text of every question of a user followed by its answer, one string per question.
+     */
+    public List<String> getQuestionTexts(User user) {
+        return getQuestionTexts(user.getUserId());
+    }
+
+    /**
+     * Retrieves the text of every question of a user followed by its answer, given the ID of the user.
+     */
+    public List<String> getQuestionTexts(int userId) {
+        return em.createQuery("""
+            SELECT CONCAT(q.questionText, ' ', q.answer) FROM Question q
+            WHERE q.user.id = :userId
+        """, String.class)
+                .setParameter("userId", userId)
+                .getResultList();
+    }
+
     /**
      * Retrieves due questions for review in a specific folder and user.
      */
     public List<Question> getDueQuestions(int folderId, User user) {
+        return getDueQuestions(folderId, user.getUserId());
+    }
+
+    /**
+     * Retrieves due questions for review in a specific folder, given the ID of the user.
+     */
+    public List<Question> getDueQuestions(int folderId, int userId) {
         String jpql = """
             SELECT q FROM Question q
             LEFT JOIN ReviewHistory rh
-              ON rh.question = q AND rh.user = :user
+              ON rh.question = q AND rh.user.id = :userId
             WHERE q.folder.id = :folderId
               AND q.user.id = :userId
               AND (rh IS NULL OR rh.nextReviewDate <= :today)
@@ -37,8 +70,7 @@ public class QuizRepository {
 
         return em.createQuery(jpql, Question.class)
                 .setParameter("folderId", folderId)
-                .setParameter("userId", user.getUserId())
-                .setParameter("user", user)
+                .setParameter("userId", userId)
                 .setParameter("today", LocalDate.now())
                 .getResultList();
     }
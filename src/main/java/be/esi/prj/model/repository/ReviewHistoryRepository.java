@@ -1,15 +1,25 @@
 package be.esi.prj.model.repository;
 
+import be.esi.prj.model.orm.DifficultyLevel;
 import be.esi.prj.model.orm.Question;
 import be.esi.prj.model.orm.ReviewHistory;
 import be.esi.prj.model.orm.User;
 import jakarta.persistence.EntityManager;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Repository for managing ReviewHistory entries.
  */
 public class ReviewHistoryRepository {
 
+    /** Question IDs bound per query by {@link #findReviewHistories}, below SQLite's limit on parameters. */
+    static final int IN_CLAUSE_CHUNK_SIZE = 500;
+
     private final EntityManager em;
 
     public ReviewHistoryRepository(EntityManager em) {
@@ -23,6 +33,71 @@ public class ReviewHistoryRepository {
         em.persist(reviewHistory);
     }
 
+    /**
+     * Creates the unique index on {@code (user_Id, question_Id)} declared by {@link ReviewHistory} unless an
+     * equivalent one exists. Hibernate does not create it on SQLite, see {@code JPAUtil}.
+     * <p>
+     * Duplicates left by concurrent saves made before the index existed are removed first, keeping the most
+     * recent history of each question, since {@link #upsert} relies on the index.
+     * </p>
+     */
+    public void ensureUniqueIndex() {
+        Number existing = (Number) em.createNativeQuery("""
+            SELECT COUNT(*) FROM pragma_index_list('ReviewHistory') l
+            WHERE l."unique" = 1
+              AND (SELECT group_concat(name) FROM pragma_index_info(l.name)) = 'user_Id,question_Id'
+            """).getSingleResult();
+        if (existing.intValue() == 0) {
+            em.createNativeQuery("""
+                DELETE FROM ReviewHistory WHERE reviewId NOT IN (
+                  SELECT MAX(reviewId) FROM ReviewHistory GROUP BY user_Id, question_Id)
+                """).executeUpdate();
+            em.createNativeQuery("CREATE UNIQUE INDEX uk_review_user_question ON ReviewHistory (user_Id, question_Id)")
+                    .executeUpdate();
+        }
+    }
+
+    /**
+     * Writes the schedule of a question for a user and the question's difficulty, without reading the
+     * current history first: the history is inserted, or updated if the user already reviewed the question.
+     * <p>
+     * Both statements run in the caller's transaction. As the conflict is resolved by SQLite on the unique
+     * index, two writers grading the same card end with a single history, holding the last grade.
+     * The managed entities of the persistence context are not refreshed.
+     * </p>
+     *
+     * @return false if the question no longer exists, in which case nothing is written
+     */
+    public boolean upsert(long questionId, int userId, DifficultyLevel difficulty,
+                          LocalDate reviewDate, LocalDate nextReviewDate, double easeFactor) {
+        // Le WHERE est obligatoire entre un INSERT ... SELECT et ON CONFLICT, voir la documentation de SQLite
+        int inserted = em.createNativeQuery("""
+            INSERT INTO ReviewHistory (user_Id, question_Id, difficulty, reviewDate, nextReviewDate, easeFactor)
+            SELECT ?1, ?2, ?3, ?4, ?5, ?6
+            WHERE EXISTS (SELECT 1 FROM Question WHERE questionId = ?2)
+            ON CONFLICT (user_Id, question_Id) DO UPDATE SET
+              difficulty = excluded.difficulty,
+              reviewDate = excluded.reviewDate,
+              nextReviewDate = excluded.nextReviewDate,
+              easeFactor = excluded.easeFactor
+            """)
+                .setParameter(1, userId)
+                .setParameter(2, questionId)
+                .setParameter(3, difficulty.name())
+                .setParameter(4, reviewDate)
+                .setParameter(5, nextReviewDate)
+                .setParameter(6, easeFactor)
+                .executeUpdate();
+        if (inserted == 0) {
+            return false;
+        }
+        em.createNativeQuery("UPDATE Question SET difficulty = ?1 WHERE questionId = ?2")
+                .setParameter(1, difficulty.name())
+                .setParameter(2, questionId)
+                .executeUpdate();
+        return true;
+    }
+
     /**
      * Finds review history for a question by a specific user.
      *
@@ -41,4 +116,48 @@ public class ReviewHistoryRepository {
                 .findFirst()
                 .orElse(null); // If no history exists, return null
     }
+
+    /**
+     * Finds review history for a question by a specific user, given their IDs.
+     *
+     * @return the review history or null if not found
+     */
+    public ReviewHistory findReviewHistory(Long questionId, int userId) {
+        String jpql = """
+            SELECT rh FROM ReviewHistory rh
+            WHERE rh.question.questionId = :questionId
+            AND rh.user.userId = :userId
+            """;
+        return em.createQuery(jpql, ReviewHistory.class)
+                .setParameter("questionId", questionId)
+                .setParameter("userId", userId)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Loads the review histories of several questions for a user, keyed by question ID. Questions without
+     * history are absent from the map. The IDs are sent by chunks of {@value #IN_CLAUSE_CHUNK_SIZE}, so a quiz
+     * session usually needs a single query.
+     */
+    public Map<Long, ReviewHistory> findReviewHistories(Collection<Long> questionIds, int userId) {
+        String jpql = """
+            SELECT rh FROM ReviewHistory rh
+            JOIN FETCH rh.question
+            JOIN FETCH rh.user
+            WHERE rh.user.userId = :userId
+            AND rh.question.questionId IN :questionIds
+            """;
+        List<Long> ids = List.copyOf(questionIds);
+        Map<Long, ReviewHistory> histories = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            em.createQuery(jpql, ReviewHistory.class)
+                    .setParameter("userId", userId)
+                    .setParameter("questionIds", ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size())))
+                    .getResultList()
+                    .forEach(history -> histories.put(history.getQuestion().getQuestionId(), history));
+        }
+        return histories;
+    }
 }
@@ -46,6 +46,21 @@ public class UserRepository {
         }
     }
 
+    /**
+     * Finds a user by their ID.
+     *
+     * @param userId the ID of the user.
+     * @return the User entity if found.
+     * @throws RepositoryException if no user has the given ID.
+     */
+    public User findById(int userId) {
+        User user = em.find(User.class, userId);
+        if (user == null) {
+            throw new RepositoryException("No user with id: " + userId + " found");
+        }
+        return user;
+    }
+
     public void save(User user) {
         em.persist(user);
     }
@@ -0,0 +1,173 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.utils.PageText;
+import be.esi.prj.utils.QuizResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+/**
+ * Generates fill-in-the-blank ("cloze") quizzes locally, without any network call.
+ * <p>
+ * The text is split into sentences and its words are ranked by TF-IDF: frequent in the page, rare in the
+ * questions the user already has. The best sentence becomes the question with its key term blanked out,
+ * and the term is the answer. A page is handled in well under a millisecond, so this generator keeps the
+ * ingestion going when Gemini is slow, over quota or unreachable.
+ * </p>
+ */
+public class ClozeQuizGenerator implements QuizGenerator {
+
+    static final String BLANK = "_____";
+    private static final String QUESTION_PREFIX = "Complétez : ";
+
+    private static final Pattern WORD = Pattern.compile("\\p{L}[\\p{L}\\p{M}]*");
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?;])\\s+|\\n\\s*\\n");
+    private static final int MIN_TERM_LENGTH = 4;
+    private static final int MIN_SENTENCE_WORDS = 4;
+    private static final int MAX_SENTENCE_WORDS = 60;
+    /** Candidates among which "Generate Again" picks another question. */
+    private static final int REGENERATION_CANDIDATES = 5;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "dans", "avec", "pour", "sont", "elle", "elles", "cette", "ceux", "leur", "leurs", "mais", "plus",
+            "comme", "tout", "tous", "toute", "toutes", "être", "avoir", "fait", "sans", "sous", "entre", "aussi",
+            "donc", "alors", "ainsi", "très", "peut", "peuvent", "même", "deux", "autre", "autres", "dont", "nous",
+            "vous", "était", "avait", "celui", "celle", "quand", "lors", "selon", "chez", "vers", "depuis",
+            "from", "with", "that", "this", "have", "were", "their", "there", "which", "they", "what", "when",
+            "also", "these", "those", "into", "than", "then", "been", "will", "would", "could", "should", "about",
+            "some", "such", "only", "other", "more", "most", "each", "over", "after", "before", "where", "while");
+
+    private final Map<String, Integer> documentFrequencies;
+    private final int documentCount;
+
+    /**
+     * Creates a generator.
+     *
+     * @param corpus the texts of the questions and answers the user already has, used to tell the
+     *               common words of the subject from the terms specific to a page
+     */
+    public ClozeQuizGenerator(Collection<String> corpus) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String document : corpus) {
+            for (String term : new HashSet<>(terms(document))) {
+                frequencies.merge(term, 1, Integer::sum);
+            }
+        }
+        this.documentFrequencies = Map.copyOf(frequencies);
+        this.documentCount = corpus.size();
+    }
+
+    @Override
+    public CompletableFuture<List<QuizResult>> generateQuizzesAsync(List<PageText> pages, Consumer<QuizResult> onQuiz) {
+        List<QuizResult> quizzes = new ArrayList<>();
+        for (PageText page : pages) {
+            QuizResult quiz = toQuiz(page, candidates(page.text()), 0);
+            if (onQuiz != null) {
+                onQuiz.accept(quiz);
+            }
+            quizzes.add(quiz);
+        }
+        return CompletableFuture.completedFuture(quizzes);
+    }
+
+    /**
+     * Picks another of the best sentences of the page, at random. The best one, which gave the first quiz,
+     * is left out unless the page has no other usable sentence.
+     */
+    @Override
+    public CompletableFuture<QuizResult> regenerateQuizAsync(PageText source) {
+        List<Cloze> candidates = candidates(source.text());
+        int others = Math.min(REGENERATION_CANDIDATES, candidates.size()) - 1;
+        int choice = others > 0 ? 1 + ThreadLocalRandom.current().nextInt(others) : 0;
+        return CompletableFuture.completedFuture(toQuiz(source, candidates, choice));
+    }
+
+    /**
+     * Ranks the sentences of a text by the TF-IDF of their best term.
+     *
+     * @return one cloze per usable sentence, the best first
+     */
+    List<Cloze> candidates(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        for (String term : terms(text)) {
+            termFrequencies.merge(term, 1, Integer::sum);
+        }
+
+        List<Cloze> candidates = new ArrayList<>();
+        // L'OCR coupe les phrases en lignes : seuls les paragraphes sont séparés par une ligne vide
+        for (String sentence : SENTENCE_END.split(text.strip())) {
+            String normalized = sentence.replaceAll("\\s+", " ").strip();
+            List<String> words = WORD.matcher(normalized).results().map(MatchResult::group).toList();
+            if (words.size() < MIN_SENTENCE_WORDS || words.size() > MAX_SENTENCE_WORDS) {
+                continue;
+            }
+            String bestWord = null;
+            double bestScore = 0;
+            for (String word : words) {
+                String term = word.toLowerCase(Locale.ROOT);
+                if (!isTerm(term)) {
+                    continue;
+                }
+                double score = termFrequencies.getOrDefault(term, 0) * inverseDocumentFrequency(term);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestWord = word;
+                }
+            }
+            if (bestWord != null) {
+                candidates.add(new Cloze(blankOut(normalized, bestWord), bestWord, bestScore));
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(Cloze::score).reversed());
+        return candidates;
+    }
+
+    private double inverseDocumentFrequency(String term) {
+        return Math.log((1.0 + documentCount) / (1.0 + documentFrequencies.getOrDefault(term, 0))) + 1;
+    }
+
+    private static QuizResult toQuiz(PageText source, List<Cloze> candidates, int choice) {
+        if (candidates.isEmpty()) {
+            return new QuizResult(source, null, null);
+        }
+        Cloze cloze = candidates.get(choice);
+        return new QuizResult(source, QUESTION_PREFIX + cloze.sentence(), cloze.answer());
+    }
+
+    private static String blankOut(String sentence, String word) {
+        return Pattern.compile("(?<![\\p{L}\\p{M}])" + Pattern.quote(word) + "(?![\\p{L}\\p{M}])")
+                .matcher(sentence)
+                .replaceFirst(BLANK);
+    }
+
+    private static List<String> terms(String text) {
+        return WORD.matcher(text).results()
+                .map(match -> match.group().toLowerCase(Locale.ROOT))
+                .filter(ClozeQuizGenerator::isTerm)
+                .toList();
+    }
+
+    private static boolean isTerm(String word) {
+        return word.length() >= MIN_TERM_LENGTH && !STOP_WORDS.contains(word);
+    }
+
+    /**
+     * A sentence with its key term blanked out.
+     */
+    record Cloze(String sentence, String answer, double score) {}
+}
@@ -0,0 +1,151 @@
+package be.esi.prj.model.services;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Page-by-page access to a multi-page document (PDF or TIFF).
+ * <p>
+ * Only the page being rendered is held in memory: PDF objects are buffered in a temporary file and
+ * TIFF pages are decoded one at a time from the image stream, so memory use does not grow with the
+ * length of the document.
+ * </p>
+ */
+public abstract class DocumentPages implements AutoCloseable {
+
+    /** Short side of an A4 page, used to cap the size of scanned TIFF pages. */
+    private static final double PAGE_SHORT_SIDE_INCHES = 8.27;
+
+    /**
+     * Checks if a file is a document handled page by page rather than as a single image.
+     */
+    public static boolean isMultiPage(File file) {
+        String fileName = file.getName().toLowerCase();
+        return fileName.endsWith(".pdf") || fileName.endsWith(".tif") || fileName.endsWith(".tiff");
+    }
+
+    /**
+     * Opens a document.
+     *
+     * @param file a PDF or TIFF file
+     * @param dpi the resolution at which the pages are rendered
+     * @return the pages of the document, to be closed by the caller
+     * @throws IOException if the file cannot be read or is not a supported document
+     */
+    public static DocumentPages open(File file, int dpi) throws IOException {
+        if (file.getName().toLowerCase().endsWith(".pdf")) {
+            return new PdfPages(file, dpi);
+        }
+        return new TiffPages(file, dpi);
+    }
+
+    /**
+     * Returns the number of pages of the document.
+     */
+    public abstract int getPageCount() throws IOException;
+
+    /**
+     * Renders one page.
+     *
+     * @param pageNumber the page number, starting at 1
+     * @return the page as an image
+     * @throws IOException if the page cannot be decoded
+     */
+    public abstract BufferedImage renderPage(int pageNumber) throws IOException;
+
+    @Override
+    public abstract void close() throws IOException;
+
+    private static void checkPageNumber(int pageNumber, int pageCount) {
+        if (pageNumber < 1 || pageNumber > pageCount) {
+            throw new IllegalArgumentException("Page " + pageNumber + " does not exist, the document has " + pageCount + " page(s)");
+        }
+    }
+
+    private static final class PdfPages extends DocumentPages {
+
+        private final PDDocument document;
+        private final PDFRenderer renderer;
+        private final int dpi;
+
+        private PdfPages(File file, int dpi) throws IOException {
+            this.document = Loader.loadPDF(file, IOUtils.createTempFileOnlyStreamCache());
+            this.renderer = new PDFRenderer(document);
+            this.dpi = dpi;
+        }
+
+        @Override
+        public int getPageCount() {
+            return document.getNumberOfPages();
+        }
+
+        @Override
+        public BufferedImage renderPage(int pageNumber) throws IOException {
+            checkPageNumber(pageNumber, getPageCount());
+            // Tesseract only needs gray levels, which is a third of the memory of an RGB rendering
+            return renderer.renderImageWithDPI(pageNumber - 1, dpi, ImageType.GRAY);
+        }
+
+        @Override
+        public void close() throws IOException {
+            document.close();
+        }
+    }
+
+    private static final class TiffPages extends DocumentPages {
+
+        private final ImageInputStream input;
+        private final ImageReader reader;
+        private final int maxShortSide;
+
+        private TiffPages(File file, int dpi) throws IOException {
+            this.input = ImageIO.createImageInputStream(file);
+            if (input == null) {
+                throw new IOException("Cannot open " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                input.close();
+                throw new IOException("Unsupported document format: " + file.getName());
+            }
+            this.reader = readers.next();
+            // Seeking backwards must stay possible to render a page again when a quiz is regenerated
+            reader.setInput(input, false, true);
+            this.maxShortSide = (int) Math.round(dpi * PAGE_SHORT_SIDE_INCHES);
+        }
+
+        @Override
+        public int getPageCount() throws IOException {
+            return reader.getNumImages(true);
+        }
+
+        @Override
+        public BufferedImage renderPage(int pageNumber) throws IOException {
+            checkPageNumber(pageNumber, getPageCount());
+            int index = pageNumber - 1;
+            ImageReadParam param = reader.getDefaultReadParam();
+            int shortSide = Math.min(reader.getWidth(index), reader.getHeight(index));
+            int subsampling = Math.max(1, shortSide / maxShortSide);
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            return reader.read(index, param);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.dispose();
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.utils.PageText;
+import be.esi.prj.utils.QuizResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Uses a primary generator and, for the pages it could not handle, a fallback one.
+ * <p>
+ * A page falls back when the primary generator fails or gives no question for it, e.g. Gemini being
+ * unreachable or over quota: the upload then goes on with the quizzes of the fallback generator instead
+ * of stopping.
+ * </p>
+ */
+public class FallbackQuizGenerator implements QuizGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(FallbackQuizGenerator.class);
+
+    private final QuizGenerator primary;
+    private final QuizGenerator fallback;
+
+    public FallbackQuizGenerator(QuizGenerator primary, QuizGenerator fallback) {
+        this.primary = primary;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public CompletableFuture<List<QuizResult>> generateQuizzesAsync(List<PageText> pages, Consumer<QuizResult> onQuiz) {
+        // Les pages sans question sont retentées : seules les questions obtenues sont transmises tout de suite
+        Consumer<QuizResult> forward = onQuiz == null ? null : quiz -> {
+            if (quiz.getQuestion() != null) {
+                onQuiz.accept(quiz);
+            }
+        };
+        CompletableFuture<List<QuizResult>> generated = primary.generateQuizzesAsync(pages, forward);
+        CompletableFuture<List<QuizResult>> result = generated
+                .handle((quizzes, error) -> {
+                    rethrowCancellation(error);
+                    if (error != null) {
+                        logger.warn("Quiz generation failed, falling back for {} page(s): {}", pages.size(), error.toString());
+                    }
+                    return quizzes;
+                })
+                .thenCompose(quizzes -> {
+                    List<PageText> missing = new ArrayList<>();
+                    for (int i = 0; i < pages.size(); i++) {
+                        if (quizzes == null || quizzes.get(i).getQuestion() == null) {
+                            missing.add(pages.get(i));
+                        }
+                    }
+                    if (missing.isEmpty()) {
+                        return CompletableFuture.completedFuture(quizzes);
+                    }
+                    logger.info("{} of {} quiz(zes) generated by the fallback generator", missing.size(), pages.size());
+                    return fallback.generateQuizzesAsync(missing, onQuiz).thenApply(replacements -> {
+                        List<QuizResult> merged = new ArrayList<>();
+                        int next = 0;
+                        for (int i = 0; i < pages.size(); i++) {
+                            boolean replaced = quizzes == null || quizzes.get(i).getQuestion() == null;
+                            merged.add(replaced ? replacements.get(next++) : quizzes.get(i));
+                        }
+                        return merged;
+                    });
+                });
+        cancelTogether(result, generated);
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<QuizResult> regenerateQuizAsync(PageText source) {
+        CompletableFuture<QuizResult> regenerated = primary.regenerateQuizAsync(source);
+        CompletableFuture<QuizResult> result = regenerated
+                .handle((quiz, error) -> {
+                    rethrowCancellation(error);
+                    return error == null ? quiz : null;
+                })
+                .thenCompose(quiz -> quiz != null && quiz.getQuestion() != null
+                        ? CompletableFuture.completedFuture(quiz)
+                        : fallback.regenerateQuizAsync(source));
+        cancelTogether(result, regenerated);
+        return result;
+    }
+
+    @Override
+    public boolean isIdle() {
+        return primary.isIdle() && fallback.isIdle();
+    }
+
+    private static void rethrowCancellation(Throwable error) {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        if (cause instanceof CancellationException cancellation) {
+            throw cancellation;
+        }
+    }
+
+    private static void cancelTogether(CompletableFuture<?> dependent, CompletableFuture<?> source) {
+        dependent.whenComplete((value, error) -> {
+            if (dependent.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+    }
+}
@@ -4,20 +4,24 @@ import be.esi.prj.model.orm.DifficultyLevel;
 import be.esi.prj.model.orm.Folder;
 import be.esi.prj.model.orm.User;
 import be.esi.prj.model.repository.FolderRepository;
+import be.esi.prj.model.repository.FolderStats;
 import be.esi.prj.model.repository.RepositoryException;
 import be.esi.prj.utils.JPAUtil;
+import be.esi.prj.utils.UnitOfWork;
 import jakarta.persistence.*;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 public class FolderService {
 
-    private final EntityManager em;
-    private final FolderRepository folderRepo;
+    private final UnitOfWork unitOfWork;
+    private final Function<EntityManager, FolderRepository> folderRepos;
 
     public FolderService() {
-        this.em = JPAUtil.getEntityManager();
-        this.folderRepo = new FolderRepository(em);
+        this.unitOfWork = JPAUtil.getUnitOfWork();
+        this.folderRepos = FolderRepository::new;
     }
 
     /**
@@ -29,15 +33,10 @@ public class FolderService {
      */
     public Folder createFolder(String folderName, User user) {
         Folder folder = new Folder(folderName, user);
-        EntityTransaction transaction = em.getTransaction();
-
         try {
-            transaction.begin();
-            folderRepo.save(folder);
-            transaction.commit();
+            unitOfWork.runInTransaction(em -> folderRepos.apply(em).save(folder));
             return folder;
         } catch (Exception e) {
-            if (transaction.isActive()) transaction.rollback();
             throw new RepositoryException("Failed to create folder", e);
         }
     }
@@ -48,17 +47,15 @@ public class FolderService {
      * @param folderId the folder ID to delete
      */
     public void deleteFolder(int folderId) {
-        EntityTransaction transaction = em.getTransaction();
-
         try {
-            transaction.begin();
-            Folder folder = folderRepo.findById(folderId);
-            if (folder != null) {
-                folderRepo.delete(folder);
-            }
-            transaction.commit();
+            unitOfWork.runInTransaction(em -> {
+                FolderRepository folderRepo = folderRepos.apply(em);
+                Folder folder = folderRepo.findById(folderId);
+                if (folder != null) {
+                    folderRepo.delete(folder);
+                }
+            });
         } catch (Exception e) {
-            if (transaction.isActive()) transaction.rollback();
             throw new RepositoryException("Failed to delete folder", e);
         }
     }
@@ -69,13 +66,9 @@ public class FolderService {
      * @param folder the modified folder to update
      */
     public void updateFolder(Folder folder) {
-        EntityTransaction transaction = em.getTransaction();
         try {
-            transaction.begin();
-            em.merge(folder);
-            transaction.commit();
+            unitOfWork.runInTransaction(em -> em.merge(folder));
         } catch (Exception e) {
-            if (transaction.isActive()) transaction.rollback();
             throw new RepositoryException("Failed to update folder", e);
         }
     }
@@ -87,35 +80,65 @@ public class FolderService {
      * @return a list of folders
      */
     public List<Folder> getFoldersForUser(User user) {
-        return folderRepo.findByUser(user);
+        return unitOfWork.read(em -> folderRepos.apply(em).findByUser(user));
+    }
+
+    /**
+     * Returns all folders associated with a user, given the ID of the user.
+     *
+     * @param userId the ID of the user
+     * @return a list of folders
+     */
+    public List<Folder> getFoldersForUser(int userId) {
+        return unitOfWork.read(em -> folderRepos.apply(em).findByUserId(userId));
     }
 
 
 
     public FolderService(EntityManager em, FolderRepository folderRepo) {
-        this.em = em;
-        this.folderRepo = folderRepo;
+        this.unitOfWork = UnitOfWork.of(em);
+        this.folderRepos = ignored -> folderRepo;
     }
 
     // --- Statistics ---
 
+    /**
+     * Returns the total and per-difficulty question counts of a folder in one query.
+     *
+     * @param folderId the folder ID
+     * @return the folder stats
+     */
+    public FolderStats getFolderStats(int folderId) {
+        return unitOfWork.read(em -> folderRepos.apply(em).getFolderStats(folderId));
+    }
+
+    /**
+     * Returns the stats of every folder of a user in one query, keyed by folder ID.
+     *
+     * @param user the user
+     * @return the stats of each folder of the user
+     */
+    public Map<Integer, FolderStats> getFolderStatsForUser(User user) {
+        return unitOfWork.read(em -> folderRepos.apply(em).getFolderStatsByUser(user));
+    }
+
     public int getTotalQuestionsCount(int folderId) {
-        return folderRepo.getTotalQuestionsCount(folderId);
+        return unitOfWork.read(em -> folderRepos.apply(em).getTotalQuestionsCount(folderId));
     }
 
     public int getEasyQuestionsCount(int folderId) {
-        return folderRepo.getQuestionsCountByDifficulty(folderId, DifficultyLevel.EASY);
+        return unitOfWork.read(em -> folderRepos.apply(em).getQuestionsCountByDifficulty(folderId, DifficultyLevel.EASY));
     }
 
     public int getGoodQuestionsCount(int folderId) {
-        return folderRepo.getQuestionsCountByDifficulty(folderId, DifficultyLevel.GOOD);
+        return unitOfWork.read(em -> folderRepos.apply(em).getQuestionsCountByDifficulty(folderId, DifficultyLevel.GOOD));
     }
 
     public int getHardQuestionsCount(int folderId) {
-        return folderRepo.getQuestionsCountByDifficulty(folderId, DifficultyLevel.HARD);
+        return unitOfWork.read(em -> folderRepos.apply(em).getQuestionsCountByDifficulty(folderId, DifficultyLevel.HARD));
     }
 
     public int getAgainQuestionsCount(int folderId) {
-        return folderRepo.getQuestionsCountByDifficulty(folderId, DifficultyLevel.AGAIN);
+        return unitOfWork.read(em -> folderRepos.apply(em).getQuestionsCountByDifficulty(folderId, DifficultyLevel.AGAIN));
     }
 }
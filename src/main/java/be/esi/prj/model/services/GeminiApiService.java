@@ -1,19 +1,44 @@
 package be.esi.prj.model.services;
 
+import be.esi.prj.utils.AsyncLimiter;
+import be.esi.prj.utils.CircuitBreaker;
+import be.esi.prj.utils.PageText;
+import be.esi.prj.utils.QuizResult;
+import be.esi.prj.utils.ResilientHttpSender;
+import be.esi.prj.utils.TokenBucket;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.io.File;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class GeminiApiService {
 
+    private static final Logger logger = LoggerFactory.getLogger(GeminiApiService.class);
+
     /**
      * Constructeur privé pour empêcher l'instanciation de ce service.
      * Ce service expose uniquement des méthodes statiques et ne doit pas être instancié.
@@ -22,14 +47,45 @@ public class GeminiApiService {
         throw new UnsupportedOperationException("This service shouldn't be instantiated");
     }
 
-    private static final String BASE_URL =
-            "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash-lite:generateContent";
+    private static final String MODEL_URL =
+            "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash-lite";
+    /** Version of the prompt templates, part of the generation cache key: change it when the prompts change. */
+    static final String PROMPT_VERSION = "quiz-fr-1";
+
+    /** Time allowed for one request, from sending it to receiving the whole response. */
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    /** Requests sent at the same time; the others wait for a free slot without blocking any thread. */
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 4;
+
+    /** Characters of OCR text packed into one request; short snippets are mostly round-trip overhead. */
+    public static final int DEFAULT_BATCH_CHARACTER_BUDGET = 6000;
+
+    /** Sustained request rate, kept under the per-minute quota of the API key. */
+    public static final int DEFAULT_REQUESTS_PER_MINUTE = 30;
+    /** Requests that can be sent at once after a quiet period. */
+    public static final int DEFAULT_REQUEST_BURST = 5;
+    /** Times a request is sent before giving up on a transient failure (429, 502, 503, 504, I/O error). */
+    public static final int DEFAULT_MAX_ATTEMPTS = 4;
+    public static final Duration DEFAULT_RETRY_BASE_DELAY = Duration.ofMillis(500);
+    /** Consecutive failures after which the requests are held back for {@link #DEFAULT_CIRCUIT_OPEN_DURATION}. */
+    public static final int DEFAULT_CIRCUIT_FAILURE_THRESHOLD = 5;
+    public static final Duration DEFAULT_CIRCUIT_OPEN_DURATION = Duration.ofSeconds(30);
 
     private static final String API_KEY;
     static HttpClient HTTP_CLIENT;
+    private static volatile String modelUrl = MODEL_URL;
+    private static volatile Duration requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+    private static volatile int batchCharacterBudget = DEFAULT_BATCH_CHARACTER_BUDGET;
+    private static volatile GenerationCache generationCache;
+    private static volatile AsyncLimiter inFlightLimiter = new AsyncLimiter(DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+    private static volatile ResilientHttpSender httpSender = new ResilientHttpSender(
+            new TokenBucket(DEFAULT_REQUESTS_PER_MINUTE, DEFAULT_REQUEST_BURST),
+            new CircuitBreaker(DEFAULT_CIRCUIT_FAILURE_THRESHOLD, DEFAULT_CIRCUIT_OPEN_DURATION),
+            DEFAULT_MAX_ATTEMPTS, DEFAULT_RETRY_BASE_DELAY);
 
     static {
-        Dotenv dotenv = Dotenv.load();
+        // Sans fichier .env (tests, CI), la clé est lue dans les variables d'environnement
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
         API_KEY = dotenv.get("GEMINI_API_KEY");
         HTTP_CLIENT = HttpClient.newHttpClient();
     }
@@ -38,56 +94,477 @@ public class GeminiApiService {
         HTTP_CLIENT = client;
     }
 
+    public static void setModelUrlForTests(String url) {
+        modelUrl = url;
+    }
+
+    public static void setRequestTimeout(Duration timeout) {
+        requestTimeout = timeout;
+    }
+
+    /**
+     * Changes the number of requests sent at the same time. Requests already waiting keep the previous limit.
+     */
+    public static void setMaxInFlightRequests(int maxInFlight) {
+        inFlightLimiter = new AsyncLimiter(maxInFlight);
+    }
+
+    /**
+     * Sets the cache of generated quizzes, or {@code null} to always call Gemini.
+     */
+    public static void setGenerationCache(GenerationCache cache) {
+        generationCache = cache;
+    }
+
+    public static GenerationCache getGenerationCache() {
+        return generationCache;
+    }
+
+    /**
+     * Sets the maximum number of OCR characters packed into one batch request; 0 sends every text on its own.
+     */
+    public static void setBatchCharacterBudget(int characters) {
+        batchCharacterBudget = characters;
+    }
+
+    public static int getBatchCharacterBudget() {
+        return batchCharacterBudget;
+    }
+
+    /**
+     * Replaces the rate limiter, circuit breaker and retry policy applied to every request.
+     */
+    public static void setHttpSender(ResilientHttpSender sender) {
+        httpSender = sender;
+    }
+
+    public static CircuitBreaker.State getCircuitState() {
+        return httpSender.getCircuitBreaker().getState();
+    }
+
+    public static int getInFlightRequests() {
+        return inFlightLimiter.getInFlight();
+    }
+
+    /**
+     * Tells whether no request is being sent or waiting for a slot, so that a speculative request
+     * would not hold back the ones the user is waiting for.
+     */
+    public static boolean isIdle() {
+        AsyncLimiter limiter = inFlightLimiter;
+        return limiter.getInFlight() == 0 && limiter.getWaiting() == 0;
+    }
+
     /**
      * Generates a quiz question and answer from a given text input using Gemini API.
+     * Blocks until the response is received; see {@link #generateQuizAsync(File, int, String)}.
      *
      * @param inputText the user text from which to generate a quiz
      * @return list containing [question, answer] or [null, null] if failed
      */
     public static List<String> generateQuizFromText(String inputText) {
-        String requestBody = buildPrompt(inputText);
-        String url = BASE_URL + "?key=" + API_KEY;
+        CompletableFuture<List<String>> quiz = generateQuizFromTextAsync(inputText, requestTimeout, true, true);
+        try {
+            return quiz.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            quiz.cancel(true);
+        } catch (ExecutionException | CancellationException e) {
+            logger.error("Quiz generation failed", e);
+        }
+        return Arrays.asList(null, null);
+    }
 
+    /**
+     * Generates a quiz from the text of a page without blocking the calling thread.
+     *
+     * @param file the file the text comes from
+     * @param pageNumber the page of the file the text comes from
+     * @param inputText the user text from which to generate a quiz
+     * @return the quiz, whose question and answer are {@code null} if the generation failed;
+     *         cancelling it aborts the request
+     */
+    public static CompletableFuture<QuizResult> generateQuizAsync(File file, int pageNumber, String inputText) {
+        return generateQuizAsync(file, pageNumber, inputText, requestTimeout);
+    }
+
+    /**
+     * Same as {@link #generateQuizAsync(File, int, String)} with a specific timeout for this request.
+     */
+    public static CompletableFuture<QuizResult> generateQuizAsync(File file, int pageNumber, String inputText,
+                                                                  Duration timeout) {
+        return generateQuizAsync(file, pageNumber, inputText, timeout, true);
+    }
+
+    /**
+     * Same as {@link #generateQuizAsync(File, int, String)}, optionally ignoring the quiz cached for this text,
+     * e.g. when the user asks to "Generate Again". The new quiz replaces the cached one.
+     */
+    public static CompletableFuture<QuizResult> generateQuizAsync(File file, int pageNumber, String inputText,
+                                                                  boolean useCache) {
+        return generateQuizAsync(file, pageNumber, inputText, requestTimeout, useCache);
+    }
+
+    /**
+     * Same as {@link #generateQuizAsync(File, int, String, boolean)} for a page or a passage, which the quiz is linked to.
+     */
+    public static CompletableFuture<QuizResult> generateQuizAsync(PageText page, boolean useCache) {
+        return generateQuizAsync(page, useCache, true);
+    }
+
+    /**
+     * Generates an alternative quiz for a page, ignoring the cache and without storing the result.
+     * The candidates prefetched for "Generate Again" are speculative and most of them are never shown,
+     * so they neither replace the cached quiz nor count as generations in its statistics.
+     */
+    public static CompletableFuture<QuizResult> generateCandidateAsync(PageText page) {
+        return generateQuizAsync(page, false, false);
+    }
+
+    private static CompletableFuture<QuizResult> generateQuizAsync(PageText page, boolean useCache, boolean store) {
+        CompletableFuture<List<String>> quiz = generateQuizFromTextAsync(page.text(), requestTimeout, useCache, store);
+        return cancelTogether(quiz.thenApply(qa -> new QuizResult(page, qa.get(0), qa.get(1))), quiz);
+    }
+
+    private static CompletableFuture<QuizResult> generateQuizAsync(File file, int pageNumber, String inputText,
+                                                                   Duration timeout, boolean useCache) {
+        CompletableFuture<List<String>> quiz = generateQuizFromTextAsync(inputText, timeout, useCache, true);
+        return cancelTogether(quiz.thenApply(qa -> new QuizResult(file, pageNumber, qa.get(0), qa.get(1))), quiz);
+    }
+
+    /**
+     * Generates the quizzes of several pages, packing their texts into as few requests as the
+     * character budget allows (see {@link #setBatchCharacterBudget(int)}).
+     * A page missing from the response of its batch, or whose batch failed, is retried on its own.
+     *
+     * @param pages the texts to turn into quizzes
+     * @return one quiz per page, in the same order; cancelling it aborts all the requests
+     */
+    public static CompletableFuture<List<QuizResult>> generateQuizzesAsync(List<PageText> pages) {
+        return generateQuizzesAsync(pages, null);
+    }
+
+    /**
+     * Same as {@link #generateQuizzesAsync(List)}, but the batches are streamed: every quiz is handed to
+     * {@code onQuiz} as soon as the model has written it, before the rest of its batch is generated.
+     *
+     * @param onQuiz called once for every quiz of the result, possibly from the HTTP client threads;
+     *               {@code null} to only get the complete list
+     */
+    public static CompletableFuture<List<QuizResult>> generateQuizzesAsync(List<PageText> pages, Consumer<QuizResult> onQuiz) {
+        GenerationCache cache = generationCache;
+        QuizResult[] cachedQuizzes = new QuizResult[pages.size()];
+        List<PageText> toGenerate = new ArrayList<>();
+        for (int i = 0; i < pages.size(); i++) {
+            PageText page = pages.get(i);
+            Optional<List<String>> cached = cache != null
+                    ? cache.get(GenerationCache.keyFor(page.text(), PROMPT_VERSION))
+                    : Optional.empty();
+            if (cached.isPresent()) {
+                cachedQuizzes[i] = new QuizResult(page, cached.get().get(0), cached.get().get(1));
+                notify(onQuiz, cachedQuizzes[i]);
+            } else {
+                toGenerate.add(page);
+            }
+        }
+
+        List<CompletableFuture<List<QuizResult>>> batches = new ArrayList<>();
+        for (List<PageText> batch : packBatches(toGenerate, batchCharacterBudget)) {
+            batches.add(generateBatchAsync(batch, onQuiz));
+        }
+        CompletableFuture<List<QuizResult>> result = CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new))
+                .thenApply(done -> {
+                    // Remet les quiz générés à la place des pages absentes du cache, dans l'ordre d'origine
+                    Iterator<QuizResult> generated = batches.stream().flatMap(batch -> batch.join().stream()).iterator();
+                    List<QuizResult> quizzes = new ArrayList<>();
+                    for (QuizResult cached : cachedQuizzes) {
+                        quizzes.add(cached != null ? cached : generated.next());
+                    }
+                    return quizzes;
+                });
+        batches.forEach(batch -> cancelTogether(result, batch));
+        return result;
+    }
+
+    /**
+     * Generates the quizzes of pages that already missed the cache in {@link #generateQuizzesAsync(List, Consumer)},
+     * so neither the batch nor the single-page requests look them up again.
+     */
+    private static CompletableFuture<List<QuizResult>> generateBatchAsync(List<PageText> batch, Consumer<QuizResult> onQuiz) {
+        if (batch.size() == 1) {
+            PageText page = batch.get(0);
+            CompletableFuture<QuizResult> quiz = generateQuizAsync(page, false, true);
+            return cancelTogether(quiz.thenApply(result -> {
+                notify(onQuiz, result);
+                return List.of(result);
+            }), quiz);
+        }
+
+        CompletableFuture<List<QuizResult>> answers = onQuiz != null ? streamBatchAsync(batch, onQuiz) : sendBatchAsync(batch);
+        List<CompletableFuture<QuizResult>> retries = new CopyOnWriteArrayList<>();
+        CompletableFuture<List<QuizResult>> result = answers.thenCompose(quizzes -> {
+            List<CompletableFuture<QuizResult>> results = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                PageText page = batch.get(i);
+                QuizResult quiz = quizzes.get(i);
+                if (quiz != null) {
+                    results.add(CompletableFuture.completedFuture(quiz));
+                } else {
+                    CompletableFuture<QuizResult> retry = generateQuizAsync(page, false, true);
+                    retries.add(retry);
+                    results.add(retry.thenApply(retried -> {
+                        notify(onQuiz, retried);
+                        return retried;
+                    }));
+                }
+            }
+            return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+                    .thenApply(done -> results.stream().map(CompletableFuture::join).toList());
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                answers.cancel(true);
+                retries.forEach(retry -> retry.cancel(true));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Sends a batch prompt and waits for the whole response.
+     *
+     * @return the quiz of every page of the batch, {@code null} for the pages missing from the response
+     */
+    private static CompletableFuture<List<QuizResult>> sendBatchAsync(List<PageText> batch) {
+        long start = System.nanoTime();
+        CompletableFuture<List<List<String>>> answers = sendAsync(buildBatchPrompt(batch), requestTimeout,
+                body -> parseQuizzesFromResponse(body, batch.size()), Collections.nCopies(batch.size(), null));
+        return cancelTogether(answers.thenApply(quizzes -> {
+            List<QuizResult> results = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                PageText page = batch.get(i);
+                List<String> quiz = quizzes.get(i);
+                if (quiz != null) {
+                    storeInCache(page.text(), quiz, Duration.ofNanos((System.nanoTime() - start) / batch.size()));
+                    results.add(new QuizResult(page, quiz.get(0), quiz.get(1)));
+                } else {
+                    results.add(null);
+                }
+            }
+            return results;
+        }), answers);
+    }
+
+    /**
+     * Sends a batch prompt to the streaming endpoint and hands every quiz to {@code onQuiz} as soon as its
+     * JSON object is complete, see {@link QuizStreamParser}.
+     *
+     * @return the quiz of every page of the batch, {@code null} for the pages missing from the response
+     */
+    private static CompletableFuture<List<QuizResult>> streamBatchAsync(List<PageText> batch, Consumer<QuizResult> onQuiz) {
+        long start = System.nanoTime();
+        AtomicReferenceArray<QuizResult> streamed = new AtomicReferenceArray<>(batch.size());
+        QuizStreamParser parser = new QuizStreamParser(batch.size(), (index, question, answer) -> {
+            PageText page = batch.get(index);
+            QuizResult quiz = new QuizResult(page, question, answer);
+            streamed.set(index, quiz);
+            // La durée de génération n'est connue qu'à la fin du lot : elle est enregistrée plus bas
+            storeInCache(page.text(), Arrays.asList(question, answer), null);
+            onQuiz.accept(quiz);
+        });
+        HttpResponse.BodyHandler<String> streamHandler = info -> info.statusCode() == 200
+                ? HttpResponse.BodySubscribers.fromLineSubscriber(parser, subscriber -> "", StandardCharsets.UTF_8, null)
+                : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+        CompletableFuture<Boolean> completed = sendAsync(modelUrl + ":streamGenerateContent?alt=sse&key=" + API_KEY,
+                buildBatchPrompt(batch), requestTimeout, streamHandler, body -> true, false);
+        return cancelTogether(completed.thenApply(done -> {
+            Duration generationTime = Duration.ofNanos((System.nanoTime() - start) / batch.size());
+            GenerationCache cache = generationCache;
+            List<QuizResult> results = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                QuizResult quiz = streamed.get(i);
+                if (quiz != null && cache != null) {
+                    cache.recordGeneration(generationTime);
+                }
+                results.add(quiz);
+            }
+            return results;
+        }), completed);
+    }
+
+    private static void notify(Consumer<QuizResult> onQuiz, QuizResult quiz) {
+        if (onQuiz != null) {
+            onQuiz.accept(quiz);
+        }
+    }
+
+    /**
+     * Splits the pages into consecutive batches whose texts fit in the character budget.
+     * A text longer than the budget gets a batch of its own.
+     */
+    static List<List<PageText>> packBatches(List<PageText> pages, int characterBudget) {
+        List<List<PageText>> batches = new ArrayList<>();
+        List<PageText> current = new ArrayList<>();
+        int characters = 0;
+        for (PageText page : pages) {
+            int length = page.text().length();
+            if (!current.isEmpty() && characters + length > characterBudget) {
+                batches.add(current);
+                current = new ArrayList<>();
+                characters = 0;
+            }
+            current.add(page);
+            characters += length;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * Sends the request once a slot is free. HTTP and parsing errors give [null, null] like the blocking method;
+     * only a cancellation completes the future exceptionally.
+     *
+     * @param useCache whether to look the text up in the generation cache before sending the request
+     * @param store whether to keep the generated quiz in the generation cache
+     */
+    private static CompletableFuture<List<String>> generateQuizFromTextAsync(String inputText, Duration timeout,
+                                                                          boolean useCache, boolean store) {
+        GenerationCache cache = generationCache;
+        if (cache != null && useCache) {
+            Optional<List<String>> cached = cache.get(GenerationCache.keyFor(inputText, PROMPT_VERSION));
+            if (cached.isPresent()) {
+                return CompletableFuture.completedFuture(cached.get());
+            }
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<List<String>> quiz = sendAsync(buildPrompt(inputText), timeout,
+                GeminiApiService::parseQuizFromResponse, Arrays.asList(null, null));
+        return cancelTogether(quiz.thenApply(qa -> {
+            if (store) {
+                storeInCache(inputText, qa, Duration.ofNanos(System.nanoTime() - start));
+            }
+            return qa;
+        }), quiz);
+    }
+
+    /**
+     * Keeps a successfully generated quiz for the next time the same text is uploaded.
+     *
+     * @param generationTime the time Gemini took for this quiz, or {@code null} if the caller records it itself
+     */
+    private static void storeInCache(String inputText, List<String> quiz, Duration generationTime) {
+        GenerationCache cache = generationCache;
+        if (cache != null && quiz.get(0) != null) {
+            if (generationTime != null) {
+                cache.recordGeneration(generationTime);
+            }
+            cache.put(GenerationCache.keyFor(inputText, PROMPT_VERSION), quiz);
+        }
+    }
+
+    /**
+     * Sends a prompt once a slot is free and parses the response body. The request goes through the
+     * rate limiter and the circuit breaker, and transient failures are retried, see {@link ResilientHttpSender}.
+     *
+     * @param onFailure the result used when the request fails or the status is not 200
+     */
+    private static <T> CompletableFuture<T> sendAsync(String requestBody, Duration timeout,
+                                                      Function<String, T> parser, T onFailure) {
+        return sendAsync(modelUrl + ":generateContent?key=" + API_KEY, requestBody, timeout,
+                HttpResponse.BodyHandlers.ofString(), parser, onFailure);
+    }
+
+    /**
+     * Same as {@link #sendAsync(String, Duration, Function, Object)} to a specific endpoint, reading the body
+     * with a specific handler.
+     */
+    private static <T> CompletableFuture<T> sendAsync(String url, String requestBody, Duration timeout,
+                                                      HttpResponse.BodyHandler<String> bodyHandler,
+                                                      Function<String, T> parser, T onFailure) {
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(url))
+                .timeout(timeout)
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
                 .build();
 
-        try {
-            HttpResponse<String> response = HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() == 200) {
-                return parseQuizFromResponse(response.body());
-            } else {
-                System.err.printf("HTTP %d Error: %s%n", response.statusCode(), response.body());
+        ResilientHttpSender sender = httpSender;
+        CompletableFuture<T> parsed = inFlightLimiter.submit(() -> {
+            CompletableFuture<HttpResponse<String>> exchange = sender.send(HTTP_CLIENT, request, bodyHandler);
+            return cancelTogether(exchange.thenApply(response -> {
+                if (response.statusCode() == 200) {
+                    return parser.apply(response.body());
+                }
+                // Le corps peut reprendre le texte de l'utilisateur : seul le statut est journalisé.
+                logger.warn("Gemini request failed with HTTP {}", response.statusCode());
+                return onFailure;
+            }), exchange);
+        });
+        CompletableFuture<T> result = parsed.exceptionally(error -> {
+            if (error instanceof CancellationException cancellation) {
+                throw cancellation;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            e.printStackTrace();
-        }
+            logger.warn("Gemini request failed", error);
+            return onFailure;
+        });
+        return cancelTogether(result, parsed);
+    }
 
-        return Arrays.asList(null, null);
+    /**
+     * Cancels {@code source} when {@code dependent} is cancelled: the futures derived with thenApply and
+     * friends do not propagate a cancellation back to the request they depend on.
+     */
+    private static <T> CompletableFuture<T> cancelTogether(CompletableFuture<T> dependent, CompletableFuture<?> source) {
+        dependent.whenComplete((value, error) -> {
+            if (dependent.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return dependent;
     }
 
     /**
      * Builds the JSON prompt to send to the Gemini API.
      */
     private static String buildPrompt(String inputText) {
-        String escapedText = inputText.replace("\"", "\\\"");
-        return String.format("""
-                {
-                  "contents": [{
-                    "parts": [{
-                      "text": "Génère une seule question de quiz en français à partir du texte suivant. \
-                        La réponse doit être au format JSON avec les champs 'question' et 'answer'. \
-                        La question doit tester les connaissances contenues dans ce texte utilisateur. Texte = %s"
-                    }]
-                  }]
-                }
-                """, escapedText);
+        return buildRequestBody("Génère une seule question de quiz en français à partir du texte suivant. "
+                + "La réponse doit être au format JSON avec les champs 'question' et 'answer'. "
+                + "La question doit tester les connaissances contenues dans ce texte utilisateur. Texte = " + inputText);
+    }
+
+    /**
+     * Builds one prompt asking for a quiz per text. The texts are given as a JSON array so that
+     * quotes and line breaks of the OCR output cannot break the prompt.
+     */
+    static String buildBatchPrompt(List<PageText> pages) {
+        JsonArray texts = new JsonArray();
+        for (int i = 0; i < pages.size(); i++) {
+            JsonObject text = new JsonObject();
+            text.addProperty("index", i);
+            text.addProperty("texte", pages.get(i).text());
+            texts.add(text);
+        }
+        return buildRequestBody("Génère une seule question de quiz en français pour chacun des textes suivants. "
+                + "La réponse doit être un tableau JSON contenant, pour chaque texte, un objet avec les champs "
+                + "'index' (l'index du texte), 'question' et 'answer'. "
+                + "Chaque question doit tester les connaissances contenues dans son texte utilisateur. Textes = " + texts);
+    }
+
+    private static String buildRequestBody(String prompt) {
+        JsonObject part = new JsonObject();
+        part.addProperty("text", prompt);
+        JsonArray parts = new JsonArray();
+        parts.add(part);
+        JsonObject content = new JsonObject();
+        content.add("parts", parts);
+        JsonArray contents = new JsonArray();
+        contents.add(content);
+        JsonObject body = new JsonObject();
+        body.add("contents", contents);
+        return body.toString();
     }
 
     /**
@@ -107,35 +584,66 @@ public class GeminiApiService {
             }
 
 
-            String rawText = root.getAsJsonArray("candidates")
-                    .get(0).getAsJsonObject()
-                    .getAsJsonObject("content")
-                    .getAsJsonArray("parts")
-                    .get(0).getAsJsonObject()
-                    .get("text").getAsString();
+            JsonObject quizJson = JsonParser.parseString(extractModelJson(root)).getAsJsonObject();
 
-            String cleanedJson = rawText
-                    .replace("```json", "")
-                    .replace("```", "")
-                    .trim();
-
-            JsonObject quizJson = JsonParser.parseString(cleanedJson).getAsJsonObject();
-
-            String question = quizJson.has("question") && !quizJson.get("question").isJsonNull()
-                    ? quizJson.get("question").getAsString()
-                    : null;
-
-            String answer = quizJson.has("answer") && !quizJson.get("answer").isJsonNull()
-                    ? quizJson.get("answer").getAsString()
-                    : null;
-
-            return Arrays.asList(question, answer); // <- accepte nulls
+            return Arrays.asList(stringOrNull(quizJson, "question"), stringOrNull(quizJson, "answer")); // <- accepte nulls
 
         } catch (Exception e) {
-            System.err.println("Failed to parse Gemini response: " + e.getMessage());
+            logger.warn("Failed to parse Gemini response", e);
             return Arrays.asList(null, null);
         }
     }
 
+    /**
+     * Parses the response to a batch prompt and fans the array back out to the texts of the batch.
+     *
+     * @param count the number of texts in the batch
+     * @return [question, answer] for every text, in the order of the batch; {@code null} for the texts
+     *         that have no usable quiz in the response
+     */
+    static List<List<String>> parseQuizzesFromResponse(String responseBody, int count) {
+        List<List<String>> quizzes = new ArrayList<>(Collections.nCopies(count, null));
+        try {
+            JsonObject root = JsonParser.parseString(responseBody).getAsJsonObject();
+            JsonArray items = JsonParser.parseString(extractModelJson(root)).getAsJsonArray();
+            for (JsonElement element : items) {
+                if (!element.isJsonObject()) {
+                    continue;
+                }
+                JsonObject item = element.getAsJsonObject();
+                if (!item.has("index") || !item.get("index").isJsonPrimitive()) {
+                    continue;
+                }
+                int index = item.get("index").getAsInt();
+                String question = stringOrNull(item, "question");
+                if (index >= 0 && index < count && question != null && quizzes.get(index) == null) {
+                    quizzes.set(index, Arrays.asList(question, stringOrNull(item, "answer")));
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to parse Gemini batch response", e);
+        }
+        return quizzes;
+    }
+
+    /**
+     * Returns the JSON written by the model, without the Markdown code fence it sometimes adds.
+     */
+    private static String extractModelJson(JsonObject root) {
+        String rawText = root.getAsJsonArray("candidates")
+                .get(0).getAsJsonObject()
+                .getAsJsonObject("content")
+                .getAsJsonArray("parts")
+                .get(0).getAsJsonObject()
+                .get("text").getAsString();
 
-}
\ No newline at end of file
+        return rawText
+                .replace("```json", "")
+                .replace("```", "")
+                .trim();
+    }
+
+    private static String stringOrNull(JsonObject object, String field) {
+        return object.has(field) && !object.get(field).isJsonNull() ? object.get(field).getAsString() : null;
+    }
+}
@@ -0,0 +1,36 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.utils.PageText;
+import be.esi.prj.utils.QuizResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Generates the quizzes with the Gemini API, see {@link GeminiApiService}.
+ */
+public class GeminiQuizGenerator implements QuizGenerator {
+
+    @Override
+    public CompletableFuture<List<QuizResult>> generateQuizzesAsync(List<PageText> pages, Consumer<QuizResult> onQuiz) {
+        return GeminiApiService.generateQuizzesAsync(pages, onQuiz);
+    }
+
+    /**
+     * Asks Gemini for a new question, ignoring the one cached for this text and leaving it in place,
+     * see {@link GeminiApiService#generateCandidateAsync(PageText)}.
+     */
+    @Override
+    public CompletableFuture<QuizResult> regenerateQuizAsync(PageText source) {
+        return GeminiApiService.generateCandidateAsync(source);
+    }
+
+    /**
+     * Idle while no Gemini request is running or waiting, see {@link GeminiApiService#isIdle()}.
+     */
+    @Override
+    public boolean isIdle() {
+        return GeminiApiService.isIdle();
+    }
+}
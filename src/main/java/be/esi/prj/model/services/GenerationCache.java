@@ -0,0 +1,155 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.utils.DiskLruCache;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent cache of the quizzes generated by Gemini, so that the same text is only paid for once.
+ * <p>
+ * The key is the SHA-256 of the whitespace-normalized text and of the prompt version: re-uploads and
+ * duplicate pages hit the cache, and changing the prompt invalidates every entry. Entries expire after
+ * a time-to-live and the least recently used ones are evicted once the cache exceeds its size.
+ * </p>
+ */
+public class GenerationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GenerationCache.class);
+
+    public static final Path DEFAULT_DIRECTORY = Path.of("external-data", "generation-cache");
+    public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofDays(30);
+
+    private final DiskLruCache entries;
+    private final Duration timeToLive;
+    private final Clock clock;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong generations = new AtomicLong();
+    private final AtomicLong generationNanos = new AtomicLong();
+    private final AtomicLong savedNanos = new AtomicLong();
+
+    public GenerationCache(Path directory, long maxBytes, Duration timeToLive) {
+        this(directory, maxBytes, timeToLive, Clock.systemUTC());
+    }
+
+    GenerationCache(Path directory, long maxBytes, Duration timeToLive, Clock clock) {
+        this.entries = new DiskLruCache(directory, maxBytes);
+        this.timeToLive = timeToLive;
+        this.clock = clock;
+    }
+
+    /**
+     * Computes the cache key of a text.
+     *
+     * @param text the OCR text sent to Gemini
+     * @param promptVersion the version of the prompt template the quiz is generated with
+     * @return the hex-encoded SHA-256 of the prompt version and the normalized text
+     */
+    public static String keyFor(String text, String promptVersion) {
+        String normalized = text.strip().replaceAll("\\s+", " ");
+        MessageDigest digest = newDigest();
+        digest.update(promptVersion.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the [question, answer] stored under the key, unless it has expired.
+     * An entry that cannot be read is dropped and counted as a miss.
+     */
+    public Optional<List<String>> get(String key) {
+        Optional<String> stored = entries.get(key);
+        if (stored.isPresent()) {
+            try {
+                JsonObject entry = JsonParser.parseString(stored.get()).getAsJsonObject();
+                long createdAt = entry.get("createdAt").getAsLong();
+                if (clock.millis() - createdAt <= timeToLive.toMillis()) {
+                    List<String> quiz = Arrays.asList(entry.get("question").getAsString(), stringOrNull(entry, "answer"));
+                    hits.incrementAndGet();
+                    savedNanos.addAndGet(averageGenerationNanos());
+                    return Optional.of(quiz);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Dropping unreadable generation cache entry {}: {}", key, e.getMessage());
+            }
+            entries.remove(key);
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Stores a generated [question, answer].
+     */
+    public void put(String key, List<String> quiz) {
+        JsonObject entry = new JsonObject();
+        entry.addProperty("createdAt", clock.millis());
+        entry.addProperty("question", quiz.get(0));
+        entry.addProperty("answer", quiz.get(1));
+        entries.put(key, entry.toString());
+    }
+
+    /**
+     * Records how long Gemini took to generate one quiz, to estimate the time saved by the hits.
+     */
+    public void recordGeneration(Duration duration) {
+        generations.incrementAndGet();
+        generationNanos.addAndGet(duration.toNanos());
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long lookups = hits.get() + misses.get();
+        return lookups == 0 ? 0 : (double) hits.get() / lookups;
+    }
+
+    /**
+     * Returns the Gemini time avoided by the hits, based on the average duration of the generations seen so far.
+     */
+    public Duration getSavedLatency() {
+        return Duration.ofNanos(savedNanos.get());
+    }
+
+    private static String stringOrNull(JsonObject entry, String property) {
+        JsonElement value = entry.get(property);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    private long averageGenerationNanos() {
+        long count = generations.get();
+        return count == 0 ? 0 : generationNanos.get() / count;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
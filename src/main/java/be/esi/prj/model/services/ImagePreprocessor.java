@@ -0,0 +1,385 @@
+package be.esi.prj.model.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepares photos for OCR: decode once, grayscale, downscale to a target resolution,
+ * adaptive thresholding and deskew.
+ * <p>
+ * Phone photos are much larger than what Tesseract needs, so shrinking them before recognition
+ * cuts both OCR time and memory. Every step can be switched off through {@link Options}
+ * and is timed, see {@link #getAverageMillis(Step)}.
+ * </p>
+ */
+public class ImagePreprocessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagePreprocessor.class);
+
+    /** Short side of an A4 page, used to turn a target DPI into a pixel size for photos without reliable DPI. */
+    private static final double PAGE_SHORT_SIDE_INCHES = 8.27;
+    /** Percentage below the local mean under which a pixel is considered ink (Bradley-Roth thresholding). */
+    private static final int THRESHOLD_PERCENT = 15;
+    private static final double MAX_SKEW_DEGREES = 5.0;
+    private static final double MIN_SKEW_DEGREES = 0.1;
+    private static final int MAX_SKEW_SAMPLES = 50_000;
+
+    /**
+     * The measured preprocessing steps.
+     */
+    public enum Step { DECODE, GRAYSCALE, DOWNSCALE, BINARIZE, DESKEW }
+
+    /**
+     * Toggles for every preprocessing step.
+     *
+     * @param grayscale convert to 8-bit grayscale
+     * @param downscale shrink the image so that the page is at most {@code targetDpi}
+     * @param targetDpi the resolution to aim for when downscaling
+     * @param binarize apply adaptive thresholding
+     * @param deskew detect and correct small rotations
+     */
+    public record Options(boolean grayscale, boolean downscale, int targetDpi, boolean binarize, boolean deskew) {
+
+        public static Options defaults() {
+            return new Options(true, true, 300, true, true);
+        }
+
+        /**
+         * Short description of the options, used to keep OCR results of different settings apart in caches.
+         */
+        public String tag() {
+            return (grayscale ? "g" : "") + (downscale ? "d" + targetDpi : "") + (binarize ? "b" : "") + (deskew ? "s" : "");
+        }
+    }
+
+    private final Options options;
+    private final Map<Step, LongAdder> totalNanos = new EnumMap<>(Step.class);
+    private final Map<Step, LongAdder> runs = new EnumMap<>(Step.class);
+
+    public ImagePreprocessor(Options options) {
+        this.options = options;
+        for (Step step : Step.values()) {
+            totalNanos.put(step, new LongAdder());
+            runs.put(step, new LongAdder());
+        }
+    }
+
+    public Options getOptions() {
+        return options;
+    }
+
+    /**
+     * Decodes and preprocesses an image file.
+     *
+     * @param file the image to load
+     * @return the image ready for OCR, or {@code null} if the format cannot be decoded by ImageIO
+     * @throws IOException if the file cannot be read
+     */
+    public BufferedImage load(File file) throws IOException {
+        long start = System.nanoTime();
+        BufferedImage image = decode(file);
+        record(Step.DECODE, start);
+        return image != null ? process(image) : null;
+    }
+
+    /**
+     * Applies the enabled steps to an already decoded image.
+     */
+    public BufferedImage process(BufferedImage image) {
+        long start;
+        // Thresholding and deskew work on gray levels, so they imply the grayscale step
+        if (options.grayscale() || options.binarize() || options.deskew()) {
+            start = System.nanoTime();
+            image = toGrayscale(image);
+            record(Step.GRAYSCALE, start);
+        }
+        if (options.downscale()) {
+            start = System.nanoTime();
+            image = downscale(image, targetShortSide());
+            record(Step.DOWNSCALE, start);
+        }
+        if (options.binarize()) {
+            start = System.nanoTime();
+            image = binarize(image);
+            record(Step.BINARIZE, start);
+        }
+        if (options.deskew()) {
+            start = System.nanoTime();
+            image = deskew(image);
+            record(Step.DESKEW, start);
+        }
+        return image;
+    }
+
+    /**
+     * Returns the average duration of a step, in milliseconds, over all the images processed so far.
+     */
+    public double getAverageMillis(Step step) {
+        long count = runs.get(step).sum();
+        return count == 0 ? 0 : totalNanos.get(step).sum() / 1e6 / count;
+    }
+
+    /**
+     * Decodes the file, letting the reader skip pixels when the photo is much larger than the target size.
+     */
+    private BufferedImage decode(File file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                throw new IOException("Cannot open " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (options.downscale()) {
+                    int shortSide = Math.min(reader.getWidth(0), reader.getHeight(0));
+                    int subsampling = Math.max(1, shortSide / targetShortSide());
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private int targetShortSide() {
+        return (int) Math.round(options.targetDpi() * PAGE_SHORT_SIDE_INCHES);
+    }
+
+    static BufferedImage toGrayscale(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+        BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        g.setColor(Color.WHITE); // transparent pixels become paper, not ink
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return gray;
+    }
+
+    /**
+     * Shrinks the image so that its short side is at most {@code maxShortSide},
+     * halving step by step to keep the strokes of small characters.
+     */
+    static BufferedImage downscale(BufferedImage image, int maxShortSide) {
+        int shortSide = Math.min(image.getWidth(), image.getHeight());
+        if (shortSide <= maxShortSide) {
+            return image;
+        }
+        double scale = (double) maxShortSide / shortSide;
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = resize(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height) {
+        int type = image.getType() == BufferedImage.TYPE_BYTE_GRAY ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        BufferedImage resized = new BufferedImage(width, height, type);
+        Graphics2D g = resized.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return resized;
+    }
+
+    /**
+     * Adaptive thresholding: a pixel becomes black when it is darker than the mean of its neighbourhood
+     * by more than {@link #THRESHOLD_PERCENT}. Uneven lighting of phone photos is handled because the
+     * threshold follows the local background. The window sums are maintained incrementally with a ring
+     * of row sums, so the memory stays proportional to the window and not to the image.
+     */
+    static BufferedImage binarize(BufferedImage gray) {
+        int width = gray.getWidth();
+        int height = gray.getHeight();
+        byte[] pixels = grayPixels(gray);
+        BufferedImage binary = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] out = ((DataBufferByte) binary.getRaster().getDataBuffer()).getData();
+
+        int radius = Math.max(7, Math.min(width, height) / 32);
+        int windowRows = 2 * radius + 1;
+        int[][] rowSums = new int[windowRows][width];
+        int[] columnSums = new int[width];
+
+        for (int y = 0; y < height + radius; y++) {
+            int slot = y % windowRows;
+            if (y >= windowRows) {
+                int[] leaving = rowSums[slot];
+                for (int x = 0; x < width; x++) {
+                    columnSums[x] -= leaving[x];
+                }
+            }
+            if (y < height) {
+                horizontalSums(pixels, y * width, width, radius, rowSums[slot]);
+                int[] entering = rowSums[slot];
+                for (int x = 0; x < width; x++) {
+                    columnSums[x] += entering[x];
+                }
+            }
+
+            int outY = y - radius;
+            if (outY < 0) {
+                continue;
+            }
+            int rows = Math.min(height - 1, outY + radius) - Math.max(0, outY - radius) + 1;
+            int offset = outY * width;
+            for (int x = 0; x < width; x++) {
+                int columns = Math.min(width - 1, x + radius) - Math.max(0, x - radius) + 1;
+                long value = (pixels[offset + x] & 0xFF) * (long) rows * columns * 100;
+                boolean ink = value <= (long) columnSums[x] * (100 - THRESHOLD_PERCENT);
+                out[offset + x] = ink ? 0 : (byte) 0xFF;
+            }
+        }
+        return binary;
+    }
+
+    private static void horizontalSums(byte[] pixels, int offset, int width, int radius, int[] sums) {
+        int sum = 0;
+        for (int x = 0; x < Math.min(radius, width); x++) {
+            sum += pixels[offset + x] & 0xFF;
+        }
+        for (int x = 0; x < width; x++) {
+            int entering = x + radius;
+            if (entering < width) {
+                sum += pixels[offset + entering] & 0xFF;
+            }
+            int leaving = x - radius - 1;
+            if (leaving >= 0) {
+                sum -= pixels[offset + leaving] & 0xFF;
+            }
+            sums[x] = sum;
+        }
+    }
+
+    /**
+     * Straightens a slightly rotated page. The angle is the one that makes the horizontal projection of
+     * the dark pixels the most peaked, i.e. where text lines fall in the fewest rows.
+     */
+    static BufferedImage deskew(BufferedImage gray) {
+        double angle = estimateSkewDegrees(gray);
+        if (Math.abs(angle) < MIN_SKEW_DEGREES) {
+            return gray;
+        }
+        return rotate(gray, -angle);
+    }
+
+    static double estimateSkewDegrees(BufferedImage gray) {
+        int width = gray.getWidth();
+        int height = gray.getHeight();
+        byte[] pixels = grayPixels(gray);
+
+        int dark = 0;
+        for (byte pixel : pixels) {
+            if ((pixel & 0xFF) < 128) {
+                dark++;
+            }
+        }
+        if (dark == 0) {
+            return 0;
+        }
+        int stride = Math.max(1, dark / MAX_SKEW_SAMPLES);
+        int[] xs = new int[dark / stride + 1];
+        int[] ys = new int[xs.length];
+        int samples = 0;
+        int seen = 0;
+        for (int i = 0; i < pixels.length && samples < xs.length; i++) {
+            if ((pixels[i] & 0xFF) < 128 && seen++ % stride == 0) {
+                xs[samples] = i % width;
+                ys[samples] = i / width;
+                samples++;
+            }
+        }
+
+        double best = bestAngle(xs, ys, samples, height, width, -MAX_SKEW_DEGREES, MAX_SKEW_DEGREES, 0.5);
+        return bestAngle(xs, ys, samples, height, width, best - 0.5, best + 0.5, 0.05);
+    }
+
+    private static double bestAngle(int[] xs, int[] ys, int samples, int height, int width,
+                                    double from, double to, double step) {
+        double bestAngle = 0;
+        double bestScore = -1;
+        int[] bins = new int[height + width];
+        for (double angle = from; angle <= to + 1e-9; angle += step) {
+            double tan = Math.tan(Math.toRadians(angle));
+            Arrays.fill(bins, 0);
+            for (int i = 0; i < samples; i++) {
+                int bin = (int) Math.round(ys[i] - xs[i] * tan) + width;
+                if (bin >= 0 && bin < bins.length) {
+                    bins[bin]++;
+                }
+            }
+            double score = 0;
+            for (int count : bins) {
+                score += (double) count * count;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestAngle = angle;
+            }
+        }
+        return bestAngle;
+    }
+
+    private static BufferedImage rotate(BufferedImage gray, double degrees) {
+        BufferedImage rotated = new BufferedImage(gray.getWidth(), gray.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = rotated.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, gray.getWidth(), gray.getHeight());
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g.rotate(Math.toRadians(degrees), gray.getWidth() / 2.0, gray.getHeight() / 2.0);
+        g.drawImage(gray, 0, 0, null);
+        g.dispose();
+        return rotated;
+    }
+
+    /**
+     * Returns the 8-bit pixels of the image, row after row, without copying when the raster allows it.
+     */
+    private static byte[] grayPixels(BufferedImage image) {
+        BufferedImage gray = toGrayscale(image);
+        int size = gray.getWidth() * gray.getHeight();
+        if (gray.getRaster().getDataBuffer() instanceof DataBufferByte buffer && buffer.getData().length == size) {
+            return buffer.getData();
+        }
+        return (byte[]) gray.getRaster().getDataElements(0, 0, gray.getWidth(), gray.getHeight(), null);
+    }
+
+    private void record(Step step, long start) {
+        long elapsed = System.nanoTime() - start;
+        totalNanos.get(step).add(elapsed);
+        runs.get(step).increment();
+        logger.debug("{} took {} ms", step, elapsed / 1_000_000);
+    }
+}
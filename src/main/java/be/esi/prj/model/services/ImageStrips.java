@@ -0,0 +1,200 @@
+package be.esi.prj.model.services;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a tall page into horizontal bands that can be recognized independently, and stitches the texts back.
+ * <p>
+ * Only oversized images are split, such as a long screenshot or a full A3 scan: bands run across the
+ * columns, tables and figures of a page, so an ordinary page is always recognized as a whole.
+ * </p>
+ * <p>
+ * Cuts are placed in the whitespace between text lines so that no line is split in two. When no blank row
+ * is found near the ideal cut, the bands overlap so that the line crossing the cut is complete in at
+ * least one of them; the line read twice is kept once when stitching.
+ * </p>
+ */
+final class ImageStrips {
+
+    /** Bands smaller than this are not worth the overhead of a separate recognition. */
+    static final int MIN_BAND_HEIGHT = 600;
+    /** Taller than an A4 page at 300 DPI (3508 px). */
+    static final int MIN_SPLIT_HEIGHT = 4500;
+    /** Height to width ratio of a long screenshot; an A4 or A3 page is about 1.41. */
+    static final double MIN_SPLIT_ASPECT_RATIO = 2.0;
+    /** Two readings of the overlapping line closer than this are the same line. */
+    private static final double SAME_LINE_SIMILARITY = 0.7;
+    private static final int MIN_FUZZY_LINE_LENGTH = 12;
+
+    private static final int GAP_MARGIN = 8;
+    private static final int OVERLAP_WITHOUT_GAP = 48;
+    private static final int DARK_LEVEL = 128;
+
+    private ImageStrips() {
+    }
+
+    /**
+     * Computes the bands of an image.
+     *
+     * @param image a grayscale or binarized page
+     * @param maxBands the maximum number of bands, usually the number of OCR engines
+     * @return the bands from top to bottom; a single band covering the image when it is not oversized
+     */
+    static List<Rectangle> split(BufferedImage image, int maxBands) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int bands = Math.min(maxBands, height / MIN_BAND_HEIGHT);
+        if (bands < 2 || !isOversized(width, height)) {
+            return List.of(new Rectangle(0, 0, width, height));
+        }
+
+        int[] inkPerRow = inkPerRow(image);
+        int bandHeight = height / bands;
+        int searchRadius = bandHeight / 4;
+
+        List<Rectangle> result = new ArrayList<>();
+        int top = 0;
+        for (int i = 1; i < bands; i++) {
+            int idealCut = i * bandHeight;
+            int cut = findGap(inkPerRow, idealCut - searchRadius, idealCut + searchRadius, idealCut);
+            int overlap = inkPerRow[cut] == 0 ? GAP_MARGIN : OVERLAP_WITHOUT_GAP;
+            int bottom = Math.min(height, cut + overlap);
+            result.add(new Rectangle(0, top, width, bottom - top));
+            top = Math.max(0, cut - overlap);
+        }
+        result.add(new Rectangle(0, top, width, height - top));
+        return result;
+    }
+
+    static boolean isOversized(int width, int height) {
+        return height >= MIN_SPLIT_HEIGHT || height >= width * MIN_SPLIT_ASPECT_RATIO;
+    }
+
+    /**
+     * Joins the texts of consecutive bands. The line crossing the border of two overlapping bands is often read
+     * twice, and a little differently: when the first line of a band looks like the last line of the previous
+     * one, only the longer reading is kept.
+     */
+    static String stitch(List<String> texts) {
+        List<String> lines = new ArrayList<>();
+        for (String text : texts) {
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            List<String> band = new ArrayList<>(List.of(text.strip().split("\n", -1)));
+            if (!lines.isEmpty()) {
+                String previous = lines.get(lines.size() - 1).strip();
+                String first = band.get(0).strip();
+                if (isSameLine(previous, first)) {
+                    if (first.length() > previous.length()) {
+                        lines.set(lines.size() - 1, band.get(0));
+                    }
+                    band.remove(0);
+                }
+            }
+            lines.addAll(band);
+        }
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Compares two readings of a line, ignoring case, spacing and punctuation: one of them may be cut
+     * short, or differ by a few misread characters.
+     */
+    static boolean isSameLine(String a, String b) {
+        String left = comparable(a);
+        String right = comparable(b);
+        if (left.equals(right)) {
+            return !left.isEmpty();
+        }
+        // Sur une ligne courte, un caractère de différence ("Page 1", "Page 2") change le sens
+        if (Math.min(left.length(), right.length()) < MIN_FUZZY_LINE_LENGTH) {
+            return false;
+        }
+        if (left.startsWith(right) || right.startsWith(left) || left.endsWith(right) || right.endsWith(left)) {
+            return Math.min(left.length(), right.length()) * 2 >= Math.max(left.length(), right.length());
+        }
+        int distance = editDistance(left, right);
+        return 1.0 - (double) distance / Math.max(left.length(), right.length()) >= SAME_LINE_SIMILARITY;
+    }
+
+    private static String comparable(String line) {
+        StringBuilder letters = new StringBuilder();
+        line.codePoints().filter(Character::isLetterOrDigit).map(Character::toLowerCase).forEach(letters::appendCodePoint);
+        return letters.toString();
+    }
+
+    private static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * Finds the row to cut at: the middle of the blankest run of rows in the window, preferring the one
+     * closest to the ideal position.
+     */
+    private static int findGap(int[] inkPerRow, int from, int to, int ideal) {
+        from = Math.max(0, from);
+        to = Math.min(inkPerRow.length - 1, to);
+        int minInk = Integer.MAX_VALUE;
+        for (int y = from; y <= to; y++) {
+            minInk = Math.min(minInk, inkPerRow[y]);
+        }
+
+        int bestRow = ideal;
+        int bestDistance = Integer.MAX_VALUE;
+        int y = from;
+        while (y <= to) {
+            if (inkPerRow[y] != minInk) {
+                y++;
+                continue;
+            }
+            int runStart = y;
+            while (y <= to && inkPerRow[y] == minInk) {
+                y++;
+            }
+            int middle = (runStart + y - 1) / 2;
+            int distance = Math.abs(middle - ideal);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestRow = middle;
+            }
+        }
+        return bestRow;
+    }
+
+    private static int[] inkPerRow(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] ink = new int[height];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRaster().getSamples(0, y, width, 1, 0, row);
+            int count = 0;
+            for (int level : row) {
+                if (level < DARK_LEVEL) {
+                    count++;
+                }
+            }
+            ink[y] = count;
+        }
+        return ink;
+    }
+}
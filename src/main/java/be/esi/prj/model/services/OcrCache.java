@@ -0,0 +1,79 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.utils.DiskLruCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Content-addressed cache of OCR results.
+ * <p>
+ * The key is the SHA-256 of the image bytes, so a renamed or re-dropped photo is recognized as the same image.
+ * The bytes are hashed through a memory-mapped channel to avoid copying large photos onto the heap.
+ * </p>
+ */
+public class OcrCache {
+
+    public static final Path DEFAULT_DIRECTORY = Path.of("external-data", "ocr-cache");
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final long MAP_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    private final DiskLruCache entries;
+
+    public OcrCache(Path directory, long maxBytes) {
+        this.entries = new DiskLruCache(directory, maxBytes);
+    }
+
+    /**
+     * Computes the cache key of an image.
+     *
+     * @param file the image file
+     * @return the hex-encoded SHA-256 of the file content
+     * @throws IOException if the file cannot be read
+     */
+    public String keyFor(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_CHUNK_SIZE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_CHUNK_SIZE, size - position));
+                digest.update(buffer);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public Optional<String> get(String key) {
+        return entries.get(key);
+    }
+
+    public void put(String key, String text) {
+        entries.put(key, text);
+    }
+
+    public long getHits() {
+        return entries.getHits();
+    }
+
+    public long getMisses() {
+        return entries.getMisses();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,37 +1,407 @@
 package be.esi.prj.model.services;
 
 import be.esi.prj.App;
+import be.esi.prj.utils.IngestionExecutor;
+import be.esi.prj.utils.IngestionTask;
 import net.sourceforge.tess4j.Tesseract;
 import net.sourceforge.tess4j.TesseractException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Service class for performing Optical Character Recognition (OCR) using Tesseract.
  * The class configures the Tesseract OCR library based on the operating system
  * and provides a method to scan an image and extract text.
+ * Engines are kept in a {@link TesseractPool} so that the language model is loaded once per engine
+ * instead of once per scanned image. When an {@link OcrCache} is configured, images that were already
+ * recognized are served from it without running Tesseract. Images are decoded and shrunk once by the
+ * {@link ImagePreprocessor} before being handed to Tesseract. Oversized images are cut into horizontal bands
+ * at whitespace gaps and the bands are recognized in parallel, see {@link #setParallelStrips(boolean)}.
+ * PDF and TIFF documents are streamed page by page, see {@link #scanPages(File, PageConsumer)}.
  */
 public class OcrService {
 
+    private static final Logger logger = LoggerFactory.getLogger(OcrService.class);
     private static final String LANGUAGE = "fra";
+    private static final int DEFAULT_RENDERING_DPI = 300;
     //private static final String OS_NAME = System.getProperty("os.name").toLowerCase();
 
+    private static OcrService instance;
+
+    private final TesseractPool enginePool;
+    private final OcrCache cache;
+    private final ImagePreprocessor preprocessor;
+    private volatile String trainedDataDirectory;
+    private volatile boolean parallelStrips = true;
+    private ForkJoinPool stripPool;
+
+    public OcrService() {
+        this(TesseractPool.DEFAULT_SIZE, TesseractPool.DEFAULT_IDLE_TIMEOUT, null,
+                new ImagePreprocessor(ImagePreprocessor.Options.defaults()));
+    }
+
+    /**
+     * Creates a service backed by its own engine pool.
+     *
+     * @param poolSize the maximum number of engines, usually one per OCR worker thread
+     * @param idleTimeout how long an unused engine stays loaded
+     * @param cache the OCR result cache, or {@code null} to always run Tesseract
+     * @param preprocessor the image preparation stage, or {@code null} to give the raw file to Tesseract
+     */
+    public OcrService(int poolSize, Duration idleTimeout, OcrCache cache, ImagePreprocessor preprocessor) {
+        this.enginePool = new TesseractPool(poolSize, idleTimeout, this::createEngine);
+        this.cache = cache;
+        this.preprocessor = preprocessor;
+    }
+
+    /**
+     * Returns the shared instance, whose engines and on-disk cache are reused by every upload of the session.
+     */
+    public static synchronized OcrService getInstance() {
+        if (instance == null) {
+            instance = new OcrService(TesseractPool.DEFAULT_SIZE, TesseractPool.DEFAULT_IDLE_TIMEOUT,
+                    new OcrCache(OcrCache.DEFAULT_DIRECTORY, OcrCache.DEFAULT_MAX_BYTES),
+                    new ImagePreprocessor(ImagePreprocessor.Options.defaults()));
+        }
+        return instance;
+    }
+
     /**
      * Scans an image file and extracts text using Tesseract OCR.
+     * The cache is checked first, so the same image is only recognized once.
      *
      * @param file The image file to process.
      * @return The extracted text from the image.
      * @throws TesseractException If Tesseract encounters an error during OCR.
      */
     public String scan(File file) throws TesseractException {
-        Tesseract tesseract = new Tesseract();
-        tesseract.setDatapath(getTrainedDataDirectory());
+        String key = cacheKeyFor(file);
+        if (key != null) {
+            Optional<String> cached = cache.get(key);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        }
+
+        String text = recognize(file);
+        if (key != null && text != null) {
+            cache.put(key, text);
+        }
+        return text;
+    }
+
+    /**
+     * Receives the text of the pages of a document as soon as each page is recognized.
+     */
+    @FunctionalInterface
+    public interface PageConsumer {
+        void accept(int pageNumber, String text);
+    }
+
+    /**
+     * Scans a multi-page PDF or TIFF document one page at a time.
+     * A page is rendered, recognized and handed to the consumer before the next one is rendered,
+     * so memory use stays the same whatever the length of the document.
+     *
+     * @param file the document to process
+     * @param consumer receives the text of every page, in page order
+     * @return the number of pages of the document
+     * @throws TesseractException if the document cannot be read or a page cannot be recognized
+     */
+    public int scanPages(File file, PageConsumer consumer) throws TesseractException {
+        String documentKey = cacheKeyFor(file);
+        try (DocumentPages pages = DocumentPages.open(file, renderingDpi())) {
+            int pageCount = pages.getPageCount();
+            for (int pageNumber = 1; pageNumber <= pageCount; pageNumber++) {
+                consumer.accept(pageNumber, scanPage(pages, pageNumber, documentKey));
+            }
+            return pageCount;
+        } catch (IOException e) {
+            throw new TesseractException("Unable to read the pages of " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Scans a multi-page document like {@link #scanPages(File, PageConsumer)}, but every page is rendered and
+     * recognized by a task of the OCR pool of {@code executor} while the calling thread only waits for it.
+     * The consumer runs on the calling thread, so a consumer that blocks does not hold an OCR worker and the
+     * caller can be a virtual thread.
+     *
+     * @param file the document to process
+     * @param consumer receives the text of every page, in page order
+     * @param executor runs the recognition of the pages
+     * @return the number of pages of the document
+     * @throws TesseractException if the document cannot be read or a page cannot be recognized
+     * @throws InterruptedException if the calling thread is interrupted while a page is recognized
+     */
+    public int scanPages(File file, PageConsumer consumer, IngestionExecutor executor)
+            throws TesseractException, InterruptedException {
+        String documentKey = cacheKeyFor(file);
+        try (DocumentPages pages = DocumentPages.open(file, renderingDpi())) {
+            int pageCount = pages.getPageCount();
+            for (int pageNumber = 1; pageNumber <= pageCount; pageNumber++) {
+                int page = pageNumber;
+                String text = await(executor.submit(IngestionTask.ocr("OCR page " + page + " of " + file.getName(),
+                        () -> scanPage(pages, page, documentKey))));
+                consumer.accept(pageNumber, text);
+            }
+            return pageCount;
+        } catch (IOException e) {
+            throw new TesseractException("Unable to read the pages of " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Scans an image like {@link #scan(File)} on the OCR pool of {@code executor}, the calling thread only waits.
+     */
+    public String scan(File file, IngestionExecutor executor) throws TesseractException, InterruptedException {
+        return await(executor.submit(IngestionTask.ocr("OCR " + file.getName(), () -> scan(file))));
+    }
+
+    private static String await(CompletableFuture<String> recognition) throws TesseractException, InterruptedException {
+        try {
+            return recognition.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TesseractException tesseractException) {
+                throw tesseractException;
+            }
+            throw new TesseractException("OCR task failed", e.getCause());
+        }
+    }
+
+    /**
+     * Scans a single page of a multi-page document, e.g. to generate a quiz again for that page.
+     *
+     * @param file the document
+     * @param pageNumber the page number, starting at 1
+     * @return the extracted text of the page
+     * @throws TesseractException if the document cannot be read or the page cannot be recognized
+     */
+    public String scanPage(File file, int pageNumber) throws TesseractException {
+        String documentKey = cacheKeyFor(file);
+        try (DocumentPages pages = DocumentPages.open(file, renderingDpi())) {
+            return scanPage(pages, pageNumber, documentKey);
+        } catch (IOException e) {
+            throw new TesseractException("Unable to read page " + pageNumber + " of " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the OCR result cache, or {@code null} if this service has none.
+     */
+    public OcrCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the preprocessing stage, or {@code null} if images are given to Tesseract as they are.
+     */
+    public ImagePreprocessor getPreprocessor() {
+        return preprocessor;
+    }
+
+    /**
+     * Switches between recognizing oversized images, such as long screenshots, as parallel horizontal bands
+     * (the default) and recognizing every image as a whole on the calling thread. Ordinary pages are always
+     * recognized as a whole, see {@link ImageStrips}.
+     */
+    public void setParallelStrips(boolean enabled) {
+        this.parallelStrips = enabled;
+    }
+
+    public boolean isParallelStrips() {
+        return parallelStrips;
+    }
+
+    private String scanPage(DocumentPages pages, int pageNumber, String documentKey) throws IOException, TesseractException {
+        String key = documentKey != null ? documentKey + "-p" + pageNumber : null;
+        if (key != null) {
+            Optional<String> cached = cache.get(key);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        }
+
+        BufferedImage page = pages.renderPage(pageNumber);
+        String text = recognize(preprocessor != null ? preprocessor.process(page) : page);
+        if (key != null && text != null) {
+            cache.put(key, text);
+        }
+        return text;
+    }
+
+    private int renderingDpi() {
+        return preprocessor != null ? preprocessor.getOptions().targetDpi() : DEFAULT_RENDERING_DPI;
+    }
+
+    private String cacheKeyFor(File file) {
+        if (cache == null) {
+            return null;
+        }
+        try {
+            // Different preprocessing settings give different texts for the same image
+            String variant = preprocessor != null ? "-" + preprocessor.getOptions().tag() : "";
+            return cache.keyFor(file) + variant;
+        } catch (IOException e) {
+            logger.warn("Unable to hash {}, skipping the OCR cache", file.getName(), e);
+            return null;
+        }
+    }
+
+    private String recognize(File file) throws TesseractException {
+        BufferedImage image = preprocess(file);
+        if (image != null) {
+            return recognize(image);
+        }
+        Tesseract tesseract = borrowEngine();
+        try {
+            return tesseract.doOCR(file);
+        } finally {
+            enginePool.release(tesseract);
+        }
+    }
+
+    private String recognize(BufferedImage image) throws TesseractException {
+        if (parallelStrips) {
+            List<Rectangle> bands = ImageStrips.split(image, enginePool.getMaxSize());
+            if (bands.size() > 1) {
+                return recognizeBands(image, bands);
+            }
+        }
+        return recognizeRegion(image);
+    }
+
+    /**
+     * Recognizes the bands of a tall page in parallel and joins their texts in reading order.
+     */
+    private String recognizeBands(BufferedImage image, List<Rectangle> bands) throws TesseractException {
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (Rectangle band : bands) {
+            tasks.add(() -> recognizeRegion(copyRegion(image, band)));
+        }
+
+        List<String> texts = new ArrayList<>();
+        try {
+            for (Future<String> text : stripPool().invokeAll(tasks)) {
+                texts.add(text.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TesseractException("Interrupted while recognizing the bands of the image", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TesseractException tesseractException) {
+                throw tesseractException;
+            }
+            throw new TesseractException("Failed to recognize a band of the image", e.getCause());
+        }
+        return ImageStrips.stitch(texts);
+    }
+
+    private String recognizeRegion(BufferedImage image) throws TesseractException {
+        Tesseract tesseract = borrowEngine();
+        try {
+            return tesseract.doOCR(image);
+        } finally {
+            enginePool.release(tesseract);
+        }
+    }
+
+    /**
+     * Copies a region into its own image: Tesseract reads the whole backing buffer of a sub-image.
+     */
+    private static BufferedImage copyRegion(BufferedImage image, Rectangle region) {
+        BufferedImage view = image.getSubimage(region.x, region.y, region.width, region.height);
+        WritableRaster raster = image.getColorModel().createCompatibleWritableRaster(region.width, region.height);
+        view.copyData(raster);
+        return new BufferedImage(image.getColorModel(), raster, image.isAlphaPremultiplied(), null);
+    }
+
+    private synchronized ForkJoinPool stripPool() {
+        if (stripPool == null) {
+            stripPool = new ForkJoinPool(enginePool.getMaxSize());
+        }
+        return stripPool;
+    }
+
+    /**
+     * Decodes and prepares the image, or returns {@code null} to let Tesseract read the file itself
+     * (no preprocessing configured, or a format ImageIO cannot decode).
+     */
+    private BufferedImage preprocess(File file) {
+        if (preprocessor == null) {
+            return null;
+        }
+        try {
+            return preprocessor.load(file);
+        } catch (IOException e) {
+            logger.warn("Unable to preprocess {}, using the original file", file.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Loads one engine per pool slot ahead of time, so that the first images of a batch
+     * do not wait for the language model.
+     */
+    public void warmUp() throws TesseractException {
+        try {
+            enginePool.prestart(enginePool.getMaxSize());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TesseractException("Interrupted while loading the OCR engines", e);
+        }
+    }
+
+    /**
+     * Closes the idle engines and releases their native memory.
+     */
+    public void shutdown() {
+        enginePool.close();
+        synchronized (this) {
+            if (stripPool != null) {
+                stripPool.shutdownNow();
+            }
+        }
+    }
+
+    private Tesseract borrowEngine() throws TesseractException {
+        try {
+            return enginePool.borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TesseractException("Interrupted while waiting for an OCR engine", e);
+        }
+    }
+
+    private Tesseract createEngine() {
+        Tesseract tesseract = new ReusableTesseract();
+        tesseract.setDatapath(resolveTrainedDataDirectory());
         tesseract.setLanguage(LANGUAGE);
+        return tesseract;
+    }
 
-        return tesseract.doOCR(file);
+    private String resolveTrainedDataDirectory() {
+        if (trainedDataDirectory == null) {
+            trainedDataDirectory = getTrainedDataDirectory();
+        }
+        return trainedDataDirectory;
     }
 
     private String getTrainedDataDirectory() {
@@ -0,0 +1,149 @@
+package be.esi.prj.model.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Cleans the raw Tesseract output of the pages of one document before it is sent to the quiz generator.
+ * <p>
+ * Words hyphenated at the end of a line are joined, whitespace is collapsed, lines carrying no
+ * information (page numbers, stray symbols, scanner noise) are removed, as well as the headers and footers
+ * repeated from one page to the next. The text is finally capped to a token budget. The prompt is smaller,
+ * so the request is cheaper and faster, and the model is not distracted by the noise.
+ * </p>
+ * <p>
+ * An instance remembers the headers and footers of the pages it has seen: use one per document.
+ * </p>
+ */
+public class OcrTextNormalizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrTextNormalizer.class);
+
+    /** Enough for the largest passages of {@link TextSegmenter}. */
+    public static final int DEFAULT_MAX_TOKENS = 2000;
+
+    /** Lines at the top and at the bottom of a page where headers and footers are looked for. */
+    private static final int PAGE_EDGE_LINES = 3;
+    private static final int MIN_LETTERS_PER_LINE = 3;
+    private static final double MIN_LETTER_RATIO = 0.4;
+
+    private static final Pattern HYPHENATION = Pattern.compile("(\\p{L})[-\\u00AD]\\n[ \\t]*(\\p{Ll})");
+    private static final Pattern SPACES = Pattern.compile("[\\s&&[^\\n]]+");
+    private static final Pattern PAGE_NUMBER = Pattern.compile("(?i)^[-–—\\s]*(page|p\\.)?\\s*\\d+(\\s*(/|sur|of)\\s*\\d+)?[-–—\\s]*$");
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+
+    private final int maxTokens;
+    private final Set<String> pageEdges = new HashSet<>();
+    private final Set<String> furniture = new HashSet<>();
+
+    /**
+     * Creates a normalizer for one document.
+     *
+     * @param maxTokens the estimated number of tokens a page is cut to, see {@link TextSegmenter#estimateTokens(String)}
+     */
+    public OcrTextNormalizer(int maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+
+    /**
+     * Cleans the text of the next page of the document.
+     *
+     * @param text the raw OCR text of the page
+     * @return the cleaned text, paragraphs separated by a blank line; empty if nothing is left
+     */
+    public String normalize(String text) {
+        if (text == null || text.isBlank()) {
+            return "";
+        }
+        String joined = HYPHENATION.matcher(text.replace("\r\n", "\n").replace('\r', '\n')).replaceAll("$1$2");
+
+        List<String> lines = new ArrayList<>();
+        for (String line : joined.split("\n", -1)) {
+            lines.add(SPACES.matcher(line).replaceAll(" ").strip());
+        }
+        Set<String> edges = edgeKeys(lines);
+
+        StringBuilder normalized = new StringBuilder();
+        boolean paragraphBreak = false;
+        for (String line : lines) {
+            if (line.isEmpty()) {
+                paragraphBreak = true;
+                continue;
+            }
+            if (isNoise(line) || (edges.contains(furnitureKey(line)) && furniture.contains(furnitureKey(line)))) {
+                continue;
+            }
+            if (!normalized.isEmpty()) {
+                normalized.append(paragraphBreak ? "\n\n" : "\n");
+            }
+            normalized.append(line);
+            paragraphBreak = false;
+        }
+        return truncate(normalized.toString());
+    }
+
+    /**
+     * Remembers the first and last lines of the page: a line found again at the edge of a later page is a
+     * header or a footer. Digits are ignored so that "Chapitre 2 - page 14" matches "Chapitre 2 - page 15".
+     */
+    private Set<String> edgeKeys(List<String> lines) {
+        List<String> content = lines.stream().filter(line -> !line.isEmpty() && !isNoise(line)).toList();
+        Set<String> edges = new HashSet<>();
+        for (int i = 0; i < content.size(); i++) {
+            if (i < PAGE_EDGE_LINES || i >= content.size() - PAGE_EDGE_LINES) {
+                edges.add(furnitureKey(content.get(i)));
+            }
+        }
+        for (String edge : edges) {
+            if (!pageEdges.add(edge)) {
+                furniture.add(edge);
+            }
+        }
+        return edges;
+    }
+
+    private static String furnitureKey(String line) {
+        return DIGITS.matcher(line.toLowerCase(Locale.ROOT)).replaceAll("#");
+    }
+
+    private static boolean isNoise(String line) {
+        if (PAGE_NUMBER.matcher(line).matches()) {
+            return true;
+        }
+        long letters = line.codePoints().filter(Character::isLetter).count();
+        long digits = line.codePoints().filter(Character::isDigit).count();
+        if (letters + digits < MIN_LETTERS_PER_LINE) {
+            return true;
+        }
+        long visible = line.codePoints().filter(c -> !Character.isWhitespace(c)).count();
+        return (double) (letters + digits) / visible < MIN_LETTER_RATIO;
+    }
+
+    /**
+     * Cuts the text to the token budget, at the end of a sentence when there is one in the second half.
+     */
+    private String truncate(String text) {
+        if (TextSegmenter.estimateTokens(text) <= maxTokens) {
+            return text;
+        }
+        int limit = maxTokens * TextSegmenter.CHARACTERS_PER_TOKEN;
+        int cut = Math.max(text.lastIndexOf(". ", limit), text.lastIndexOf(".\n", limit));
+        String truncated;
+        if (cut < limit / 2) {
+            cut = text.lastIndexOf(' ', limit);
+            truncated = (cut > 0 ? text.substring(0, cut) : text.substring(0, limit)).strip();
+        } else {
+            truncated = text.substring(0, cut + 1);
+        }
+        logger.debug("Truncated OCR text to {} token(s): dropped {} of {} characters",
+                maxTokens, text.length() - truncated.length(), text.length());
+        return truncated;
+    }
+}
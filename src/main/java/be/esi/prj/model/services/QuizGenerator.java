@@ -0,0 +1,45 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.utils.PageText;
+import be.esi.prj.utils.QuizResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Turns the OCR text of pages into quizzes.
+ * <p>
+ * Implementations: {@link GeminiQuizGenerator} asks the Gemini API, {@link ClozeQuizGenerator} builds
+ * fill-in-the-blank questions locally, and {@link FallbackQuizGenerator} combines two generators.
+ * </p>
+ */
+public interface QuizGenerator {
+
+    /**
+     * Generates one quiz per page without blocking the calling thread.
+     *
+     * @param pages the texts to turn into quizzes
+     * @param onQuiz called with a quiz as soon as it is generated, before the whole list is ready;
+     *               {@code null} to only get the complete list
+     * @return one quiz per page, in the same order, whose question is {@code null} when none could be
+     *         generated; cancelling it aborts the generation
+     */
+    CompletableFuture<List<QuizResult>> generateQuizzesAsync(List<PageText> pages, Consumer<QuizResult> onQuiz);
+
+    /**
+     * Generates another quiz for a page or a passage, when the user asks to "Generate Again".
+     *
+     * @param source the text the previous quiz was generated from
+     * @return the new quiz, whose question is {@code null} when none could be generated
+     */
+    CompletableFuture<QuizResult> regenerateQuizAsync(PageText source);
+
+    /**
+     * Tells whether speculative work, such as preparing quizzes for "Generate Again" ahead of time, can be
+     * started without delaying the quizzes of the pages or using up a request quota they need.
+     */
+    default boolean isIdle() {
+        return true;
+    }
+}
@@ -0,0 +1,450 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.utils.IngestionExecutor;
+import be.esi.prj.utils.IngestionTask;
+import be.esi.prj.utils.PageText;
+import be.esi.prj.utils.QuizResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Staged flow from dropped files to quizzes ready for review: OCR, then generation, then review.
+ * <p>
+ * The stages are connected by bounded queues. A quiz is handed to the review stage as soon as it is
+ * generated, while the next files are still being recognized. When the user reviews slower than quizzes
+ * are produced, the full queues block the generation and then the OCR workers, so only a few pages of
+ * text and a few quizzes are ever held in memory whatever the number of dropped files.
+ * </p>
+ * <p>
+ * The workers of every stage run on virtual threads and only wait, for a recognized page, a Gemini
+ * response or room in the next queue. The recognition itself runs on the OCR pool, one page per task,
+ * see {@link #ocrExtractor(OcrService, IngestionExecutor)}: a paused pipeline holds no OCR worker, and the
+ * other OCR tasks of the application are not stuck behind it.
+ * </p>
+ */
+public class QuizPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuizPipeline.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 8;
+
+    /**
+     * Extracts the text of a file, page by page.
+     */
+    @FunctionalInterface
+    public interface TextExtractor {
+        void extract(File file, OcrService.PageConsumer consumer) throws Exception;
+    }
+
+    /**
+     * Generates the quizzes of one or more pages without blocking, one quiz per page in the same order,
+     * see {@link GeminiApiService#generateQuizzesAsync(List, Consumer)}. A generator that streams its
+     * results can hand each quiz to {@code onQuiz} before the whole list is ready, so that it is reviewed
+     * sooner; the quizzes it does not hand over are taken from the list.
+     */
+    @FunctionalInterface
+    public interface Generator {
+        CompletableFuture<List<QuizResult>> generate(List<PageText> pages, Consumer<QuizResult> onQuiz);
+    }
+
+    private static final PageText END_OF_TEXTS = new PageText(null, 0, null);
+    private static final QuizResult END_OF_QUIZZES = new QuizResult(null, 0, null, null);
+
+    private final TextExtractor extractor;
+    private final Generator generator;
+    private final Queue<File> pendingFiles = new ConcurrentLinkedQueue<>();
+    private final BlockingQueue<PageText> texts;
+    private final BlockingQueue<QuizResult> quizzes;
+    private final AtomicInteger runningOcrWorkers = new AtomicInteger();
+    private final AtomicInteger runningGenerationWorkers = new AtomicInteger();
+    private final AtomicInteger generatedQuizzes = new AtomicInteger();
+    private final AtomicLong firstQuizNanos = new AtomicLong(-1);
+    private final Set<CompletableFuture<List<QuizResult>>> pendingGenerations = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+    private volatile int batchCharacterBudget;
+    private volatile TextSegmenter segmenter;
+    private volatile int normalizedMaxTokens;
+    private final AtomicLong rawTextBytes = new AtomicLong();
+    private final AtomicLong normalizedTextBytes = new AtomicLong();
+    /** Raw OCR bytes each queued text was normalized from, until its generation request is built. */
+    private final Map<PageText, Integer> rawBytesByText = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final AtomicInteger generationRequests = new AtomicInteger();
+    private final AtomicLong generationTokens = new AtomicLong();
+    private int generationWorkers;
+    private long startNanos;
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param extractor the OCR stage, see {@link #ocrExtractor(OcrService, IngestionExecutor)}
+     * @param generator the generation stage
+     * @param queueCapacity the number of texts, and of quizzes, that can wait for the next stage
+     */
+    public QuizPipeline(TextExtractor extractor, Generator generator, int queueCapacity) {
+        this.extractor = extractor;
+        this.generator = generator;
+        this.texts = new ArrayBlockingQueue<>(queueCapacity);
+        this.quizzes = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Lets a generation worker send the texts already waiting in the queue together, up to this number of
+     * characters. Texts are never held back to fill a batch, so batching only happens when OCR is ahead of
+     * generation. 0, the default, generates every page on its own.
+     */
+    public void setBatchCharacterBudget(int characters) {
+        this.batchCharacterBudget = characters;
+    }
+
+    /**
+     * Splits the text of every page into passages that each get their own quiz, so that a dense page gives
+     * several quizzes. {@code null}, the default, generates one quiz per page.
+     */
+    public void setTextSegmenter(TextSegmenter segmenter) {
+        this.segmenter = segmenter;
+    }
+
+    /**
+     * Cleans the OCR text of every page before it is segmented and generated, see {@link OcrTextNormalizer}.
+     *
+     * @param maxTokens the estimated number of tokens a page is cut to; 0, the default, sends the raw OCR text
+     */
+    public void setTextNormalization(int maxTokens) {
+        this.normalizedMaxTokens = maxTokens;
+    }
+
+    /**
+     * Returns the OCR stage of the application: multi-page documents are streamed page by page,
+     * images give a single page. Every page is recognized by a task of the OCR pool of {@code executor}.
+     */
+    public static TextExtractor ocrExtractor(OcrService ocrService, IngestionExecutor executor) {
+        return (file, consumer) -> {
+            if (DocumentPages.isMultiPage(file)) {
+                ocrService.scanPages(file, consumer, executor);
+            } else {
+                consumer.accept(1, ocrService.scan(file, executor));
+            }
+        };
+    }
+
+    /**
+     * Starts the OCR and generation workers. Can only be called once.
+     *
+     * @param files the files to turn into quizzes
+     * @param executor runs the workers on virtual threads
+     * @param ocrWorkers the number of files recognized at the same time
+     * @param generationWorkers the number of quizzes generated at the same time
+     */
+    public void start(List<File> files, IngestionExecutor executor, int ocrWorkers, int generationWorkers) {
+        if (startNanos != 0) {
+            throw new IllegalStateException("The pipeline is already started");
+        }
+        startNanos = System.nanoTime();
+        this.generationWorkers = generationWorkers;
+        pendingFiles.addAll(files);
+        runningOcrWorkers.set(ocrWorkers);
+        runningGenerationWorkers.set(generationWorkers);
+        for (int i = 0; i < generationWorkers; i++) {
+            executor.submit(IngestionTask.network("quiz generation", () -> {
+                runGenerationWorker();
+                return null;
+            }));
+        }
+        for (int i = 0; i < ocrWorkers; i++) {
+            executor.submit(IngestionTask.network("OCR stage", () -> {
+                runOcrWorker();
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * Waits for the next quiz to review.
+     *
+     * @return the next generated quiz, or {@code null} once every file has been processed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public QuizResult takeQuiz() throws InterruptedException {
+        QuizResult quiz = quizzes.take();
+        if (quiz == END_OF_QUIZZES) {
+            quizzes.put(END_OF_QUIZZES); // later calls return null too
+            return null;
+        }
+        return quiz;
+    }
+
+    /**
+     * Stops the pipeline: the remaining files are dropped, the pending Gemini requests are aborted and
+     * {@link #takeQuiz()} returns {@code null}. A page that is being recognized is finished first.
+     */
+    public void cancel() {
+        cancelled = true;
+        pendingFiles.clear();
+        synchronized (pendingGenerations) {
+            pendingGenerations.forEach(generation -> generation.cancel(true));
+        }
+        texts.clear(); // unblocks the OCR workers, which then see that the pipeline is cancelled
+        quizzes.clear();
+        quizzes.offer(END_OF_QUIZZES);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns how long the first quiz took to be ready for review, if one was generated.
+     */
+    public Optional<Duration> getTimeToFirstQuiz() {
+        long first = firstQuizNanos.get();
+        return first < 0 ? Optional.empty() : Optional.of(Duration.ofNanos(first - startNanos));
+    }
+
+    public int getGeneratedQuizCount() {
+        return generatedQuizzes.get();
+    }
+
+    private void runOcrWorker() {
+        try {
+            File file;
+            while (!cancelled && !Thread.currentThread().isInterrupted() && (file = pendingFiles.poll()) != null) {
+                extract(file);
+            }
+        } finally {
+            if (runningOcrWorkers.decrementAndGet() == 0) {
+                for (int i = 0; i < generationWorkers; i++) {
+                    put(texts, END_OF_TEXTS);
+                }
+            }
+        }
+    }
+
+    private void extract(File file) {
+        // Un normaliseur par document : il retient les en-têtes et pieds de page déjà vus
+        OcrTextNormalizer normalizer = normalizedMaxTokens > 0 ? new OcrTextNormalizer(normalizedMaxTokens) : null;
+        try {
+            extractor.extract(file, (pageNumber, rawText) -> {
+                if (cancelled) {
+                    throw new CancellationException("Quiz pipeline cancelled");
+                }
+                String text = normalizer != null ? normalize(normalizer, file, pageNumber, rawText) : rawText;
+                if (text == null || text.isBlank()) {
+                    logger.info("Aucun texte extrait de la page {} du fichier {}", pageNumber, file.getName());
+                    return;
+                }
+                TextSegmenter currentSegmenter = segmenter;
+                List<String> passages = currentSegmenter != null ? currentSegmenter.segment(text) : List.of(text);
+                // L'OCR brut d'une page découpée est réparti entre ses passages selon leur taille
+                double rawBytesPerByte = normalizer != null ? (double) utf8Length(rawText) / Math.max(1, utf8Length(text)) : 0;
+                for (int i = 0; i < passages.size(); i++) {
+                    generationTokens.addAndGet(TextSegmenter.estimateTokens(passages.get(i)));
+                    PageText pageText = new PageText(file, pageNumber, passages.size() > 1 ? i + 1 : 0, passages.get(i));
+                    if (normalizer != null) {
+                        rawBytesByText.put(pageText, (int) Math.round(utf8Length(passages.get(i)) * rawBytesPerByte));
+                    }
+                    put(texts, pageText);
+                }
+            });
+        } catch (CancellationException e) {
+            if (!cancelled) {
+                throw e; // interrupted
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // la boucle du worker s'arrête
+        } catch (Exception e) {
+            logger.error("Error extracting text from file: " + file.getName(), e);
+        }
+    }
+
+    private void runGenerationWorker() {
+        try {
+            PageText carried = null;
+            boolean ended = false;
+            while (!ended) {
+                PageText first = carried != null ? carried : take(texts);
+                carried = null;
+                if (first == END_OF_TEXTS) {
+                    break;
+                }
+                List<PageText> batch = new ArrayList<>(List.of(first));
+                int characters = first.text().length();
+                PageText next;
+                while ((next = texts.poll()) != null) {
+                    if (next == END_OF_TEXTS) {
+                        ended = true;
+                        break;
+                    }
+                    if (characters + next.text().length() > batchCharacterBudget) {
+                        carried = next;
+                        break;
+                    }
+                    batch.add(next);
+                    characters += next.text().length();
+                }
+                generate(batch);
+            }
+        } finally {
+            if (runningGenerationWorkers.decrementAndGet() == 0) {
+                logStatistics();
+                if (!cancelled) {
+                    put(quizzes, END_OF_QUIZZES);
+                }
+            }
+        }
+    }
+
+    private void generate(List<PageText> pages) {
+        if (cancelled) {
+            return;
+        }
+        // Les quiz diffusés arrivent sur les threads du client HTTP, ce worker les transmet à la revue
+        BlockingQueue<QuizResult> streamed = new LinkedBlockingQueue<>();
+        Set<QuizResult> published = Collections.newSetFromMap(new IdentityHashMap<>());
+        generationRequests.incrementAndGet();
+        logRequestSize(pages);
+        CompletableFuture<List<QuizResult>> generation;
+        // Une requête envoyée est enregistrée avant que cancel() ne puisse parcourir les requêtes en cours
+        synchronized (pendingGenerations) {
+            if (cancelled) {
+                return;
+            }
+            generation = generator.generate(pages, streamed::add);
+            pendingGenerations.add(generation);
+        }
+        generation.whenComplete((quizzes, error) -> streamed.add(END_OF_QUIZZES));
+        List<QuizResult> generated;
+        try {
+            QuizResult quiz;
+            // only parks this virtual thread, the requests themselves are asynchronous
+            while ((quiz = streamed.take()) != END_OF_QUIZZES) {
+                published.add(quiz);
+                publish(quiz);
+            }
+            generated = generation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            generation.cancel(true);
+            throw new CancellationException("Quiz pipeline interrupted");
+        } catch (CancellationException e) {
+            return;
+        } catch (ExecutionException e) {
+            logger.error("Error generating quizzes for " + pages.size() + " page(s), first file: "
+                    + pages.get(0).file().getName(), e.getCause());
+            return;
+        } finally {
+            pendingGenerations.remove(generation);
+        }
+
+        for (QuizResult quiz : generated) {
+            if (!published.contains(quiz)) {
+                publish(quiz);
+            }
+        }
+    }
+
+    private void publish(QuizResult quiz) {
+        if (quiz.getQuestion() == null) {
+            logger.warn("No quiz generated for {}", quiz.getSourceName());
+            return;
+        }
+        if (cancelled) {
+            return;
+        }
+        generatedQuizzes.incrementAndGet();
+        if (firstQuizNanos.compareAndSet(-1, System.nanoTime())) {
+            logger.info("First quiz ready after {} ms", getTimeToFirstQuiz().orElseThrow().toMillis());
+        }
+        put(quizzes, quiz);
+    }
+
+    private String normalize(OcrTextNormalizer normalizer, File file, int pageNumber, String rawText) {
+        if (rawText == null) {
+            return null;
+        }
+        String text = normalizer.normalize(rawText);
+        int rawBytes = utf8Length(rawText);
+        int normalizedBytes = utf8Length(text);
+        rawTextBytes.addAndGet(rawBytes);
+        normalizedTextBytes.addAndGet(normalizedBytes);
+        logger.debug("Normalized page {} of {}: {} -> {} bytes", pageNumber, file.getName(), rawBytes, normalizedBytes);
+        return text;
+    }
+
+    private void logRequestSize(List<PageText> pages) {
+        long rawBytes = 0;
+        long normalizedBytes = 0;
+        boolean normalized = true;
+        for (PageText page : pages) {
+            Integer raw = rawBytesByText.remove(page);
+            if (raw == null) {
+                normalized = false; // texte envoyé tel que l'OCR l'a reconnu
+                continue;
+            }
+            rawBytes += raw;
+            normalizedBytes += utf8Length(page.text());
+        }
+        if (!normalized) {
+            return;
+        }
+        logger.debug("Generation request for {} text(s), first file {}: {} -> {} bytes of OCR text",
+                pages.size(), pages.get(0).file().getName(), rawBytes, normalizedBytes);
+    }
+
+    private static int utf8Length(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private void logStatistics() {
+        int count = generatedQuizzes.get();
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+        logger.info("Quiz pipeline finished: {} quiz(zes) in {} ms, {} quiz(zes)/s, about {} token(s) of text per quiz",
+                count, elapsedMillis, String.format("%.2f", count * 1000.0 / Math.max(1, elapsedMillis)),
+                count == 0 ? 0 : generationTokens.get() / count);
+        long savedBytes = rawTextBytes.get() - normalizedTextBytes.get();
+        if (rawTextBytes.get() > 0) {
+            logger.info("Text normalization saved {} of {} bytes of OCR text over {} generation request(s), {} bytes per request on average",
+                    savedBytes, rawTextBytes.get(), generationRequests.get(), savedBytes / Math.max(1, generationRequests.get()));
+        }
+    }
+
+    private static <T> void put(BlockingQueue<T> queue, T item) {
+        try {
+            queue.put(item); // blocks while the next stage is behind
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Quiz pipeline interrupted");
+        }
+    }
+
+    private static <T> T take(BlockingQueue<T> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Quiz pipeline interrupted");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.utils.PageText;
+import be.esi.prj.utils.QuizResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Generates alternative quizzes in the background so that "Generate Again" does not make the user wait.
+ * <p>
+ * While a quiz is reviewed, {@link #prefetch(PageText)} starts generating a few other candidates from the
+ * same text. {@link #next(PageText)} hands out a candidate, a finished one first, and starts another one to
+ * keep the queue full. The candidates of a text are dropped, and their requests cancelled, as soon as the
+ * user keeps or abandons its quiz.
+ * </p>
+ * <p>
+ * Candidates are speculative: they are only started while the generator is idle, see
+ * {@link QuizGenerator#isIdle()}, so that they never compete with the quizzes of the pages for the
+ * request quota. "Generate Again" without a candidate ready simply waits for its own request.
+ * </p>
+ */
+public class QuizPrefetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuizPrefetcher.class);
+
+    /** Every candidate is a request to the generator, often never used, so only one is kept ahead. */
+    public static final int DEFAULT_CANDIDATES = 1;
+
+    private final QuizGenerator generator;
+    private final int candidateCount;
+    private final Map<PageText, List<CompletableFuture<QuizResult>>> candidates = new HashMap<>();
+
+    /**
+     * Creates a prefetcher.
+     *
+     * @param generator generates the candidates, see {@link QuizGenerator#regenerateQuizAsync(PageText)}
+     * @param candidateCount the number of candidates kept ready for each text under review; 0 disables prefetching
+     */
+    public QuizPrefetcher(QuizGenerator generator, int candidateCount) {
+        this.generator = generator;
+        this.candidateCount = candidateCount;
+    }
+
+    /**
+     * Starts generating candidates for a text until {@code candidateCount} of them are ready or in progress,
+     * if the generator is idle.
+     */
+    public synchronized void prefetch(PageText source) {
+        if (candidateCount < 1 || !generator.isIdle()) {
+            return;
+        }
+        List<CompletableFuture<QuizResult>> queue = candidates.computeIfAbsent(source, key -> new ArrayList<>());
+        while (queue.size() < candidateCount) {
+            queue.add(generate(source));
+        }
+    }
+
+    /**
+     * Takes the next candidate for a text and tops the queue up in the background.
+     *
+     * @return a candidate already generated if there is one, otherwise the one that started first,
+     *         or a new generation if nothing was prefetched
+     */
+    public synchronized CompletableFuture<QuizResult> next(PageText source) {
+        List<CompletableFuture<QuizResult>> queue = candidates.get(source);
+        CompletableFuture<QuizResult> candidate = null;
+        if (queue != null) {
+            candidate = takeReady(queue);
+            if (candidate == null && !queue.isEmpty()) {
+                candidate = queue.remove(0);
+            }
+        }
+        if (candidate == null) {
+            candidate = generate(source);
+        }
+        prefetch(source);
+        return candidate;
+    }
+
+    /**
+     * Cancels the candidates of a text whose review is over.
+     */
+    public synchronized void discard(PageText source) {
+        List<CompletableFuture<QuizResult>> queue = candidates.remove(source);
+        if (queue != null) {
+            queue.forEach(candidate -> candidate.cancel(true));
+        }
+    }
+
+    /**
+     * Cancels every candidate, e.g. when the upload window is closed.
+     */
+    public synchronized void cancelAll() {
+        candidates.values().forEach(queue -> queue.forEach(candidate -> candidate.cancel(true)));
+        candidates.clear();
+    }
+
+    public synchronized int getPendingCount() {
+        return candidates.values().stream().mapToInt(List::size).sum();
+    }
+
+    private static CompletableFuture<QuizResult> takeReady(List<CompletableFuture<QuizResult>> queue) {
+        // Un candidat raté est simplement remplacé par le réapprovisionnement
+        queue.removeIf(QuizPrefetcher::isFailed);
+        Iterator<CompletableFuture<QuizResult>> it = queue.iterator();
+        while (it.hasNext()) {
+            CompletableFuture<QuizResult> candidate = it.next();
+            if (candidate.isDone()) {
+                it.remove();
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isFailed(CompletableFuture<QuizResult> candidate) {
+        return candidate.isCompletedExceptionally() || (candidate.isDone() && candidate.join().getQuestion() == null);
+    }
+
+    private CompletableFuture<QuizResult> generate(PageText source) {
+        CompletableFuture<QuizResult> candidate = generator.regenerateQuizAsync(source);
+        candidate.whenComplete((quiz, error) -> {
+            if (error != null && !candidate.isCancelled()) {
+                logger.warn("Prefetching a quiz candidate failed: {}", error.toString());
+            }
+        });
+        return candidate;
+    }
+}
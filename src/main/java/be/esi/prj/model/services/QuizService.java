@@ -5,10 +5,12 @@ import be.esi.prj.model.orm.Question;
 import be.esi.prj.model.orm.User;
 import be.esi.prj.model.repository.QuizRepository;
 import be.esi.prj.utils.JPAUtil;
+import be.esi.prj.utils.UnitOfWork;
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.EntityTransaction;
 
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Service class for managing quiz-related operations, such as creating, and retrieving questions.
@@ -18,17 +20,24 @@ public class QuizService {
 
     private static QuizService instance;
 
-    private final QuizRepository questionRepository;
-    private final EntityManager em;
+    /** Questions committed together by {@link #saveAll(List)}. */
+    public static final int SAVE_CHUNK_SIZE = 1000;
+
+    private final Function<EntityManager, QuizRepository> questionRepositories;
+    private final UnitOfWork unitOfWork;
 
     private QuizService() {
-        this.em = JPAUtil.getEntityManager();
-        questionRepository = new QuizRepository(em);
+        this(JPAUtil.getUnitOfWork());
     }
 
     public QuizService(EntityManager em, QuizRepository repo) {
-        this.em = em;
-        this.questionRepository = repo;
+        this.unitOfWork = UnitOfWork.of(em);
+        this.questionRepositories = ignored -> repo;
+    }
+
+    public QuizService(UnitOfWork unitOfWork) {
+        this.unitOfWork = unitOfWork;
+        this.questionRepositories = QuizRepository::new;
     }
     /**
      * Returns the singleton instance of the QuizService.
@@ -51,18 +60,55 @@ public class QuizService {
      * @param folder The folder under which the question will be stored.
      */
     public void createAndSaveQuiz(String text, String answer, User user, Folder folder) {
-        EntityTransaction transaction = em.getTransaction();
         try {
-            transaction.begin();
             Question question = new Question(text, answer, user, folder);
-            questionRepository.save(question);
-            transaction.commit();
+            unitOfWork.runInTransaction(em -> questionRepositories.apply(em).save(question));
         } catch (Exception e) {
-            if (transaction.isActive()) transaction.rollback();
             throw new RuntimeException("Failed to create and save quiz", e);
         }
     }
 
+    /**
+     * Saves many questions at once, e.g. the quizzes approved during an upload review.
+     * <p>
+     * The questions are committed by chunks of {@link #SAVE_CHUNK_SIZE}: a commit costs a sync of the
+     * database, so one per question would dominate the time. If a chunk fails, the chunks before it stay saved.
+     * </p>
+     *
+     * @param questions The questions to save.
+     */
+    public void saveAll(List<Question> questions) {
+        saveAll(questions, (em, chunk) -> { });
+    }
+
+    /**
+     * Saves many questions of a user at once, like {@link #saveAll(List)}, given the ID of the user.
+     *
+     * @param questions The questions to save; their user is replaced.
+     * @param userId The ID of the user who created the questions.
+     */
+    public void saveAll(List<Question> questions, int userId) {
+        saveAll(questions, (em, chunk) -> {
+            // Une référence suffit pour la clé étrangère : pas de SELECT de l'utilisateur
+            User user = em.getReference(User.class, userId);
+            chunk.forEach(question -> question.setUser(user));
+        });
+    }
+
+    private void saveAll(List<Question> questions, BiConsumer<EntityManager, List<Question>> beforeSave) {
+        for (int from = 0; from < questions.size(); from += SAVE_CHUNK_SIZE) {
+            List<Question> chunk = questions.subList(from, Math.min(from + SAVE_CHUNK_SIZE, questions.size()));
+            try {
+                unitOfWork.runInTransaction(em -> {
+                    beforeSave.accept(em, chunk);
+                    questionRepositories.apply(em).saveAll(chunk);
+                });
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to save questions " + from + " to " + (from + chunk.size() - 1), e);
+            }
+        }
+    }
+
     /**
      * Retrieves the list of due questions for a specific user and folder.
      *
@@ -71,6 +117,38 @@ public class QuizService {
      * @return A list of due questions.
      */
     public List<Question> getDueQuestions(int folderId, User user) {
-        return questionRepository.getDueQuestions(folderId, user);
+        return unitOfWork.read(em -> questionRepositories.apply(em).getDueQuestions(folderId, user));
+    }
+
+    /**
+     * Retrieves the list of due questions for a specific folder, given the ID of the user.
+     *
+     * @param folderId The ID of the folder containing the questions.
+     * @param userId The ID of the user whose due questions are to be retrieved.
+     * @return A list of due questions.
+     */
+    public List<Question> getDueQuestions(int folderId, int userId) {
+        return unitOfWork.read(em -> questionRepositories.apply(em).getDueQuestions(folderId, userId));
+    }
+
+    /**
+     * Retrieves the text and answer of every question of a user, e.g. as the corpus of the
+     * {@link ClozeQuizGenerator}.
+     *
+     * @param user The user whose questions are retrieved.
+     * @return One string per question.
+     */
+    public List<String> getQuestionTexts(User user) {
+        return unitOfWork.read(em -> questionRepositories.apply(em).getQuestionTexts(user));
+    }
+
+    /**
+     * Retrieves the text and answer of every question of a user, given the ID of the user.
+     *
+     * @param userId The ID of the user whose questions are retrieved.
+     * @return One string per question.
+     */
+    public List<String> getQuestionTexts(int userId) {
+        return unitOfWork.read(em -> questionRepositories.apply(em).getQuestionTexts(userId));
     }
 }
@@ -0,0 +1,250 @@
+package be.esi.prj.model.services;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.BitSet;
+import java.util.concurrent.Flow;
+
+/**
+ * Incremental parser of a {@code streamGenerateContent?alt=sse} response to a batch prompt.
+ * <p>
+ * The model writes the JSON array of quizzes a few tokens at a time, spread over the server-sent events.
+ * Each event is read with a streaming {@link JsonReader} to take the text written by the model, and the
+ * text is scanned as it arrives: every quiz object is handed to the listener as soon as its closing brace
+ * is received, without waiting for the rest of the array nor building a JSON tree of the response.
+ * </p>
+ * <p>
+ * The parser receives the body line by line as a {@link Flow.Subscriber}. It can be subscribed again when
+ * the request is retried: the text received so far is dropped, but a quiz already handed to the listener
+ * is not handed again.
+ * </p>
+ */
+final class QuizStreamParser implements Flow.Subscriber<String> {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuizStreamParser.class);
+
+    /**
+     * Receives the quizzes of the batch as they are parsed.
+     */
+    @FunctionalInterface
+    interface QuizListener {
+        void onQuiz(int index, String question, String answer);
+    }
+
+    private final int count;
+    private final QuizListener listener;
+    private final BitSet received = new BitSet();
+
+    private final StringBuilder eventData = new StringBuilder();
+    private final StringBuilder currentObject = new StringBuilder();
+    private int objectDepth;
+    private boolean inString;
+    private boolean escaped;
+
+    /**
+     * Creates a parser.
+     *
+     * @param count the number of texts in the batch, quizzes with another index are ignored
+     * @param listener called once per index, on the thread that receives the response
+     */
+    QuizStreamParser(int count, QuizListener listener) {
+        this.count = count;
+        this.listener = listener;
+    }
+
+    @Override
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+        eventData.setLength(0);
+        currentObject.setLength(0);
+        objectDepth = 0;
+        inString = false;
+        escaped = false;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized void onNext(String line) {
+        acceptLine(line);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // the error completes the response future, the quizzes received so far are kept
+    }
+
+    @Override
+    public synchronized void onComplete() {
+        dispatchEvent(); // the last event may not be followed by a blank line
+    }
+
+    /**
+     * Returns whether the quiz of a text has been received.
+     */
+    synchronized boolean hasReceived(int index) {
+        return received.get(index);
+    }
+
+    /**
+     * Handles one line of the event stream: "data:" lines are accumulated until the blank line that ends the event.
+     */
+    synchronized void acceptLine(String line) {
+        if (line.isEmpty()) {
+            dispatchEvent();
+        } else if (line.startsWith("data:")) {
+            if (!eventData.isEmpty()) {
+                eventData.append('\n');
+            }
+            eventData.append(line.substring(line.startsWith("data: ") ? 6 : 5));
+        }
+        // les commentaires (":") et les autres champs (event, id, retry) ne sont pas utilisés
+    }
+
+    private void dispatchEvent() {
+        if (eventData.isEmpty()) {
+            return;
+        }
+        String data = eventData.toString();
+        eventData.setLength(0);
+        try {
+            scanModelText(readModelText(data));
+        } catch (IOException | IllegalStateException e) {
+            logger.warn("Failed to parse Gemini stream event: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reads candidates[0].content.parts[*].text from one chunk of the response.
+     */
+    private static String readModelText(String chunk) throws IOException {
+        StringBuilder text = new StringBuilder();
+        try (JsonReader reader = new JsonReader(new StringReader(chunk))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("candidates") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    if (reader.hasNext()) {
+                        readCandidate(reader, text);
+                    }
+                    while (reader.hasNext()) {
+                        reader.skipValue();
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return text.toString();
+    }
+
+    private static void readCandidate(JsonReader reader, StringBuilder text) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("content") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("parts") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            readPart(reader, text);
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readPart(JsonReader reader, StringBuilder text) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("text") && reader.peek() == JsonToken.STRING) {
+                text.append(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Follows the braces of the model text, outside of its strings, and parses each top-level object once it
+     * is closed. The Markdown fence and the brackets of the array around the objects are skipped.
+     */
+    private void scanModelText(String fragment) {
+        for (int i = 0; i < fragment.length(); i++) {
+            char c = fragment.charAt(i);
+            if (objectDepth > 0) {
+                currentObject.append(c);
+            }
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                if (objectDepth++ == 0) {
+                    currentObject.setLength(0);
+                    currentObject.append(c);
+                }
+            } else if (c == '}' && objectDepth > 0 && --objectDepth == 0) {
+                parseQuiz(currentObject.toString());
+            }
+        }
+    }
+
+    private void parseQuiz(String object) {
+        int index = -1;
+        String question = null;
+        String answer = null;
+        try (JsonReader reader = new JsonReader(new StringReader(object))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "index" -> index = reader.peek() == JsonToken.NUMBER ? reader.nextInt() : skip(reader, -1);
+                    case "question" -> question = nextStringOrNull(reader);
+                    case "answer" -> answer = nextStringOrNull(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            logger.warn("Failed to parse streamed quiz: {}", e.getMessage());
+            return;
+        }
+        if (index >= 0 && index < count && question != null && !received.get(index)) {
+            received.set(index);
+            listener.onQuiz(index, question, answer);
+        }
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        return skip(reader, null);
+    }
+
+    private static <T> T skip(JsonReader reader, T value) throws IOException {
+        reader.skipValue();
+        return value;
+    }
+}
@@ -0,0 +1,47 @@
+package be.esi.prj.model.services;
+
+import net.sourceforge.tess4j.Tesseract;
+
+/**
+ * Tesseract engine that keeps its native handle (and the loaded traineddata) alive between calls.
+ * <p>
+ * The stock {@link Tesseract} initializes and disposes the native API around every {@code doOCR} call,
+ * which reloads the language model each time. This subclass initializes once and only releases the
+ * handle when {@link #close()} is called. An instance is not thread-safe: it must be used by one thread
+ * at a time, which is what {@link TesseractPool} guarantees.
+ * </p>
+ */
+class ReusableTesseract extends Tesseract {
+
+    private boolean initialized;
+
+    @Override
+    protected void init() {
+        if (!initialized) {
+            super.init();
+            initialized = true;
+        }
+    }
+
+    /**
+     * Loads the language model now rather than on the first {@code doOCR} call.
+     */
+    void initialize() {
+        init();
+    }
+
+    @Override
+    protected void dispose() {
+        // The handle is kept for the next call, see close()
+    }
+
+    /**
+     * Releases the native handle. The engine re-initializes itself if it is used again afterwards.
+     */
+    void close() {
+        if (initialized) {
+            super.dispose();
+            initialized = false;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.model.orm.DifficultyLevel;
+
+import java.time.LocalDate;
+
+/**
+ * A grade given to a question during a quiz session, with the schedule it leads to.
+ * <p>
+ * The grade carries the resulting state of the review history rather than a change, so applying it twice
+ * (e.g. when replaying the {@link ReviewJournal} after a crash) gives the same result.
+ * </p>
+ *
+ * @param questionId the graded question
+ * @param userId the user who graded it
+ * @param difficulty the difficulty chosen by the user
+ * @param reviewDate the day of the review
+ * @param nextReviewDate the day the question is due again
+ * @param easeFactor the updated ease factor
+ */
+public record ReviewGrade(long questionId, int userId, DifficultyLevel difficulty,
+                          LocalDate reviewDate, LocalDate nextReviewDate, double easeFactor) {
+
+    private static final String SEPARATOR = "\t";
+
+    /**
+     * Formats the grade as one line of the journal file.
+     */
+    String toLine() {
+        return String.join(SEPARATOR, String.valueOf(questionId), String.valueOf(userId), difficulty.name(),
+                reviewDate.toString(), nextReviewDate.toString(), String.valueOf(easeFactor));
+    }
+
+    /**
+     * Parses a line written by {@link #toLine()}.
+     *
+     * @throws IllegalArgumentException if the line is malformed, e.g. cut short by a crash
+     */
+    static ReviewGrade parse(String line) {
+        String[] fields = line.split(SEPARATOR);
+        if (fields.length != 6) {
+            throw new IllegalArgumentException("Malformed review grade: " + line);
+        }
+        try {
+            return new ReviewGrade(Long.parseLong(fields[0]), Integer.parseInt(fields[1]),
+                    DifficultyLevel.valueOf(fields[2]), LocalDate.parse(fields[3]), LocalDate.parse(fields[4]),
+                    Double.parseDouble(fields[5]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed review grade: " + line, e);
+        }
+    }
+}
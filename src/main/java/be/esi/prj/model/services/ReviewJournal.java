@@ -0,0 +1,272 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.model.repository.ReviewHistoryRepository;
+import be.esi.prj.utils.JPAUtil;
+import be.esi.prj.utils.UnitOfWork;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind journal of the grades given during quiz sessions.
+ * <p>
+ * {@link #record(ReviewGrade)} only appends the grade to a file and to an in-memory queue, so the next card
+ * shows up without waiting for the database. A background thread saves the queued grades in one transaction
+ * once {@code batchSize} of them are waiting, or every {@code flushInterval}. {@link #flush()} saves them right
+ * away, e.g. when a quiz session is closed, and {@link #close()} when the application stops.
+ * </p>
+ * <p>
+ * The file always holds the grades not committed yet: after a crash, {@link #recover()} queues them again.
+ * Each line is written to the operating system before {@code record} returns, which survives a crash of the
+ * application but not a power loss.
+ * </p>
+ */
+public final class ReviewJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReviewJournal.class);
+
+    public static final Path DEFAULT_FILE = Path.of("external-data", "review-journal.log");
+    public static final int DEFAULT_BATCH_SIZE = 20;
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(2);
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private static ReviewJournal instance;
+
+    private final UnitOfWork unitOfWork;
+    private final Path file;
+    private final int batchSize;
+    private final ScheduledExecutorService flusher;
+    /** Held while saving a batch, so that only one batch is saved at a time. */
+    private final Object flushLock = new Object();
+
+    /** Grades not committed yet, in the order of the file; guarded by {@code this}. */
+    private final List<ReviewGrade> pending = new ArrayList<>();
+    private BufferedWriter writer;
+
+    /**
+     * Creates a journal.
+     *
+     * @param unitOfWork the unit of work saving the grades
+     * @param file the file holding the grades not committed yet
+     * @param batchSize the number of queued grades triggering a save
+     * @param flushInterval the maximum time a grade waits in the queue
+     */
+    public ReviewJournal(UnitOfWork unitOfWork, Path file, int batchSize, Duration flushInterval) {
+        this.unitOfWork = unitOfWork;
+        this.file = file;
+        this.batchSize = batchSize;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "review-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.flusher = executor;
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized ReviewJournal getInstance() {
+        if (instance == null) {
+            instance = new ReviewJournal(JPAUtil.getUnitOfWork(), DEFAULT_FILE, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL);
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a grade. It is written to the journal file before this method returns and saved in the
+     * database later.
+     *
+     * @throws UncheckedIOException if the journal file cannot be written
+     */
+    public void record(ReviewGrade grade) {
+        boolean batchReady;
+        synchronized (this) {
+            try {
+                BufferedWriter out = openWriter();
+                out.write(grade.toLine());
+                out.newLine();
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write the review journal " + file, e);
+            }
+            pending.add(grade);
+            batchReady = pending.size() >= batchSize;
+        }
+        if (batchReady && !flusher.isShutdown()) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Queues the grades left in the journal file by a previous run and saves them. Lines cut short by a
+     * crash are skipped. If the grades cannot be saved now, the background saves retry them.
+     */
+    public void recover() {
+        // Pas de sauvegarde en cours pendant que la file est remplacée
+        synchronized (flushLock) {
+            synchronized (this) {
+                if (!Files.exists(file)) {
+                    return;
+                }
+                List<String> lines;
+                try {
+                    lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    logger.error("Failed to read the review journal {}", file, e);
+                    return;
+                }
+                // Le fichier contient déjà tout ce qui est en attente : il remplace la file
+                pending.clear();
+                for (String line : lines) {
+                    if (line.isBlank()) continue;
+                    try {
+                        pending.add(ReviewGrade.parse(line));
+                    } catch (IllegalArgumentException e) {
+                        logger.warn("Skipping an unreadable line of the review journal: {}", line);
+                    }
+                }
+                if (!pending.isEmpty()) {
+                    logger.info("Recovering {} review grades from {}", pending.size(), file);
+                }
+            }
+            flushQuietly();
+        }
+    }
+
+    /**
+     * Saves the queued grades now, in one transaction.
+     *
+     * @throws RuntimeException if the grades cannot be saved; they stay queued and in the journal
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<ReviewGrade> batch;
+            synchronized (this) {
+                batch = List.copyOf(pending);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            unitOfWork.runInTransaction(em -> apply(em, batch));
+            synchronized (this) {
+                // Seules les notes ajoutées pendant la transaction restent en attente
+                pending.subList(0, batch.size()).clear();
+                rewriteFile();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of grades not saved yet.
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Stops the background saves and saves the queued grades. If that fails, they stay in the journal
+     * file for {@link #recover()}.
+     */
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+        synchronized (this) {
+            closeWriter();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Failed to save review grades, they will be retried", e);
+        }
+    }
+
+    /**
+     * Saves a batch with one upsert per question, without reading the histories first. The last grade of each
+     * question wins, as the grades carry the resulting state.
+     */
+    private static void apply(EntityManager em, List<ReviewGrade> batch) {
+        Map<GradedCard, ReviewGrade> lastGrades = new LinkedHashMap<>();
+        for (ReviewGrade grade : batch) {
+            lastGrades.put(new GradedCard(grade.userId(), grade.questionId()), grade);
+        }
+        ReviewHistoryRepository repository = new ReviewHistoryRepository(em);
+        for (ReviewGrade grade : lastGrades.values()) {
+            boolean saved = repository.upsert(grade.questionId(), grade.userId(), grade.difficulty(),
+                    grade.reviewDate(), grade.nextReviewDate(), grade.easeFactor());
+            if (!saved) {
+                logger.warn("Dropping the grade of deleted question {}", grade.questionId());
+            }
+        }
+    }
+
+    private BufferedWriter openWriter() throws IOException {
+        if (writer == null) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        return writer;
+    }
+
+    /**
+     * Replaces the journal file by the grades still pending; called with the lock held.
+     */
+    private void rewriteFile() {
+        closeWriter();
+        try {
+            if (pending.isEmpty()) {
+                Files.deleteIfExists(file);
+                return;
+            }
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temporary, pending.stream().map(ReviewGrade::toLine).toList(), StandardCharsets.UTF_8);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Les notes déjà enregistrées seront rejouées au prochain démarrage, sans effet puisqu'idempotentes
+            logger.warn("Failed to rewrite the review journal {}", file, e);
+        }
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close the review journal {}", file, e);
+            }
+            writer = null;
+        }
+    }
+
+    private record GradedCard(int userId, long questionId) {}
+}
@@ -3,41 +3,76 @@ package be.esi.prj.model.services;
 import be.esi.prj.model.orm.DifficultyLevel;
 import be.esi.prj.model.orm.Question;
 import be.esi.prj.model.orm.ReviewHistory;
+import be.esi.prj.model.orm.User;
 import be.esi.prj.model.repository.ReviewHistoryRepository;
 import be.esi.prj.utils.JPAUtil;
+import be.esi.prj.utils.UnitOfWork;
 import jakarta.persistence.EntityManager;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Service class responsible for managing review history and scheduling the next review based on the user's progress.
  */
 public class ReviewService {
 
-    private final EntityManager em;
-    private final ReviewHistoryRepository reviewRepository;
+    private final UnitOfWork unitOfWork;
+    private final Function<EntityManager, ReviewHistoryRepository> reviewRepositories;
     private final UserService userService;
+    /** Saves the grades in the background; null to save each grade in its own transaction. */
+    private final ReviewJournal journal;
+    /**
+     * Histories of the questions of the current quiz session, keyed by question ID; a null value means the
+     * question has never been reviewed. Filled by {@link #preload(List)} and kept up to date by {@link #save}.
+     */
+    private final Map<Long, ReviewHistory> sessionHistories = new HashMap<>();
 
     /**
-     * Default constructor initializing the EntityManager, Repository and UserService.
+     * Default constructor initializing the unit of work, Repository, UserService and ReviewJournal.
      */
     public ReviewService() {
-        this.em = JPAUtil.getEntityManager();
-        this.reviewRepository = new ReviewHistoryRepository(em);
+        this.unitOfWork = JPAUtil.getUnitOfWork();
+        this.reviewRepositories = ReviewHistoryRepository::new;
         this.userService = UserService.getInstance();
+        this.journal = ReviewJournal.getInstance();
     }
 
     /**
-     * Constructor for testing purposes.
+     * Constructor for testing purposes; each grade is saved in its own transaction.
      */
     public ReviewService(EntityManager em, ReviewHistoryRepository repository, UserService userService) {
-        this.em = em;
-        this.reviewRepository = repository;
+        this(em, repository, userService, null);
+    }
+
+    /**
+     * Constructor for testing purposes, saving the grades through the given journal.
+     */
+    public ReviewService(EntityManager em, ReviewHistoryRepository repository, UserService userService, ReviewJournal journal) {
+        this.unitOfWork = UnitOfWork.of(em);
+        this.reviewRepositories = ignored -> repository;
         this.userService = userService;
+        this.journal = journal;
+    }
+
+    /**
+     * Loads the review histories of the questions of a quiz session in one query. Afterwards, {@link #save} and
+     * {@link #getRemainingReviewTimes} no longer query the database to find the history of these questions.
+     *
+     * @param questions The questions of the session.
+     */
+    public void preload(List<Question> questions) {
+        int userId = userService.getCurrentUserId();
+        List<Long> questionIds = questions.stream().map(Question::getQuestionId).toList();
+        Map<Long, ReviewHistory> histories = unitOfWork.read(em -> reviewRepositories.apply(em).findReviewHistories(questionIds, userId));
+        sessionHistories.clear();
+        questionIds.forEach(id -> sessionHistories.put(id, histories.get(id)));
     }
 
     /**
@@ -47,10 +82,12 @@ public class ReviewService {
      * @param difficulty The difficulty level chosen by the user.
      */
     public void save(Question question, DifficultyLevel difficulty) {
-        ReviewHistory existingHistory = reviewRepository.findReviewHistory(question, userService.getCurrentUser());
+        ReviewHistory existingHistory = findReviewHistory(question);
         NextReviewDetails result = computeNextReviewSchedule(difficulty, existingHistory);
 
-        if (existingHistory != null) {
+        if (journal != null) {
+            recordGrade(question, difficulty, result, existingHistory);
+        } else if (existingHistory != null) {
             updateReviewHistory(existingHistory, difficulty, result, question);
         } else {
             createNewReviewHistory(question, difficulty, result);
@@ -131,7 +168,7 @@ public class ReviewService {
         existingHistory.setEaseFactor(result.easeFactor());
         question.setDifficulty(difficulty);
 
-        executeTransaction(() -> {
+        executeTransaction(em -> {
             em.merge(existingHistory);
             em.merge(question);
         });
@@ -145,8 +182,8 @@ public class ReviewService {
      * @param result The result containing the next review date and updated ease factor.
      */
     private void createNewReviewHistory(Question question, DifficultyLevel difficulty, NextReviewDetails result) {
+        int userId = userService.getCurrentUserId();
         ReviewHistory history = new ReviewHistory();
-        history.setUser(userService.getCurrentUser());
         history.setQuestion(question);
         history.setReviewDate(LocalDate.now());
         history.setDifficulty(difficulty);
@@ -154,10 +191,51 @@ public class ReviewService {
         history.setEaseFactor(result.easeFactor());
         question.setDifficulty(difficulty);
 
-        executeTransaction(() -> {
-            reviewRepository.save(history);
+        executeTransaction(em -> {
+            // Une référence suffit pour la clé étrangère : pas de SELECT de l'utilisateur
+            history.setUser(em.getReference(User.class, userId));
+            reviewRepositories.apply(em).save(history);
             em.merge(question);
         });
+        if (sessionHistories.containsKey(question.getQuestionId())) {
+            sessionHistories.put(question.getQuestionId(), history);
+        }
+    }
+
+    /**
+     * Updates the review history in memory and hands the grade to the journal, which saves it later.
+     *
+     * @param question The question being reviewed.
+     * @param difficulty The difficulty level chosen by the user.
+     * @param result The result containing the next review date and updated ease factor.
+     * @param existingHistory The history of the question, or null if it has never been reviewed.
+     */
+    private void recordGrade(Question question, DifficultyLevel difficulty, NextReviewDetails result, ReviewHistory existingHistory) {
+        LocalDate today = LocalDate.now();
+        ReviewHistory history = existingHistory;
+        if (history == null) {
+            history = new ReviewHistory();
+            history.setQuestion(question);
+        }
+        history.setReviewDate(today);
+        history.setDifficulty(difficulty);
+        history.setNextReviewDate(result.nextReviewDate());
+        history.setEaseFactor(result.easeFactor());
+        question.setDifficulty(difficulty);
+        // La base n'est pas encore à jour : les cartes suivantes de la question lisent cet historique
+        sessionHistories.put(question.getQuestionId(), history);
+
+        journal.record(new ReviewGrade(question.getQuestionId(), userService.getCurrentUserId(), difficulty,
+                today, result.nextReviewDate(), result.easeFactor()));
+    }
+
+    /**
+     * Saves the grades still waiting in the journal, e.g. when a quiz session ends.
+     */
+    public void flushPendingReviews() {
+        if (journal != null) {
+            journal.flush();
+        }
     }
 
     /**
@@ -165,17 +243,22 @@ public class ReviewService {
      *
      * @param operation The operation to execute within the transaction.
      */
-    private void executeTransaction(Runnable operation) {
-        em.getTransaction().begin();
+    private void executeTransaction(Consumer<EntityManager> operation) {
         try {
-            operation.run();
-            em.getTransaction().commit();
+            unitOfWork.runInTransaction(operation);
         } catch (Exception e) {
-            em.getTransaction().rollback();
             throw new RuntimeException("Transaction failed", e);
         }
     }
 
+    private ReviewHistory findReviewHistory(Question question) {
+        if (sessionHistories.containsKey(question.getQuestionId())) {
+            return sessionHistories.get(question.getQuestionId());
+        }
+        int userId = userService.getCurrentUserId();
+        return unitOfWork.read(em -> reviewRepositories.apply(em).findReviewHistory(question.getQuestionId(), userId));
+    }
+
     /**
      * Retrieves the remaining review times for a question, based on different difficulty levels.
      *
@@ -184,7 +267,7 @@ public class ReviewService {
      */
     public Map<DifficultyLevel, String> getRemainingReviewTimes(Question question) {
         Map<DifficultyLevel, String> result = new EnumMap<>(DifficultyLevel.class);
-        ReviewHistory history = reviewRepository.findReviewHistory(question, userService.getCurrentUser());
+        ReviewHistory history = findReviewHistory(question);
         LocalDate today = LocalDate.now();
 
         for (DifficultyLevel level : List.of(DifficultyLevel.HARD, DifficultyLevel.GOOD, DifficultyLevel.EASY)) {
@@ -0,0 +1,181 @@
+package be.esi.prj.model.services;
+
+import net.sourceforge.tess4j.Tesseract;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of initialized Tesseract engines.
+ * <p>
+ * Engines are created lazily by the factory and initialized at once, which loads their language model.
+ * They are handed out with {@link #borrow()} and given back with
+ * {@link #release(Tesseract)}. At most {@code maxSize} engines exist at the same time, so callers block
+ * when every engine is in use. Engines that stay idle longer than the idle timeout are closed to give
+ * the memory of the loaded model back.
+ * </p>
+ */
+public class TesseractPool implements AutoCloseable {
+
+    public static final int DEFAULT_SIZE = Runtime.getRuntime().availableProcessors();
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(2);
+
+    private final int maxSize;
+    private final long idleTimeoutNanos;
+    private final Supplier<Tesseract> factory;
+    private final Semaphore permits;
+    private final Deque<IdleEngine> idleEngines = new ArrayDeque<>();
+    private ScheduledExecutorService evictor;
+    private boolean closed;
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxSize the maximum number of engines alive at the same time
+     * @param idleTimeout how long an unused engine is kept before being closed
+     * @param factory creates a configured engine when the pool needs a new one
+     */
+    public TesseractPool(int maxSize, Duration idleTimeout, Supplier<Tesseract> factory) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.factory = factory;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Takes an engine from the pool, creating one if none is idle. Blocks while all engines are in use.
+     *
+     * @return an engine reserved for the caller until it is released
+     * @throws InterruptedException if the thread is interrupted while waiting for an engine
+     */
+    public Tesseract borrow() throws InterruptedException {
+        permits.acquire();
+        try {
+            Tesseract engine = pollIdle();
+            return engine != null ? engine : createEngine();
+        } catch (RuntimeException | Error e) { // e.g. UnsatisfiedLinkError when the native library is missing
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives an engine back to the pool so that another caller can reuse it.
+     */
+    public void release(Tesseract engine) {
+        boolean keep;
+        synchronized (this) {
+            keep = !closed;
+            if (keep) {
+                idleEngines.push(new IdleEngine(engine, System.nanoTime()));
+                startEvictorIfNeeded();
+            }
+        }
+        if (!keep) {
+            closeEngine(engine);
+        }
+        permits.release();
+    }
+
+    /**
+     * Makes sure that up to {@code count} engines are created, initialized and idle, so that the
+     * first scans do not pay for loading the language model.
+     */
+    public void prestart(int count) throws InterruptedException {
+        List<Tesseract> engines = new ArrayList<>();
+        try {
+            for (int i = 0; i < Math.min(count, maxSize); i++) {
+                engines.add(borrow());
+            }
+        } finally {
+            engines.forEach(this::release);
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int getIdleCount() {
+        return idleEngines.size();
+    }
+
+    /**
+     * Closes the engines that have been idle longer than the idle timeout.
+     */
+    void evictIdleEngines() {
+        long now = System.nanoTime();
+        Deque<Tesseract> expired = new ArrayDeque<>();
+        synchronized (this) {
+            Iterator<IdleEngine> it = idleEngines.descendingIterator(); // oldest first
+            while (it.hasNext()) {
+                IdleEngine idle = it.next();
+                if (now - idle.since() < idleTimeoutNanos) {
+                    break;
+                }
+                it.remove();
+                expired.add(idle.engine());
+            }
+        }
+        expired.forEach(TesseractPool::closeEngine);
+    }
+
+    @Override
+    public void close() {
+        Deque<IdleEngine> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayDeque<>(idleEngines);
+            idleEngines.clear();
+            if (evictor != null) {
+                evictor.shutdownNow();
+            }
+        }
+        toClose.forEach(idle -> closeEngine(idle.engine()));
+    }
+
+    private Tesseract createEngine() {
+        Tesseract engine = factory.get();
+        if (engine instanceof ReusableTesseract reusable) {
+            reusable.initialize();
+        }
+        return engine;
+    }
+
+    private synchronized Tesseract pollIdle() {
+        IdleEngine idle = idleEngines.poll(); // most recently used first, keeps the others evictable
+        return idle != null ? idle.engine() : null;
+    }
+
+    private void startEvictorIfNeeded() {
+        if (evictor == null) {
+            evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tesseract-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(idleTimeoutNanos / 2, TimeUnit.SECONDS.toNanos(1));
+            evictor.scheduleWithFixedDelay(this::evictIdleEngines, period, period, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void closeEngine(Tesseract engine) {
+        if (engine instanceof ReusableTesseract reusable) {
+            reusable.close();
+        }
+    }
+
+    private record IdleEngine(Tesseract engine, long since) {}
+}
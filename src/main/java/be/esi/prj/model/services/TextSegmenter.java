@@ -0,0 +1,117 @@
+package be.esi.prj.model.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the OCR text of a page into passages that each get their own quiz.
+ * <p>
+ * Passages follow the paragraphs of the page: paragraphs are grouped while they fit in the token budget,
+ * a paragraph that is too long is cut between sentences, and a sentence that is still too long between
+ * words. A dense page thus gives several quizzes, each from a prompt of bounded size, while a short page
+ * stays a single passage.
+ * </p>
+ */
+public class TextSegmenter {
+
+    /** About a dense paragraph or two of a textbook page. */
+    public static final int DEFAULT_PASSAGE_TOKENS = 350;
+    /** Quizzes generated from one page at most; the passages of longer pages are made bigger. */
+    public static final int DEFAULT_MAX_PASSAGES = 5;
+
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("\\n\\s*\\n");
+    private static final Pattern SENTENCE_BREAK = Pattern.compile("(?<=[.!?;])\\s+");
+    private static final Pattern WORD_BREAK = Pattern.compile("\\s+");
+    /** Gemini tokenizers average about four characters per token on French and English text. */
+    static final int CHARACTERS_PER_TOKEN = 4;
+
+    private final int passageTokens;
+    private final int maxPassages;
+
+    /**
+     * Creates a segmenter.
+     *
+     * @param passageTokens the size of a passage, in estimated tokens
+     * @param maxPassages the number of passages a page is split into at most, approximately
+     */
+    public TextSegmenter(int passageTokens, int maxPassages) {
+        if (passageTokens < 1 || maxPassages < 1) {
+            throw new IllegalArgumentException("Passage size and count must be positive");
+        }
+        this.passageTokens = passageTokens;
+        this.maxPassages = maxPassages;
+    }
+
+    /**
+     * Splits a text into passages.
+     *
+     * @return the passages in reading order, a single one when the text fits in the budget,
+     *         none when the text is blank
+     */
+    public List<String> segment(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String stripped = text.strip();
+        int totalTokens = estimateTokens(stripped);
+        int budget = Math.max(passageTokens, Math.ceilDiv(totalTokens, maxPassages));
+        if (totalTokens <= budget) {
+            return List.of(stripped);
+        }
+
+        List<String> passages = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String paragraph : PARAGRAPH_BREAK.split(stripped)) {
+            paragraph = paragraph.strip();
+            if (paragraph.isEmpty()) {
+                continue;
+            }
+            if (estimateTokens(paragraph) <= budget) {
+                append(passages, current, paragraph, "\n\n", budget);
+                continue;
+            }
+            boolean firstSentence = true;
+            for (String sentence : SENTENCE_BREAK.split(paragraph)) {
+                String separator = firstSentence ? "\n\n" : " ";
+                firstSentence = false;
+                if (estimateTokens(sentence) <= budget) {
+                    append(passages, current, sentence, separator, budget);
+                    continue;
+                }
+                for (String word : WORD_BREAK.split(sentence)) {
+                    append(passages, current, word, separator, budget);
+                    separator = " ";
+                }
+            }
+        }
+        if (!current.isEmpty()) {
+            passages.add(current.toString());
+        }
+
+        // Un dernier passage de quelques mots ne ferait qu'une question pauvre : il rejoint le précédent
+        int last = passages.size() - 1;
+        if (last > 0 && estimateTokens(passages.get(last)) < budget / 4) {
+            passages.set(last - 1, passages.get(last - 1) + "\n\n" + passages.remove(last));
+        }
+        return passages;
+    }
+
+    /**
+     * Estimates the number of tokens of a text, as counted by the model.
+     */
+    public static int estimateTokens(String text) {
+        return Math.ceilDiv(text.length(), CHARACTERS_PER_TOKEN);
+    }
+
+    private static void append(List<String> passages, StringBuilder current, String unit, String separator, int budget) {
+        if (!current.isEmpty() && estimateTokens(current + separator + unit) > budget) {
+            passages.add(current.toString());
+            current.setLength(0);
+        }
+        if (!current.isEmpty()) {
+            current.append(separator);
+        }
+        current.append(unit);
+    }
+}
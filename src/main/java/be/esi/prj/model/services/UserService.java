@@ -4,19 +4,20 @@ import be.esi.prj.model.orm.User;
 import be.esi.prj.model.repository.RepositoryException;
 import be.esi.prj.model.repository.UserRepository;
 import be.esi.prj.utils.JPAUtil;
-import jakarta.persistence.*;
+import be.esi.prj.utils.UnitOfWork;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.function.Function;
 
 public class UserService {
 
-    private final EntityManager em;
+    private final UnitOfWork unitOfWork;
     private final UserRepository userRepository;
     private static UserService instance;
-    private String currentUsername;
+    private volatile UserSession session;
     private final StringProperty message = new SimpleStringProperty("");
 
     public StringProperty messageProperty() {
@@ -27,14 +28,14 @@ public class UserService {
     }
 
     public UserService() {
-        this.em = JPAUtil.getEntityManager();
-        this.userRepository = new UserRepository(em);
+        this.unitOfWork = JPAUtil.getUnitOfWork();
+        this.userRepository = null; // un dépôt par opération, voir withRepository
     }
 
     // Nouveau constructeur pour les tests permettant l'injection d'un UserRepository mocké
     public UserService(UserRepository userRepository) {
-        // Pour les tests, on peut passer un EntityManager null ou un mock si nécessaire.
-        this.em = null;
+        // Pour les tests, le dépôt mocké est appelé directement, sans unité de travail.
+        this.unitOfWork = null;
         this.userRepository = userRepository;
     }
 
@@ -46,15 +47,44 @@ public class UserService {
     }
 
     public void logout() {
-        this.currentUsername = null;
+        this.session = null;
     }
 
     public String getCurrentUsername() {
-        return currentUsername != null ? currentUsername : "Guest";
+        UserSession current = session;
+        return current != null ? current.username() : "Guest";
     }
 
+    /**
+     * Returns the snapshot of the logged-in user, without querying the database.
+     *
+     * @throws IllegalStateException if no user is logged in
+     */
+    public UserSession getSession() {
+        UserSession current = session;
+        if (current == null) {
+            throw new IllegalStateException("No user is logged in");
+        }
+        return current;
+    }
+
+    /**
+     * Returns the ID of the logged-in user, without querying the database.
+     *
+     * @throws IllegalStateException if no user is logged in
+     */
+    public int getCurrentUserId() {
+        return getSession().userId();
+    }
+
+    /**
+     * Loads the entity of the logged-in user. Prefer {@link #getCurrentUserId()} when the ID is enough.
+     *
+     * @throws IllegalStateException if no user is logged in
+     */
     public User getCurrentUser() {
-        return userRepository.getUserByUsername(currentUsername);
+        int userId = getCurrentUserId();
+        return withRepository(repository -> repository.findById(userId));
     }
 
     /**
@@ -84,21 +114,24 @@ public class UserService {
     }
 
     private void saveUserToDatabase(User user) throws RepositoryException {
-        if (em != null) {
-            em.getTransaction().begin();
-        }
-        userRepository.save(user);
-        if (em != null) {
-            em.getTransaction().commit();
+        if (unitOfWork != null) {
+            unitOfWork.runInTransaction(em -> new UserRepository(em).save(user));
+        } else {
+            userRepository.save(user);
         }
     }
     private void handleRegistrationFailure(Exception e, String errorMessage) {
-        if (em != null && em.getTransaction().isActive()) {
-            em.getTransaction().rollback();
-        }
+        // La transaction a déjà été annulée par l'unité de travail
         message.set(errorMessage);
     }
 
+    private <T> T withRepository(Function<UserRepository, T> query) {
+        if (unitOfWork == null) {
+            return query.apply(userRepository);
+        }
+        return unitOfWork.read(em -> query.apply(new UserRepository(em)));
+    }
+
     private boolean validatePassword(String password, String confirmPassword) {
         if (!password.equals(confirmPassword)) {
             message.set("Passwords do not match!");
@@ -117,7 +150,7 @@ public class UserService {
             message.set("Username must be at least 3 characters long");
             return false;
         }
-        if (userRepository.existsByUserName(username)){
+        if (withRepository(repository -> repository.existsByUserName(username))){
             message.set("Username already taken");
             return false;
         }
@@ -134,10 +167,10 @@ public class UserService {
      */
     public boolean authenticateUser(String userName, String rawPassword) {
         try {
-            User user = userRepository.getUserByUsername(userName.toUpperCase());
+            User user = withRepository(repository -> repository.getUserByUsername(userName.toUpperCase()));
             boolean authenticated = user.getPassword().equals(hashPassword(rawPassword));
             if (authenticated) {
-                this.currentUsername = userName.toUpperCase();
+                this.session = new UserSession(user.getUserId(), userName.toUpperCase());
             }
             return authenticated;
         } catch (RepositoryException e) {
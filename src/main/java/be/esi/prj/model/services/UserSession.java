@@ -0,0 +1,15 @@
+package be.esi.prj.model.services;
+
+/**
+ * Immutable snapshot of the logged-in user, taken once by {@link UserService#authenticateUser(String, String)}
+ * and dropped on logout.
+ * <p>
+ * Services pass the user ID to the repositories instead of loading the {@code User} entity again for each
+ * operation.
+ * </p>
+ *
+ * @param userId the ID of the user
+ * @param username the username, as stored (upper case)
+ */
+public record UserSession(int userId, String username) {
+}
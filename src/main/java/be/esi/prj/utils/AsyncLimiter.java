@@ -0,0 +1,106 @@
+package be.esi.prj.utils;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of asynchronous operations running at the same time without blocking the callers.
+ * <p>
+ * Operations submitted while the cap is reached wait in a queue and are started when a running one
+ * completes. Cancelling the returned future cancels the operation, or removes it from the queue if it
+ * has not started yet.
+ * </p>
+ */
+public class AsyncLimiter {
+
+    private final int maxInFlight;
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public AsyncLimiter(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one operation must be allowed");
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Starts the operation now if the cap allows it, later otherwise.
+     *
+     * @param operation starts the operation and returns its future
+     * @return completes like the operation
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        waiting.add(() -> start(operation, result));
+        drain();
+        return result;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getWaiting() {
+        return waiting.size();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    private <T> void start(Supplier<CompletableFuture<T>> operation, CompletableFuture<T> result) {
+        if (result.isDone()) { // cancelled while waiting
+            release();
+            return;
+        }
+        CompletableFuture<T> running;
+        try {
+            running = operation.get();
+        } catch (RuntimeException e) {
+            release();
+            result.completeExceptionally(e);
+            return;
+        }
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        running.whenComplete((value, error) -> {
+            release();
+            if (error != null) {
+                result.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    private void drain() {
+        while (!waiting.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Runnable next = waiting.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+            } else {
+                next.run();
+            }
+        }
+    }
+}
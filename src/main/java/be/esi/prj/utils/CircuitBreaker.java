@@ -0,0 +1,100 @@
+package be.esi.prj.utils;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops calling a failing service for a while instead of hammering it during an outage.
+ * <p>
+ * After {@code failureThreshold} consecutive failures the breaker opens: calls are held back (not rejected)
+ * until the open period is over. A single trial call is then let through; its success closes the breaker and
+ * releases the waiting calls, its failure opens the breaker again.
+ * </p>
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final long MIN_RECHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntilNanos;
+    private boolean trialInFlight;
+
+    /**
+     * Creates a closed breaker.
+     *
+     * @param failureThreshold the number of consecutive failures that opens the breaker
+     * @param openDuration how long calls are held back once the breaker is open
+     */
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Waits until a call may be sent.
+     *
+     * @return a future completed immediately while the breaker is closed, later while it is open
+     */
+    public CompletableFuture<Void> whenCallPermitted() {
+        long waitNanos = delayBeforeCall();
+        if (waitNanos == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS))
+                .thenCompose(ignored -> whenCallPermitted());
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openUntilNanos = System.nanoTime() + openNanos;
+        }
+    }
+
+    /**
+     * Called when a permitted call was cancelled before giving a result, so that another trial call can be sent.
+     */
+    public synchronized void recordAbandoned() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Returns 0 if a call may be sent now, otherwise how long to wait before asking again.
+     */
+    synchronized long delayBeforeCall() {
+        long now = System.nanoTime();
+        if (state == State.OPEN && now - openUntilNanos >= 0) {
+            state = State.HALF_OPEN;
+        }
+        switch (state) {
+            case CLOSED:
+                return 0;
+            case HALF_OPEN:
+                if (!trialInFlight) {
+                    trialInFlight = true;
+                    return 0;
+                }
+                return Math.max(MIN_RECHECK_NANOS, openNanos / 10);
+            default:
+                return Math.max(1, openUntilNanos - now);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package be.esi.prj.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Persistent key/value cache of text entries, one file per entry, bounded in bytes on disk.
+ * <p>
+ * Entries are evicted in least-recently-used order once the total size exceeds the limit.
+ * The recency survives restarts through the last-modified time of the files, which is refreshed on every hit.
+ * Keys must be usable as file names (hex digests for instance).
+ * </p>
+ */
+public class DiskLruCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskLruCache.class);
+    private static final String EXTENSION = ".txt";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Opens the cache stored in the given directory, creating it if needed.
+     *
+     * @param directory where the entries are stored
+     * @param maxBytes the maximum total size of the entries
+     */
+    public DiskLruCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(directory);
+            loadExistingEntries();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open cache directory " + directory, e);
+        }
+    }
+
+    /**
+     * Returns the value stored under the key and marks it as recently used.
+     */
+    public synchronized Optional<String> get(String key) {
+        if (entries.get(key) == null) { // get() also moves the entry to the most recently used end
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        Path file = fileFor(key);
+        try {
+            String value = Files.readString(file, StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return Optional.of(value);
+        } catch (IOException e) {
+            logger.warn("Dropping unreadable cache entry {}", file, e);
+            removeEntry(key);
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores a value, replacing any previous one, then evicts the oldest entries if the cache is too big.
+     */
+    public synchronized void put(String key, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        Path file = fileFor(key);
+        try {
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Unable to write cache entry {}", file, e);
+            return;
+        }
+        Long previous = entries.put(key, (long) bytes.length);
+        totalBytes += bytes.length - (previous != null ? previous : 0);
+        evictIfNeeded();
+    }
+
+    /**
+     * Removes an entry if present.
+     */
+    public synchronized void remove(String key) {
+        if (entries.containsKey(key)) {
+            removeEntry(key);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator(); // least recently used first
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            deleteQuietly(fileFor(eldest.getKey()));
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    private void removeEntry(String key) {
+        Long size = entries.remove(key);
+        totalBytes -= size != null ? size : 0;
+        deleteQuietly(fileFor(key));
+    }
+
+    private void loadExistingEntries() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(EXTENSION))
+                    .sorted(Comparator.comparing(DiskLruCache::lastModified))
+                    .forEach(file -> {
+                        String name = file.getFileName().toString();
+                        long size = file.toFile().length();
+                        entries.put(name.substring(0, name.length() - EXTENSION.length()), size);
+                        totalBytes += size;
+                    });
+        }
+        evictIfNeeded();
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key + EXTENSION);
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Unable to delete cache entry {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package be.esi.prj.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the ingestion work of the whole application: one pool for CPU-bound OCR tasks,
+ * virtual threads for network calls.
+ * <p>
+ * The OCR pool is sized from the available cores and the maximum heap, since every OCR worker holds
+ * a decoded page. It lives as long as the application and is shut down by {@link #shutdown()}
+ * when the application stops.
+ * </p>
+ */
+public class IngestionExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionExecutor.class);
+
+    /** Heap needed by one OCR worker: a rendered page, its preprocessed copies and the recognized bands. */
+    private static final long MEMORY_PER_OCR_WORKER = 96L * 1024 * 1024;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private static IngestionExecutor instance;
+
+    private final ThreadPoolExecutor ocrPool;
+    private final ExecutorService networkExecutor;
+    private final AtomicInteger activeNetworkTasks = new AtomicInteger();
+
+    /**
+     * Creates an executor.
+     *
+     * @param ocrWorkers the number of OCR tasks running at the same time
+     */
+    public IngestionExecutor(int ocrWorkers) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.ocrPool = new ThreadPoolExecutor(ocrWorkers, ocrWorkers, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ocr-worker-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.networkExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("network-", 1).factory());
+    }
+
+    public static synchronized IngestionExecutor getInstance() {
+        if (instance == null) {
+            instance = new IngestionExecutor(defaultOcrWorkers());
+        }
+        return instance;
+    }
+
+    /**
+     * Number of OCR workers for this machine: one per core, as long as the heap can hold their pages.
+     */
+    public static int defaultOcrWorkers() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long byMemory = Runtime.getRuntime().maxMemory() / MEMORY_PER_OCR_WORKER;
+        return (int) Math.max(1, Math.min(cores, byMemory));
+    }
+
+    /**
+     * Runs a task on the executor matching its kind.
+     *
+     * @return the result of the task, completed exceptionally if the task fails
+     */
+    public <T> CompletableFuture<T> submit(IngestionTask<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (task.kind() == IngestionTask.Kind.OCR) {
+            ocrPool.execute(() -> run(task, result));
+        } else {
+            networkExecutor.execute(() -> {
+                activeNetworkTasks.incrementAndGet();
+                try {
+                    run(task, result);
+                } finally {
+                    activeNetworkTasks.decrementAndGet();
+                }
+            });
+        }
+        return result;
+    }
+
+    public int getOcrWorkerCount() {
+        return ocrPool.getMaximumPoolSize();
+    }
+
+    public int getActiveOcrWorkers() {
+        return ocrPool.getActiveCount();
+    }
+
+    /**
+     * Returns the number of OCR tasks waiting for a free worker.
+     */
+    public int getOcrQueueDepth() {
+        return ocrPool.getQueue().size();
+    }
+
+    public int getActiveNetworkTasks() {
+        return activeNetworkTasks.get();
+    }
+
+    public void logStatistics() {
+        logger.info("Ingestion: {}/{} OCR worker(s) busy, {} OCR task(s) queued, {} network call(s) in flight",
+                getActiveOcrWorkers(), getOcrWorkerCount(), getOcrQueueDepth(), getActiveNetworkTasks());
+    }
+
+    /**
+     * Stops accepting tasks, lets the running ones finish for a few seconds and then interrupts them.
+     */
+    public void shutdown() {
+        ocrPool.shutdown();
+        networkExecutor.shutdown();
+        try {
+            if (!ocrPool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                ocrPool.shutdownNow();
+            }
+            if (!networkExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                networkExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ocrPool.shutdownNow();
+            networkExecutor.shutdownNow();
+        }
+    }
+
+    private static <T> void run(IngestionTask<T> task, CompletableFuture<T> result) {
+        try {
+            result.complete(task.work().call());
+        } catch (Exception e) {
+            logger.error("Ingestion task '{}' failed", task.name(), e);
+            result.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package be.esi.prj.utils;
+
+import java.util.concurrent.Callable;
+
+/**
+ * A unit of work of the ingestion of dropped files, run by the {@link IngestionExecutor}.
+ * <p>
+ * The kind tells the executor where to run the task: OCR is CPU-bound and runs on a pool sized
+ * for the machine, network calls spend their time waiting and run on virtual threads.
+ * </p>
+ *
+ * @param name a short description used in logs
+ * @param kind where the task runs
+ * @param work the work itself
+ * @param <T> the result of the task
+ */
+public record IngestionTask<T>(String name, Kind kind, Callable<T> work) {
+
+    public enum Kind { OCR, NETWORK }
+
+    public static <T> IngestionTask<T> ocr(String name, Callable<T> work) {
+        return new IngestionTask<>(name, Kind.OCR, work);
+    }
+
+    public static <T> IngestionTask<T> network(String name, Callable<T> work) {
+        return new IngestionTask<>(name, Kind.NETWORK, work);
+    }
+}
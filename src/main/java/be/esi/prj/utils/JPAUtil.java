@@ -1,21 +1,51 @@
 package be.esi.prj.utils;
 
+import be.esi.prj.model.repository.ReviewHistoryRepository;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class JPAUtil {
+    private static final Logger logger = LoggerFactory.getLogger(JPAUtil.class);
+
     private static final EntityManagerFactory emf;
-    private static final EntityManager entityManager;
+    private static final UnitOfWork unitOfWork;
 
     //Ce bloc de code est un bloc statique en Java. Cela signifie qu’il est exécuté une seule fois,
     //lorsque la classe est chargée par la machine virtuelle Java (JVM), avant toute instanciation de la classe.
     static {
-        emf = Persistence.createEntityManagerFactory("quizAppPU");
-        entityManager = emf.createEntityManager();
+        emf = Persistence.createEntityManagerFactory("quizAppPU", SqliteProfile.configured().toPersistenceProperties());
+        unitOfWork = new UnitOfWork(emf::createEntityManager);
+        ensureUniqueIndexes(unitOfWork);
+    }
+
+    /**
+     * Returns the unit of work shared by the services: each operation gets its own EntityManager,
+     * its connection being taken from the pool sized by {@code hibernate.connection.pool_size}.
+     */
+    public static UnitOfWork getUnitOfWork() {
+        return unitOfWork;
+    }
+
+    /**
+     * Opens a new EntityManager, to be closed by the caller.
+     */
+    public static EntityManager createEntityManager() {
+        return emf.createEntityManager();
     }
 
-    public static EntityManager getEntityManager() {
-        return entityManager;
+    /**
+     * Hibernate creates the indexes declared on the entities, except the unique ones: it adds them with
+     * {@code ALTER TABLE ... ADD CONSTRAINT}, which SQLite does not support.
+     */
+    private static void ensureUniqueIndexes(UnitOfWork unitOfWork) {
+        try {
+            unitOfWork.runInTransaction(em -> new ReviewHistoryRepository(em).ensureUniqueIndex());
+        } catch (RuntimeException e) {
+            // Sans l'index, l'upsert des notes échoue : elles restent dans le journal et sont réessayées
+            logger.warn("Could not create the unique index on ReviewHistory(user_Id, question_Id)", e);
+        }
     }
 }
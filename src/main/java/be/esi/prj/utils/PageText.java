@@ -0,0 +1,21 @@
+package be.esi.prj.utils;
+
+import java.io.File;
+
+/**
+ * Texte reconnu sur une page d'un fichier, ou sur un passage de cette page, en attente de génération de quiz.
+ *
+ * @param file le fichier d'origine
+ * @param pageNumber la page du fichier (1 pour une simple image)
+ * @param passageNumber le passage de la page, à partir de 1, ou 0 quand le texte est celui de toute la page
+ * @param text le texte extrait par l'OCR
+ */
+public record PageText(File file, int pageNumber, int passageNumber, String text) {
+
+    /**
+     * Texte de toute une page.
+     */
+    public PageText(File file, int pageNumber, String text) {
+        this(file, pageNumber, 0, text);
+    }
+}
@@ -1,20 +1,70 @@
 package be.esi.prj.utils;
 
+import be.esi.prj.model.services.DocumentPages;
+
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 // Classe pour stocker le résultat du quiz
 public class QuizResult {
     private final File file;
+    private final int pageNumber;
+    private final int passageNumber;
+    private final String passage;
     private final String question;
     private final String answer;
 
     public QuizResult(File file, String question, String answer) {
+        this(file, 1, question, answer);
+    }
+
+    // pageNumber : page du PDF/TIFF dont provient le texte (1 pour une simple image)
+    public QuizResult(File file, int pageNumber, String question, String answer) {
         this.file = file;
+        this.pageNumber = pageNumber;
+        this.passageNumber = 0;
+        this.passage = null;
+        this.question = question;
+        this.answer = answer;
+    }
+
+    // source : le texte (page ou passage) à partir duquel le quiz a été généré, gardé pour "Generate Again"
+    public QuizResult(PageText source, String question, String answer) {
+        this.file = source.file();
+        this.pageNumber = source.pageNumber();
+        this.passageNumber = source.passageNumber();
+        this.passage = source.text();
         this.question = question;
         this.answer = answer;
     }
 
     public File getFile() { return file; }
+    public int getPageNumber() { return pageNumber; }
+    public int getPassageNumber() { return passageNumber; }
+    public String getPassage() { return passage; }
     public String getQuestion() { return question; }
     public String getAnswer() { return answer; }
+
+    /**
+     * Texte source du quiz, ou {@code null} s'il n'a pas été gardé.
+     */
+    public PageText getSource() {
+        return passage == null ? null : new PageText(file, pageNumber, passageNumber, passage);
+    }
+
+    /**
+     * Nom du fichier source, suivi du numéro de page pour les documents de plusieurs pages
+     * et du numéro de passage quand la page a été découpée.
+     */
+    public String getSourceName() {
+        List<String> location = new ArrayList<>();
+        if (DocumentPages.isMultiPage(file)) {
+            location.add("page " + pageNumber);
+        }
+        if (passageNumber > 0) {
+            location.add("passage " + passageNumber);
+        }
+        return location.isEmpty() ? file.getName() : file.getName() + " (" + String.join(", ", location) + ")";
+    }
 }
@@ -0,0 +1,178 @@
+package be.esi.prj.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends HTTP requests through a shared rate limiter and circuit breaker, retrying the transient failures.
+ * <p>
+ * Statuses 429, 502, 503 and 504 and I/O errors (timeouts, reset connections) are retried with an exponential,
+ * jittered backoff, or after the delay given by the {@code Retry-After} header when the server sends one.
+ * Server errors and I/O errors count as failures for the circuit breaker; client errors other than 429 do not,
+ * since retrying them cannot help.
+ * </p>
+ */
+public class ResilientHttpSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilientHttpSender.class);
+
+    public static final Set<Integer> RETRYABLE_STATUSES = Set.of(429, 502, 503, 504);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private final TokenBucket rateLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final int maxAttempts;
+    private final Duration baseBackoff;
+
+    /**
+     * Creates a sender.
+     *
+     * @param rateLimiter shared by every request sent through this sender
+     * @param circuitBreaker holds the requests back while the server is failing
+     * @param maxAttempts the number of times a request is sent before giving up, at least 1
+     * @param baseBackoff the delay before the first retry, doubled for every following one
+     */
+    public ResilientHttpSender(TokenBucket rateLimiter, CircuitBreaker circuitBreaker, int maxAttempts, Duration baseBackoff) {
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoff = baseBackoff;
+    }
+
+    /**
+     * Sends a request, waiting for the rate limiter and the circuit breaker and retrying transient failures.
+     *
+     * @return the last response received, or the last I/O error once the attempts are exhausted;
+     *         cancelling it aborts the exchange or the wait in progress
+     */
+    public CompletableFuture<HttpResponse<String>> send(HttpClient client, HttpRequest request) {
+        return send(client, request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Same as {@link #send(HttpClient, HttpRequest)} with a specific body handler, e.g. to stream the response.
+     * The handler is called again for every attempt.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> send(HttpClient client, HttpRequest request,
+                                                      HttpResponse.BodyHandler<T> bodyHandler) {
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<?>> currentStep = new AtomicReference<>();
+        result.whenComplete((response, error) -> {
+            CompletableFuture<?> step = currentStep.get();
+            if (result.isCancelled() && step != null) {
+                step.cancel(true);
+            }
+        });
+        attempt(client, request, bodyHandler, 1, result, currentStep);
+        return result;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    private <T> void attempt(HttpClient client, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler, int attempt,
+                             CompletableFuture<HttpResponse<T>> result, AtomicReference<CompletableFuture<?>> currentStep) {
+        CompletableFuture<Void> permitted = circuitBreaker.whenCallPermitted().thenCompose(ignored -> rateLimiter.acquire());
+        currentStep.set(permitted);
+        permitted.thenCompose(ignored -> {
+            CompletableFuture<HttpResponse<T>> exchange = client.sendAsync(request, bodyHandler);
+            currentStep.set(exchange);
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+            return exchange;
+        }).whenComplete((response, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof CancellationException || result.isDone()) {
+                circuitBreaker.recordAbandoned();
+                return;
+            }
+
+            boolean retryable;
+            if (cause != null) {
+                circuitBreaker.recordFailure();
+                retryable = cause instanceof IOException;
+            } else {
+                int status = response.statusCode();
+                if (status >= 500 || status == 429) {
+                    circuitBreaker.recordFailure();
+                } else {
+                    circuitBreaker.recordSuccess();
+                }
+                retryable = RETRYABLE_STATUSES.contains(status);
+            }
+
+            if (!retryable || attempt >= maxAttempts) {
+                if (cause != null) {
+                    result.completeExceptionally(cause);
+                } else {
+                    result.complete(response);
+                }
+                return;
+            }
+
+            Duration delay = retryDelay(attempt, response);
+            logger.warn("Request to {} failed ({}), retry {}/{} in {} ms", request.uri().getHost(),
+                    cause != null ? cause.toString() : "HTTP " + response.statusCode(),
+                    attempt, maxAttempts - 1, delay.toMillis());
+            CompletableFuture<Void> backoff = CompletableFuture.runAsync(() -> {},
+                    CompletableFuture.delayedExecutor(delay.toNanos(), TimeUnit.NANOSECONDS));
+            currentStep.set(backoff);
+            backoff.thenRun(() -> attempt(client, request, bodyHandler, attempt + 1, result, currentStep));
+        });
+    }
+
+    /**
+     * Uses the delay requested by the server if any, otherwise an exponential backoff with "equal jitter":
+     * half of the delay is fixed and the other half random, so that concurrent clients do not retry together.
+     */
+    Duration retryDelay(int attempt, HttpResponse<?> response) {
+        Optional<Duration> retryAfter = response != null ? parseRetryAfter(response) : Optional.empty();
+        if (retryAfter.isPresent()) {
+            return retryAfter.get().compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : retryAfter.get();
+        }
+        long exponential = Math.min(MAX_BACKOFF.toMillis(), baseBackoff.toMillis() << Math.min(attempt - 1, 20));
+        long half = exponential / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+
+    /**
+     * Reads the {@code Retry-After} header, given either in seconds or as an HTTP date.
+     */
+    static Optional<Duration> parseRetryAfter(HttpResponse<?> response) {
+        Optional<String> header = response.headers().firstValue("Retry-After");
+        if (header.isEmpty()) {
+            return Optional.empty();
+        }
+        String value = header.get().trim();
+        try {
+            return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(value))));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                Duration delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+                return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+            } catch (DateTimeParseException invalidDate) {
+                return Optional.empty();
+            }
+        }
+    }
+}
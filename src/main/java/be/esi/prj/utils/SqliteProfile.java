@@ -0,0 +1,79 @@
+package be.esi.prj.utils;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The pragmas applied by the SQLite driver to every connection it opens.
+ * <p>
+ * The profile is chosen with {@code -Dquizapp.sqlite.profile=default|tuned} ({@code tuned} when absent) and
+ * each pragma can be overridden on its own, e.g. {@code -Dquizapp.sqlite.busy_timeout=10000}.
+ * </p>
+ */
+public enum SqliteProfile {
+
+    /**
+     * What SQLite does out of the box: rollback journal and an fsync of the journal and the database
+     * on every commit. The journal mode is set explicitly because WAL stays enabled in the file.
+     */
+    DEFAULT(Map.of(
+            "journal_mode", "DELETE",
+            "synchronous", "FULL")),
+
+    /**
+     * Write-ahead log: a commit appends to the log and is synced at checkpoints only, which
+     * {@code synchronous=NORMAL} keeps safe from corruption (a power cut may lose the last commits, never
+     * the file). Readers no longer block the writer, and a writer waits for the lock instead of failing.
+     */
+    TUNED(Map.of(
+            "journal_mode", "WAL",
+            "synchronous", "NORMAL",
+            "mmap_size", String.valueOf(256L * 1024 * 1024),
+            "cache_size", String.valueOf(-16 * 1024), // négatif : en KiB, soit 16 MiB par connexion
+            "temp_store", "MEMORY",
+            "busy_timeout", "5000"));
+
+    public static final String PROFILE_PROPERTY = "quizapp.sqlite.profile";
+    private static final String PRAGMA_PROPERTY_PREFIX = "quizapp.sqlite.";
+    /** Hibernate hands the properties with this prefix over to the JDBC driver. */
+    private static final String CONNECTION_PROPERTY_PREFIX = "hibernate.connection.";
+
+    private final Map<String, String> pragmas;
+
+    SqliteProfile(Map<String, String> pragmas) {
+        this.pragmas = pragmas;
+    }
+
+    public Map<String, String> getPragmas() {
+        return pragmas;
+    }
+
+    /**
+     * Returns the persistence unit properties applying the pragmas of this profile, with the overrides
+     * given as system properties.
+     */
+    public Map<String, Object> toPersistenceProperties() {
+        Map<String, String> effective = new LinkedHashMap<>(pragmas);
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(PRAGMA_PROPERTY_PREFIX) && !name.equals(PROFILE_PROPERTY))
+                .forEach(name -> effective.put(name.substring(PRAGMA_PROPERTY_PREFIX.length()), System.getProperty(name)));
+
+        Map<String, Object> properties = new HashMap<>();
+        effective.forEach((pragma, value) -> properties.put(CONNECTION_PROPERTY_PREFIX + pragma, value));
+        return properties;
+    }
+
+    /**
+     * Returns the profile selected by the {@value #PROFILE_PROPERTY} system property.
+     */
+    public static SqliteProfile configured() {
+        String name = System.getProperty(PROFILE_PROPERTY, TUNED.name());
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown SQLite profile: " + name, e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package be.esi.prj.utils;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket rate limiter shared by all the callers of an API.
+ * <p>
+ * The bucket holds up to {@code burst} tokens and refills at a steady rate. A caller takes one token per
+ * request; when the bucket is empty the token is reserved in advance and the returned future completes
+ * when it becomes available, so callers are served in order at the sustained rate without blocking a thread.
+ * </p>
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param requestsPerMinute the sustained rate
+     * @param burst the number of requests that can be sent at once after a quiet period
+     */
+    public TokenBucket(int requestsPerMinute, int burst) {
+        if (requestsPerMinute < 1 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.capacity = burst;
+        this.tokensPerNano = requestsPerMinute / (double) Duration.ofMinutes(1).toNanos();
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes a token.
+     *
+     * @return a future completed when the caller may send its request
+     */
+    public CompletableFuture<Void> acquire() {
+        long waitNanos = reserve();
+        if (waitNanos == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Takes a token, possibly one that is not refilled yet.
+     *
+     * @return how long the caller has to wait for its token, in nanoseconds
+     */
+    synchronized long reserve() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+}
@@ -0,0 +1,101 @@
+package be.esi.prj.utils;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs each database operation with its own {@link EntityManager}.
+ * <p>
+ * An EntityManager is not thread-safe and its persistence context keeps every entity it has loaded: one
+ * per operation lets the FX thread and the ingestion workers use the database at the same time, and the
+ * memory is released as soon as the operation is over. The entities returned are detached.
+ * </p>
+ * <p>
+ * SQLite accepts a single writer at a time: transactions are queued here rather than failing on a busy
+ * database, reads run concurrently.
+ * </p>
+ */
+public class UnitOfWork {
+
+    private final Supplier<EntityManager> entityManagers;
+    private final boolean closeAfterUse;
+    private final ReentrantLock writeLock = new ReentrantLock(true);
+
+    /**
+     * Creates a unit of work opening an EntityManager per operation and closing it afterwards.
+     */
+    public UnitOfWork(Supplier<EntityManager> entityManagers) {
+        this(entityManagers, true);
+    }
+
+    private UnitOfWork(Supplier<EntityManager> entityManagers, boolean closeAfterUse) {
+        this.entityManagers = entityManagers;
+        this.closeAfterUse = closeAfterUse;
+    }
+
+    /**
+     * Creates a unit of work running every operation on the given EntityManager, which the caller closes,
+     * e.g. in tests.
+     */
+    public static UnitOfWork of(EntityManager em) {
+        return new UnitOfWork(() -> em, false);
+    }
+
+    /**
+     * Runs a read-only operation.
+     */
+    public <T> T read(Function<EntityManager, T> work) {
+        EntityManager em = entityManagers.get();
+        try {
+            return work.apply(em);
+        } finally {
+            close(em);
+        }
+    }
+
+    /**
+     * Runs an operation in a transaction, committed if the operation succeeds and rolled back otherwise.
+     *
+     * @throws RuntimeException the exception thrown by the operation or the commit
+     */
+    public <T> T inTransaction(Function<EntityManager, T> work) {
+        writeLock.lock();
+        EntityManager em = null;
+        EntityTransaction transaction = null;
+        try {
+            em = entityManagers.get();
+            transaction = em.getTransaction();
+            transaction.begin();
+            T result = work.apply(em);
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) transaction.rollback();
+            throw e;
+        } finally {
+            if (em != null) close(em);
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Runs an operation in a transaction, see {@link #inTransaction(Function)}.
+     */
+    public void runInTransaction(Consumer<EntityManager> work) {
+        inTransaction(em -> {
+            work.accept(em);
+            return null;
+        });
+    }
+
+    private void close(EntityManager em) {
+        if (closeAfterUse && em.isOpen()) {
+            em.close();
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package be.esi.prj.viewmodel;
 
+import be.esi.prj.model.orm.DifficultyLevel;
 import be.esi.prj.model.orm.Folder;
 import be.esi.prj.model.orm.User;
+import be.esi.prj.model.repository.FolderStats;
 import be.esi.prj.model.services.FolderService;
 import be.esi.prj.model.services.UserService;
 
@@ -80,6 +82,8 @@ public class DashboardViewModel {
 
             uploadStage.initOwner(currentStage);
             uploadStage.initModality(Modality.APPLICATION_MODAL);
+            QuizUploadViewModel uploadViewModel = loader.getController();
+            uploadStage.setOnHidden(e -> uploadViewModel.cancelPendingWork());
 
             uploadStage.show();
         } catch (IOException e) {
@@ -105,11 +109,12 @@ public class DashboardViewModel {
     private void updateSidebarWithFolderStats(int folderID) {
         sidebarInfoBox.getChildren().clear();
 
-        int total = folderService.getTotalQuestionsCount(folderID);
-        int again = folderService.getAgainQuestionsCount(folderID);
-        int hard = folderService.getHardQuestionsCount(folderID);
-        int good = folderService.getGoodQuestionsCount(folderID);
-        int easy = folderService.getEasyQuestionsCount(folderID);
+        FolderStats stats = folderService.getFolderStats(folderID);
+        int total = stats.total();
+        int again = stats.count(DifficultyLevel.AGAIN);
+        int hard = stats.count(DifficultyLevel.HARD);
+        int good = stats.count(DifficultyLevel.GOOD);
+        int easy = stats.count(DifficultyLevel.EASY);
 
         Label totalLabel = new Label("Total : " + total);
         totalLabel.getStyleClass().add("total-cards-label");
@@ -191,6 +196,7 @@ public class DashboardViewModel {
             stage.initOwner(parentStage);
             stage.centerOnScreen();
             stage.setOnHidden(e -> {
+                controller.flushReviews();
                 applyBlurEffect(parentRoot, false);
                 updateSidebarWithFolderStats(folderId);
             });
@@ -16,12 +16,16 @@ import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.VBox;
 import javafx.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 
 public class QuizSessionViewModel {
+    private final Logger logger = LoggerFactory.getLogger(QuizSessionViewModel.class);
     private final QuizService quizService = QuizService.getInstance();
     private final UserService userService = UserService.getInstance();
     private final ReviewService reviewService = new ReviewService();
@@ -45,12 +49,27 @@ public class QuizSessionViewModel {
 
     public void initializeWithFolder(int folderId) {
         questionQueue.clear();
-        questionQueue.addAll(quizService.getDueQuestions(folderId, userService.getCurrentUser()));
+        List<Question> dueQuestions = quizService.getDueQuestions(folderId, userService.getCurrentUserId());
+        // Un seul SELECT pour les historiques de la session, au lieu de deux par carte
+        reviewService.preload(dueQuestions);
+        questionQueue.addAll(dueQuestions);
 
         nextButton.disableProperty().bind(isDifficultySelected.not());
         loadNextQuestion();
     }
 
+    /**
+     * Saves the grades of the session still waiting in the review journal; called when the session window closes.
+     */
+    public void flushReviews() {
+        try {
+            reviewService.flushPendingReviews();
+        } catch (RuntimeException e) {
+            // Les notes restent dans le journal et seront réessayées
+            logger.error("Failed to save the grades of the quiz session", e);
+        }
+    }
+
     private void loadNextQuestion() {
         if (questionQueue.isEmpty()) {
             showCompletionState();
@@ -1,9 +1,12 @@
 package be.esi.prj.viewmodel;
 
 import be.esi.prj.model.orm.Folder;
+import be.esi.prj.model.orm.Question;
 import be.esi.prj.model.services.*;
+import be.esi.prj.utils.IngestionExecutor;
+import be.esi.prj.utils.IngestionTask;
+import be.esi.prj.utils.PageText;
 import be.esi.prj.utils.QuizResult;
-import be.esi.prj.utils.QuizTask;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
@@ -17,35 +20,87 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class QuizUploadViewModel {
 
     private final Logger logger = LoggerFactory.getLogger(QuizUploadViewModel.class);
-    private final OcrService ocrService = new OcrService();
+    private final OcrService ocrService = OcrService.getInstance();
     private final FolderService folderService = new FolderService();
     private final UserService userService = UserService.getInstance();
     private final QuizService quizService = QuizService.getInstance();
     private List<Folder> availableFolders;
+    private int currentUserId;
 
-    private final Object quizResultsLock = new Object();
+    private final IngestionExecutor ingestionExecutor = IngestionExecutor.getInstance();
 
+    private final List<QuizPipeline> activePipelines = new CopyOnWriteArrayList<>();
+    private final List<QuizPrefetcher> activePrefetchers = new CopyOnWriteArrayList<>();
+    private final Set<CompletableFuture<QuizResult>> pendingRegenerations = ConcurrentHashMap.newKeySet();
+    /** Quiz approuvés pas encore enregistrés, voir saveApprovedQuizzes ; gardé par lui-même. */
+    private final List<Question> approvedQuizzes = new ArrayList<>();
+
+    /** Approved quizzes saved in one transaction; at most this many are lost if the application crashes. */
+    private static final int APPROVED_QUIZZES_PER_SAVE = 20;
+
+    /** Pages waiting for Gemini; the requests actually sent at the same time are capped by GeminiApiService. */
+    private static final int GENERATION_WORKERS = 8;
+
+    private static final String GEMINI_GENERATOR = "Gemini (online)";
+    private static final String CLOZE_GENERATOR = "Fill-in-the-blank (offline)";
+
+    private final TextSegmenter textSegmenter = new TextSegmenter(TextSegmenter.DEFAULT_PASSAGE_TOKENS, TextSegmenter.DEFAULT_MAX_PASSAGES);
+    private QuizGenerator clozeGenerator;
+    private QuizGenerator geminiGenerator;
 
     @FXML private Button browseButton;
     @FXML private VBox vboxDropArea;
     @FXML private Label progressIndicator;
+    @FXML private ChoiceBox<String> generatorChoice;
 
     public void initialize() {
         setUpDragAndDrop();
         vboxDropArea.setOnDragExited(this::handleDragExited);
         browseButton.setOnAction(e -> chooseFiles());
-        availableFolders = folderService.getFoldersForUser(userService.getCurrentUser());
+        // L'id de la session suffit : l'utilisateur n'est pas relu, les quiz n'en reçoivent qu'une référence
+        currentUserId = userService.getSession().userId();
+        availableFolders = folderService.getFoldersForUser(currentUserId);
+        // Les questions existantes servent de corpus au TF-IDF du générateur hors ligne, qui prend aussi le relais de Gemini.
+        // Le corpus est lu hors du thread JavaFX ; en attendant, le générateur travaille sans corpus
+        useClozeGenerator(new ClozeQuizGenerator(List.of()));
+        int userId = currentUserId;
+        ingestionExecutor.submit(IngestionTask.ocr("cloze corpus",
+                () -> new ClozeQuizGenerator(quizService.getQuestionTexts(userId))))
+                .whenComplete((generator, error) -> {
+                    if (error != null) {
+                        logger.warn("Unable to load the corpus of the offline quiz generator", error);
+                    } else {
+                        Platform.runLater(() -> useClozeGenerator(generator));
+                    }
+                });
+        generatorChoice.getItems().setAll(GEMINI_GENERATOR, CLOZE_GENERATOR);
+        generatorChoice.setValue(GEMINI_GENERATOR);
+        // Charge les moteurs OCR pendant que l'utilisateur choisit ses fichiers
+        ingestionExecutor.submit(IngestionTask.ocr("OCR warm-up", () -> {
+            ocrService.warmUp();
+            return null;
+        }));
+    }
+
+    /**
+     * Remplace le générateur hors ligne, utilisé seul ou en secours de Gemini par les prochains uploads.
+     */
+    private void useClozeGenerator(QuizGenerator generator) {
+        clozeGenerator = generator;
+        geminiGenerator = new FallbackQuizGenerator(new GeminiQuizGenerator(), generator);
     }
 
     /**
@@ -91,7 +146,7 @@ public class QuizUploadViewModel {
      * Filters out invalid files (non-image files).
      *
      * @param files List of files to be checked.
-     * @return List of valid image files (PNG, JPG, JPEG).
+     * @return List of valid image files (PNG, JPG, JPEG) and documents (PDF, TIFF).
      */
     private List<File> filterValidImageFiles(List<File> files) {
         List<File> validImages = new ArrayList<>();
@@ -106,14 +161,15 @@ public class QuizUploadViewModel {
     }
 
     /**
-     * Checks if a file is a valid image file (PNG, JPG, or JPEG).
+     * Checks if a file is a valid image file (PNG, JPG, or JPEG) or a multi-page document (PDF or TIFF).
      *
      * @param file The file to check.
-     * @return True if the file has a valid image extension.
+     * @return True if the file has a valid image or document extension.
      */
     private boolean isValidImageFile(File file) {
         String fileName = file.getName().toLowerCase();
-        return fileName.endsWith(".png") || fileName.endsWith(".jpg") || fileName.endsWith(".jpeg");
+        return fileName.endsWith(".png") || fileName.endsWith(".jpg") || fileName.endsWith(".jpeg")
+                || DocumentPages.isMultiPage(file);
     }
 
     /**
@@ -122,8 +178,10 @@ public class QuizUploadViewModel {
     private void chooseFiles() {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Select Image Files");
-        fileChooser.getExtensionFilters().add(
-                new FileChooser.ExtensionFilter("Image Files", "*.png", "*.jpg", "*.jpeg")
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Images and Documents", "*.png", "*.jpg", "*.jpeg", "*.pdf", "*.tif", "*.tiff"),
+                new FileChooser.ExtensionFilter("Image Files", "*.png", "*.jpg", "*.jpeg"),
+                new FileChooser.ExtensionFilter("PDF and TIFF Documents", "*.pdf", "*.tif", "*.tiff")
         );
         List<File> selectedFiles = fileChooser.showOpenMultipleDialog(browseButton.getScene().getWindow());
 
@@ -134,111 +192,153 @@ public class QuizUploadViewModel {
     }
 
     /**
-     * Processes the valid image files by performing OCR or any other operations.
+     * Processes the valid image files through the OCR → generation → review pipeline.
+     * Each quiz is shown as soon as it is generated while the other files keep being processed.
      *
      * @param validImageFiles The list of valid image files.
      */
     private void processValidFiles(List<File> validImageFiles) {
         Platform.runLater(() -> progressIndicator.setVisible(true));
 
-        new Thread(() -> {
-            ExecutorService executorService = Executors.newFixedThreadPool(4);
-
-            List<Future<?>> futures = new ArrayList<>();
-            List<QuizResult> quizResults = Collections.synchronizedList(new ArrayList<>());
-
-            // Pour chaque fichier, soumettre une tâche au pool
-            for (File file : validImageFiles) {
-                QuizTask task = new QuizTask(file, availableFolders, ocrService, quizService, userService, logger, quizResults);
-                futures.add(executorService.submit(task));
-            }
-
-            // Attendre que toutes les tâches soient terminées
-            for (Future<?> future : futures) {
-                try {
-                    future.get(); // Bloque jusqu'à ce que la tâche soit terminée
-
-                } catch (ExecutionException e) {
-                    logger.error("Error processing task", e);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    logger.error("Error processing task", e);
-                }
+        QuizGenerator generator = CLOZE_GENERATOR.equals(generatorChoice.getValue()) ? clozeGenerator : geminiGenerator;
+        QuizPipeline pipeline = new QuizPipeline(QuizPipeline.ocrExtractor(ocrService, ingestionExecutor),
+                generator::generateQuizzesAsync, QuizPipeline.DEFAULT_QUEUE_CAPACITY);
+        pipeline.setBatchCharacterBudget(GeminiApiService.getBatchCharacterBudget());
+        pipeline.setTextNormalization(OcrTextNormalizer.DEFAULT_MAX_TOKENS);
+        pipeline.setTextSegmenter(textSegmenter);
+        activePipelines.add(pipeline);
+        // Pendant la revue d'un quiz, un autre candidat est généré si le générateur est libre,
+        // pour que "Generate Again" soit immédiat
+        QuizPrefetcher prefetcher = new QuizPrefetcher(generator, QuizPrefetcher.DEFAULT_CANDIDATES);
+        activePrefetchers.add(prefetcher);
+        pipeline.start(validImageFiles, ingestionExecutor, ingestionExecutor.getOcrWorkerCount(), GENERATION_WORKERS);
+        ingestionExecutor.logStatistics();
+
+        // La revue attend surtout l'utilisateur : un thread virtuel suffit
+        ingestionExecutor.submit(IngestionTask.network("quiz review", () -> {
+            try {
+                reviewQuizzes(pipeline, prefetcher);
+            } finally {
+                saveApprovedQuizzes();
+                activePipelines.remove(pipeline);
+                prefetcher.cancelAll();
+                activePrefetchers.remove(prefetcher);
+                logCacheStatistics();
+                ingestionExecutor.logStatistics();
+                Platform.runLater(() -> progressIndicator.setVisible(false));
             }
-
-            // Arrêter le pool de threads de manière ordonnée
-            executorService.shutdown();
-
-            // Une fois le traitement terminé, retourner sur le thread UI pour masquer l'indicateur et afficher les alertes
-            Platform.runLater(() -> {
-                progressIndicator.setVisible(false);
-                showNextQuizAlert(quizResults, 0);
-            });
-        }).start();
+            return null;
+        }));
     }
 
-
+    /**
+     * Affiche les quiz un par un, dans l'ordre où ils sont générés, en attendant que l'utilisateur
+     * ait traité le quiz courant avant d'afficher le suivant.
+     */
+    private void reviewQuizzes(QuizPipeline pipeline, QuizPrefetcher prefetcher) throws InterruptedException {
+        QuizResult result;
+        while ((result = pipeline.takeQuiz()) != null) {
+            QuizResult current = result;
+            CountDownLatch reviewed = new CountDownLatch(1);
+            Platform.runLater(() -> reviewQuiz(current, prefetcher, reviewed::countDown));
+            reviewed.await();
+        }
+    }
 
     /**
-     * Affiche l'alerte pour le quiz situé à l'index 'index' dans la liste et,
-     * lorsque la réponse est traitée, appelle récursivement l'affichage pour le quiz suivant.
+     * Affiche l'alerte pour un quiz et, lorsque la réponse est traitée, appelle {@code onReviewed}.
      *
-     * @param quizResults La liste de tous les résultats de quiz.
-     * @param index       L'index du quiz à afficher.
+     * @param currentResult Le quiz à afficher.
+     * @param prefetcher    Prépare les quiz de "Generate Again" avec le générateur choisi pour cet upload.
+     * @param onReviewed    Exécutée quand l'utilisateur a gardé ou abandonné le quiz.
      */
-    private void showNextQuizAlert(List<QuizResult> quizResults, int index) {
-        if (index >= quizResults.size()) return;
-
-        QuizResult currentResult = quizResults.get(index);
+    private void reviewQuiz(QuizResult currentResult, QuizPrefetcher prefetcher, Runnable onReviewed) {
+        PageText source = currentResult.getSource();
+        if (source != null) {
+            prefetcher.prefetch(source);
+        }
         Alert alert = createQuizAlert(currentResult.getQuestion(), currentResult.getAnswer());
+        alert.setTitle("Quiz Confirmation - " + currentResult.getSourceName());
         Optional<ButtonType> resultAlert = alert.showAndWait();
 
         if (resultAlert.isEmpty() || resultAlert.get().getText().equals("Cancel")) {
-            logger.info("User canceled quiz creation for file {}", currentResult.getFile().getName());
-            showNextQuizAlert(quizResults, index + 1);
+            logger.info("User canceled quiz creation for {}", currentResult.getSourceName());
+            discardCandidates(prefetcher, source);
+            onReviewed.run();
             return;
         }
 
         if (resultAlert.get().getText().equals("Generate Again")) {
-            logger.info("User asked to regenerate quiz for file {}", currentResult.getFile().getName());
-            regenerateQuiz(quizResults, currentResult, index);
+            logger.info("User asked to regenerate quiz for {}", currentResult.getSourceName());
+            regenerateQuiz(currentResult, prefetcher, onReviewed);
         } else { // Si l'utilisateur choisit "Yes"
-            showFolderDialogAndSave(currentResult, () ->
-                    // Après la sauvegarde, passer au quiz suivant
-                    Platform.runLater(() -> showNextQuizAlert(quizResults, index + 1))
-            );
+            discardCandidates(prefetcher, source);
+            // Après la sauvegarde, passer au quiz suivant
+            showFolderDialogAndSave(currentResult, onReviewed);
         }
     }
 
-    private void regenerateQuiz(List<QuizResult> quizResults, QuizResult currentResult, int index){
-        new Thread(() -> {
-            try {
-                String text = extractTextFromImage(currentResult.getFile()); //why scan again ?
-                if (text == null) {
-                    logger.error("No text extracted from file {}", currentResult.getFile().getName());
-                    // Passer au quiz suivant même en cas d'erreur
-                    Platform.runLater(() -> showNextQuizAlert(quizResults, index + 1));
-                    return;
-                }
-                List<String> newQuiz = GeminiApiService.generateQuizFromText(text);
-                String newQuestion = newQuiz.get(0);
-                String newAnswer = newQuiz.get(1);
-                QuizResult newResult = new QuizResult(currentResult.getFile(), newQuestion, newAnswer);
-
-                // Remplace l'ancien résultat par le nouveau dans la liste
-                synchronized (quizResultsLock) {
-                    quizResults.set(index, newResult);
-                }
+    private void discardCandidates(QuizPrefetcher prefetcher, PageText source) {
+        if (source != null) {
+            prefetcher.discard(source);
+        }
+    }
 
-                // Réaffiche l'alerte pour le quiz régénéré
-                Platform.runLater(() -> showNextQuizAlert(quizResults, index));
-            } catch (Exception ex) {
-                logger.error("Error regenerating quiz for file: " + currentResult.getFile().getName(), ex);
+    private void regenerateQuiz(QuizResult currentResult, QuizPrefetcher prefetcher, Runnable onReviewed){
+        // Le quiz garde le passage dont il est issu ; sinon l'OCR (servi par le cache) tourne sur le pool OCR
+        CompletableFuture<PageText> source = currentResult.getSource() != null
+                ? CompletableFuture.completedFuture(currentResult.getSource())
+                : ingestionExecutor.submit(IngestionTask.ocr("quiz regeneration", () -> {
+                    String text = extractText(currentResult);
+                    return text == null ? null : new PageText(currentResult.getFile(), currentResult.getPageNumber(), text);
+                }));
+        // Annuler le futur dérivé n'annule pas la génération elle-même : on garde de quoi l'annuler
+        AtomicReference<CompletableFuture<QuizResult>> generation = new AtomicReference<>();
+        CompletableFuture<QuizResult> regeneration = source.thenCompose(page -> {
+            if (page == null) {
+                throw new CompletionException(new IllegalStateException("No text extracted from " + currentResult.getSourceName()));
+            }
+            // Un candidat préparé pendant la revue s'il y en a, sinon une nouvelle génération sans cache
+            CompletableFuture<QuizResult> candidate = prefetcher.next(page);
+            generation.set(candidate);
+            return candidate;
+        });
+        pendingRegenerations.add(regeneration);
+        regeneration.whenComplete((newResult, error) -> {
+            pendingRegenerations.remove(regeneration);
+            if (regeneration.isCancelled()) {
+                source.cancel(true);
+                CompletableFuture<QuizResult> candidate = generation.get();
+                if (candidate != null) {
+                    candidate.cancel(true);
+                }
+                // La revue attend ce quiz : elle doit se terminer pour libérer le pipeline et l'indicateur
+                Platform.runLater(onReviewed);
+                return;
+            }
+            if (error != null) {
+                logger.error("Error regenerating quiz for " + currentResult.getSourceName(), error);
                 // En cas d'erreur, poursuivre avec le quiz suivant
-                Platform.runLater(() -> showNextQuizAlert(quizResults, index + 1));
+                Platform.runLater(onReviewed);
+            } else {
+                // Réaffiche l'alerte pour le quiz régénéré
+                Platform.runLater(() -> reviewQuiz(newResult, prefetcher, onReviewed));
             }
-        }).start();
+        });
+    }
+
+    /**
+     * Arrête les traitements en cours quand la fenêtre d'upload est fermée :
+     * les fichiers restants sont abandonnés et les requêtes Gemini en cours sont annulées.
+     */
+    public void cancelPendingWork() {
+        activePipelines.forEach(QuizPipeline::cancel);
+        pendingRegenerations.forEach(regeneration -> regeneration.cancel(true));
+        activePrefetchers.forEach(QuizPrefetcher::cancelAll);
+        saveApprovedQuizzes();
+        logger.info("Upload window closed, pending quiz generation cancelled");
     }
+
     /**
      * Creates an alert to confirm the generated quiz question and answer.
      *
@@ -278,14 +378,69 @@ public class QuizUploadViewModel {
                     .filter(f -> f.getName().equals(folderName))
                     .findFirst()
                     .orElseThrow();
-            quizService.createAndSaveQuiz(result.getQuestion(), result.getAnswer(), userService.getCurrentUser() ,folder);
+            approve(new Question(result.getQuestion(), result.getAnswer(), null, folder));
         });
         onComplete.run();
     }
 
-    private String extractTextFromImage(File file) {
+    /**
+     * Met un quiz approuvé en attente ; les quiz en attente sont enregistrés ensemble, hors du thread JavaFX,
+     * dès qu'il y en a assez.
+     */
+    private void approve(Question question) {
+        boolean batchReady;
+        synchronized (approvedQuizzes) {
+            approvedQuizzes.add(question);
+            batchReady = approvedQuizzes.size() >= APPROVED_QUIZZES_PER_SAVE;
+        }
+        if (batchReady) {
+            ingestionExecutor.submit(IngestionTask.network("approved quizzes", () -> {
+                saveApprovedQuizzes();
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * Enregistre en une transaction les quiz approuvés pas encore enregistrés, à la fin de la revue d'un
+     * upload, à la fermeture de la fenêtre ou quand assez de quiz sont en attente.
+     */
+    private void saveApprovedQuizzes() {
+        List<Question> toSave;
+        synchronized (approvedQuizzes) {
+            toSave = new ArrayList<>(approvedQuizzes);
+            approvedQuizzes.clear();
+        }
+        if (toSave.isEmpty()) {
+            return;
+        }
+        try {
+            quizService.saveAll(toSave, currentUserId);
+            logger.info("Saved {} approved quiz(zes)", toSave.size());
+        } catch (RuntimeException e) {
+            logger.error("Failed to save " + toSave.size() + " approved quiz(zes)", e);
+        }
+    }
+
+    private void logCacheStatistics() {
+        OcrCache cache = ocrService.getCache();
+        if (cache != null) {
+            logger.info("OCR cache: {} hit(s), {} miss(es)", cache.getHits(), cache.getMisses());
+        }
+        GenerationCache generationCache = GeminiApiService.getGenerationCache();
+        if (generationCache != null) {
+            logger.info("Generation cache: {} hit(s), {} miss(es), hit rate {}%, about {} ms of Gemini calls saved",
+                    generationCache.getHits(), generationCache.getMisses(),
+                    Math.round(generationCache.getHitRate() * 100), generationCache.getSavedLatency().toMillis());
+        }
+    }
+
+    private String extractText(QuizResult result) {
         try {
-            return ocrService.scan(file);
+            if (DocumentPages.isMultiPage(result.getFile())) {
+                return ocrService.scanPage(result.getFile(), result.getPageNumber());
+            }
+            return ocrService.scan(result.getFile());
         } catch (Exception e) {
             logger.error("Error extracting text from image", e);
             return null;
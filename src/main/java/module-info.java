@@ -5,8 +5,11 @@ module be.esi.prj {
     requires org.hibernate.orm.core;
     requires org.slf4j;
     requires tess4j;
+    requires org.apache.pdfbox;
+    requires org.apache.pdfbox.io;
     requires io.github.cdimascio.dotenv.java;
     requires java.net.http;
+    requires java.desktop;
     requires com.google.gson;
 
     opens be.esi.prj to javafx.fxml, org.hibernate.orm.core;
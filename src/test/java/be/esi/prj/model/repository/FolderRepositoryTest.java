@@ -9,6 +9,7 @@ import jakarta.persistence.*;
 import org.junit.jupiter.api.*;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -166,5 +167,53 @@ public class FolderRepositoryTest {
         assertEquals(1, hardCount);
     }
 
+    @Test
+    public void testGetFolderStats_countsEveryDifficultyInOneQuery() {
+        Folder folder = new Folder("Folder with stats", testUser);
+        folderRepository.save(folder);
+
+        Question q1 = new Question("Q1", "A1", testUser, folder);
+        q1.setDifficulty(DifficultyLevel.EASY);
+        Question q2 = new Question("Q2", "A2", testUser, folder);
+        q2.setDifficulty(DifficultyLevel.EASY);
+        Question q3 = new Question("Q3", "A3", testUser, folder);
+        q3.setDifficulty(DifficultyLevel.AGAIN);
+
+        em.persist(q1);
+        em.persist(q2);
+        em.persist(q3);
+        em.flush();
 
+        FolderStats stats = folderRepository.getFolderStats(folder.getFolderId());
+        assertEquals(folder.getFolderId(), stats.folderId());
+        assertEquals(3, stats.total());
+        assertEquals(2, stats.count(DifficultyLevel.EASY));
+        assertEquals(1, stats.count(DifficultyLevel.AGAIN));
+        assertEquals(0, stats.count(DifficultyLevel.HARD));
+        assertEquals(0, stats.count(DifficultyLevel.GOOD));
+    }
+
+    @Test
+    public void testGetFolderStatsByUser_includesEmptyFolders() {
+        Folder full = new Folder("Full folder", testUser);
+        Folder empty = new Folder("Empty folder", testUser);
+        folderRepository.save(full);
+        folderRepository.save(empty);
+
+        Question q1 = new Question("Q1", "A1", testUser, full);
+        q1.setDifficulty(DifficultyLevel.GOOD);
+        Question q2 = new Question("Q2", "A2", testUser, full);
+
+        em.persist(q1);
+        em.persist(q2);
+        em.flush();
+
+        Map<Integer, FolderStats> stats = folderRepository.getFolderStatsByUser(testUser);
+        assertEquals(2, stats.size());
+        FolderStats fullStats = stats.get(full.getFolderId());
+        assertEquals(2, fullStats.total());
+        assertEquals(1, fullStats.count(DifficultyLevel.GOOD));
+        assertEquals(1, fullStats.count(DifficultyLevel.HARD));
+        assertEquals(FolderStats.empty(empty.getFolderId()), stats.get(empty.getFolderId()));
+    }
 }
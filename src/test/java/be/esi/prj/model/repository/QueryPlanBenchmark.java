@@ -0,0 +1,157 @@
+package be.esi.prj.model.repository;
+
+import be.esi.prj.model.orm.DifficultyLevel;
+import be.esi.prj.model.orm.Folder;
+import be.esi.prj.model.orm.Question;
+import be.esi.prj.model.orm.ReviewHistory;
+import be.esi.prj.model.orm.User;
+import be.esi.prj.model.services.QuizService;
+import be.esi.prj.utils.SqliteProfile;
+import be.esi.prj.utils.UnitOfWork;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import jakarta.persistence.Query;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Shows the query plans and the latency of the hot queries on a folder of 100k questions, with the indexes
+ * declared on the entities and after dropping them.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Dtest=QueryPlanBenchmark}.
+ * </p>
+ */
+@Tag("benchmark")
+class QueryPlanBenchmark {
+
+    private static final int FOLDER_QUESTIONS = 100_000;
+    private static final int OTHER_QUESTIONS = 20_000;
+    /** One question in three has been reviewed at least once. */
+    private static final int REVIEWED_EVERY = 3;
+    private static final int RUNS = 5;
+    private static final List<String> INDEXES = List.of(
+            "idx_question_folder_user_difficulty", "uk_review_user_question", "idx_review_user_next_date");
+
+    /** The SQL of the repository queries, as generated by Hibernate. */
+    private static final String DUE_QUESTIONS = """
+            SELECT q.questionId FROM Question q
+            LEFT JOIN ReviewHistory rh ON rh.question_Id = q.questionId AND rh.user_Id = ?1
+            WHERE q.folderId = ?2 AND q.userId = ?1 AND (rh.reviewId IS NULL OR rh.nextReviewDate <= ?3)
+            """;
+    private static final String COUNT_BY_DIFFICULTY = """
+            SELECT COUNT(q.questionId) FROM Question q WHERE q.folderId = ?1 AND q.difficulty = ?2
+            """;
+    private static final String REVIEW_HISTORY = """
+            SELECT rh.reviewId FROM ReviewHistory rh WHERE rh.question_Id = ?1 AND rh.user_Id = ?2
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void hotQueriesWithAndWithoutIndexes() {
+        Map<String, Object> properties = SqliteProfile.configured().toPersistenceProperties();
+        properties.put("jakarta.persistence.jdbc.url", "jdbc:sqlite:" + tempDir.resolve("plans.db"));
+        properties.put("hibernate.hbm2ddl.auto", "create");
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("quizAppPU", properties);
+        try {
+            UnitOfWork unitOfWork = new UnitOfWork(emf::createEntityManager);
+            unitOfWork.runInTransaction(em -> new ReviewHistoryRepository(em).ensureUniqueIndex());
+            User user = new User("BENCH", "password");
+            Folder folder = new Folder("Benchmark", user);
+            Folder otherFolder = new Folder("Other", user);
+            unitOfWork.runInTransaction(em -> {
+                em.persist(user);
+                em.persist(folder);
+                em.persist(otherFolder);
+            });
+            List<Question> questions = questions(FOLDER_QUESTIONS, user, folder);
+            QuizService quizService = new QuizService(unitOfWork);
+            quizService.saveAll(questions);
+            quizService.saveAll(questions(OTHER_QUESTIONS, user, otherFolder));
+            unitOfWork.runInTransaction(em -> {
+                for (int i = 0; i < questions.size(); i += REVIEWED_EVERY) {
+                    LocalDate reviewed = LocalDate.now().minusDays(i % 10);
+                    em.persist(new ReviewHistory(user, questions.get(i), DifficultyLevel.GOOD,
+                            reviewed, reviewed.plusDays(i % 20), 2.5));
+                }
+            });
+            Question probe = questions.get(FOLDER_QUESTIONS / 2 - FOLDER_QUESTIONS / 2 % REVIEWED_EVERY);
+
+            for (boolean indexed : new boolean[]{true, false}) {
+                if (!indexed) {
+                    unitOfWork.runInTransaction(em -> INDEXES.forEach(
+                            index -> em.createNativeQuery("DROP INDEX " + index).executeUpdate()));
+                }
+                unitOfWork.runInTransaction(em -> em.createNativeQuery("ANALYZE").executeUpdate());
+                System.out.println(indexed ? "===== With indexes" : "===== Without indexes");
+                try (EntityManager em = emf.createEntityManager()) {
+                    report(em, "Due questions", DUE_QUESTIONS, user.getUserId(), folder.getFolderId(), LocalDate.now());
+                    report(em, "Count by difficulty", COUNT_BY_DIFFICULTY, folder.getFolderId(), DifficultyLevel.HARD.name());
+                    report(em, "Review history lookup", REVIEW_HISTORY, probe.getQuestionId(), user.getUserId());
+
+                    QuizRepository quizRepository = new QuizRepository(em);
+                    FolderRepository folderRepository = new FolderRepository(em);
+                    ReviewHistoryRepository reviewRepository = new ReviewHistoryRepository(em);
+                    System.out.printf("Repositories: getDueQuestions %.1f ms, getQuestionsCountByDifficulty %.1f ms, findReviewHistory %.2f ms%n",
+                            median(() -> {
+                                em.clear();
+                                return quizRepository.getDueQuestions(folder.getFolderId(), user);
+                            }),
+                            median(() -> folderRepository.getQuestionsCountByDifficulty(folder.getFolderId(), DifficultyLevel.HARD)),
+                            median(() -> reviewRepository.findReviewHistory(probe, user)));
+                }
+            }
+        } finally {
+            emf.close();
+        }
+    }
+
+    private static List<Question> questions(int count, User user, Folder folder) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new Question("Question " + i + " ?", "Réponse " + i, user, folder))
+                .toList();
+    }
+
+    /**
+     * Prints the plan and the median latency of a query.
+     */
+    private static void report(EntityManager em, String name, String sql, Object... parameters) {
+        Supplier<Query> explain = () -> bind(em.createNativeQuery("EXPLAIN QUERY PLAN " + sql), parameters);
+        System.out.println("-- " + name);
+        for (Object row : explain.get().getResultList()) {
+            System.out.println("   " + ((Object[]) row)[3]);
+        }
+        System.out.printf("   %.2f ms (median of %d)%n",
+                median(() -> bind(em.createNativeQuery(sql), parameters).getResultList()), RUNS);
+    }
+
+    private static Query bind(Query query, Object... parameters) {
+        for (int i = 0; i < parameters.length; i++) {
+            query.setParameter(i + 1, parameters[i]);
+        }
+        return query;
+    }
+
+    private static double median(Supplier<?> query) {
+        query.get(); // warm-up
+        double[] times = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            query.get();
+            times[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+}
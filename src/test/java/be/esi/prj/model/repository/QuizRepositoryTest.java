@@ -6,6 +6,7 @@ import org.junit.jupiter.api.*;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -119,5 +120,31 @@ public class QuizRepositoryTest {
         assertEquals("Q3", due.get(0).getQuestionText());
     }
 
+    @Test
+    public void testGetQuestionTexts_returnsQuestionAndAnswerOfUser() {
+        quizRepository.save(new Question("What is Java?", "A language", testUser, testFolder));
+        User otherUser = new User("other_" + System.currentTimeMillis(), "password123");
+        em.persist(otherUser);
+        quizRepository.save(new Question("Other?", "Other", otherUser, testFolder));
+        em.flush();
+
+        assertEquals(List.of("What is Java? A language"), quizRepository.getQuestionTexts(testUser));
+    }
+
+    @Test
+    public void testSaveAll_assignsDistinctIdsBeforeInsert() {
+        List<Question> questions = IntStream.range(0, 120)
+                .mapToObj(i -> new Question("Q" + i, "A" + i, testUser, testFolder))
+                .toList();
+
+        quizRepository.saveAll(questions);
+
+        // Les identifiants ne viennent pas de l'insertion : les lignes peuvent être envoyées par lots
+        assertEquals(120, questions.stream().map(Question::getQuestionId).distinct().count());
+        em.flush();
+        em.clear();
+        assertEquals(120, quizRepository.getDueQuestions(testFolder.getFolderId(), testUser).size());
+    }
+
 
 }
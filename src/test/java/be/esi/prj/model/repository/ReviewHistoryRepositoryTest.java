@@ -6,6 +6,8 @@ import jakarta.persistence.*;
 import org.junit.jupiter.api.*;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -53,6 +55,21 @@ public class ReviewHistoryRepositoryTest {
         }
     }
 
+    @Test
+    public void testEnsureUniqueIndex_rejectsSecondHistoryForSameQuestionAndUser() {
+        reviewHistoryRepository.ensureUniqueIndex();
+        reviewHistoryRepository.ensureUniqueIndex(); // déjà présent : rien à faire
+
+        reviewHistoryRepository.save(new ReviewHistory(testUser, testQuestion, DifficultyLevel.GOOD,
+                LocalDate.now(), LocalDate.now().plusDays(3), 2.5));
+        em.flush();
+        ReviewHistory duplicate = new ReviewHistory(testUser, testQuestion, DifficultyLevel.HARD,
+                LocalDate.now(), LocalDate.now().plusDays(1), 2.4);
+
+        // IDENTITY : la ligne est insérée dès la sauvegarde
+        assertThrows(PersistenceException.class, () -> reviewHistoryRepository.save(duplicate));
+    }
+
     @AfterAll
     public static void tearDownClass() {
         if (em != null && em.isOpen()) em.close();
@@ -102,4 +119,95 @@ public class ReviewHistoryRepositoryTest {
         ReviewHistory found = reviewHistoryRepository.findReviewHistory(testQuestion, testUser);
         assertNull(found);
     }
+
+    @Test
+    public void testFindReviewHistoryByIds_whenExists() {
+        ReviewHistory rh = new ReviewHistory(
+                testUser,
+                testQuestion,
+                DifficultyLevel.GOOD,
+                LocalDate.now(),
+                LocalDate.now().plusDays(4),
+                2.6
+        );
+        em.persist(rh);
+        em.flush();
+
+        ReviewHistory found = reviewHistoryRepository.findReviewHistory(testQuestion.getQuestionId(), testUser.getUserId());
+        assertNotNull(found);
+        assertEquals(DifficultyLevel.GOOD, found.getDifficulty());
+        assertNull(reviewHistoryRepository.findReviewHistory(testQuestion.getQuestionId(), testUser.getUserId() + 1));
+    }
+
+    @Test
+    public void testFindReviewHistories_returnsHistoriesKeyedByQuestionId() {
+        Question other = new Question("What is JPQL?", "A query language", testUser, testFolder);
+        Question neverReviewed = new Question("What is HQL?", "Hibernate's JPQL", testUser, testFolder);
+        quizRepository.save(other);
+        quizRepository.save(neverReviewed);
+        em.persist(new ReviewHistory(testUser, testQuestion, DifficultyLevel.EASY,
+                LocalDate.now(), LocalDate.now().plusDays(7), 2.7));
+        em.persist(new ReviewHistory(testUser, other, DifficultyLevel.HARD,
+                LocalDate.now(), LocalDate.now().plusDays(2), 2.4));
+        em.flush();
+
+        Map<Long, ReviewHistory> histories = reviewHistoryRepository.findReviewHistories(
+                List.of(testQuestion.getQuestionId(), other.getQuestionId(), neverReviewed.getQuestionId()),
+                testUser.getUserId());
+
+        assertEquals(2, histories.size());
+        assertEquals(DifficultyLevel.EASY, histories.get(testQuestion.getQuestionId()).getDifficulty());
+        assertEquals(DifficultyLevel.HARD, histories.get(other.getQuestionId()).getDifficulty());
+        assertFalse(histories.containsKey(neverReviewed.getQuestionId()));
+    }
+
+    @Test
+    public void testEnsureUniqueIndex_keepsTheLatestOfExistingDuplicates() {
+        em.persist(new ReviewHistory(testUser, testQuestion, DifficultyLevel.AGAIN,
+                LocalDate.now().minusDays(1), LocalDate.now().minusDays(1), 2.3));
+        ReviewHistory latest = new ReviewHistory(testUser, testQuestion, DifficultyLevel.GOOD,
+                LocalDate.now(), LocalDate.now().plusDays(4), 2.6);
+        em.persist(latest);
+        em.flush();
+
+        reviewHistoryRepository.ensureUniqueIndex();
+        em.clear();
+
+        Map<Long, ReviewHistory> histories = reviewHistoryRepository.findReviewHistories(
+                List.of(testQuestion.getQuestionId()), testUser.getUserId());
+        assertEquals(latest.getReviewId(), histories.get(testQuestion.getQuestionId()).getReviewId());
+        assertEquals(1L, ((Number) em.createNativeQuery("SELECT COUNT(*) FROM ReviewHistory WHERE question_Id = ?1")
+                .setParameter(1, testQuestion.getQuestionId()).getSingleResult()).longValue());
+    }
+
+    @Test
+    public void testUpsert_insertsThenUpdatesASingleHistory() {
+        reviewHistoryRepository.ensureUniqueIndex();
+        long questionId = testQuestion.getQuestionId();
+        int userId = testUser.getUserId();
+
+        assertTrue(reviewHistoryRepository.upsert(questionId, userId, DifficultyLevel.AGAIN,
+                LocalDate.now(), LocalDate.now(), 2.5));
+        assertTrue(reviewHistoryRepository.upsert(questionId, userId, DifficultyLevel.GOOD,
+                LocalDate.now(), LocalDate.now().plusDays(4), 2.6));
+        em.clear();
+
+        ReviewHistory history = reviewHistoryRepository.findReviewHistory(questionId, userId);
+        assertNotNull(history);
+        assertEquals(DifficultyLevel.GOOD, history.getDifficulty());
+        assertEquals(LocalDate.now(), history.getReviewDate());
+        assertEquals(LocalDate.now().plusDays(4), history.getNextReviewDate());
+        assertEquals(2.6, history.getEaseFactor(), 1e-9);
+        assertEquals(DifficultyLevel.GOOD, em.find(Question.class, questionId).getDifficulty());
+        assertEquals(1, reviewHistoryRepository.findReviewHistories(List.of(questionId), userId).size());
+    }
+
+    @Test
+    public void testUpsert_whenQuestionDoesNotExist_writesNothing() {
+        reviewHistoryRepository.ensureUniqueIndex();
+
+        assertFalse(reviewHistoryRepository.upsert(-1L, testUser.getUserId(), DifficultyLevel.EASY,
+                LocalDate.now(), LocalDate.now().plusDays(7), 2.7));
+        assertNull(reviewHistoryRepository.findReviewHistory(-1L, testUser.getUserId()));
+    }
 }
@@ -114,4 +114,20 @@ public class UserRepositoryTest {
             em.flush();
         });
     }
+
+    @Test
+    public void testFindById_whenUserExists_returnsUser() {
+        User user = new User("dave", "password123");
+        repository.save(user);
+        em.flush();
+
+        User fetchedUser = repository.findById(user.getUserId());
+        assertEquals("dave", fetchedUser.getUsername());
+    }
+
+    @Test
+    public void testFindById_whenUserDoesNotExist_throwsException() {
+        RepositoryException exception = assertThrows(RepositoryException.class, () -> repository.findById(-1));
+        assertTrue(exception.getMessage().contains("No user with id"));
+    }
 }
@@ -0,0 +1,72 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.utils.PageText;
+import be.esi.prj.utils.QuizResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClozeQuizGeneratorTest {
+
+    private static final String PAGE = """
+            La photosynthèse transforme la lumière en énergie chimique.
+            Les plantes vertes réalisent la photosynthèse dans les chloroplastes.
+
+            Une cellule végétale contient des chloroplastes et une paroi.""";
+
+    @Test
+    void generateQuizzesAsync_shouldBlankOutTheKeyTermOfTheBestSentence() {
+        ClozeQuizGenerator generator = new ClozeQuizGenerator(List.of());
+        List<QuizResult> streamed = new ArrayList<>();
+
+        List<QuizResult> quizzes = generator.generateQuizzesAsync(
+                List.of(new PageText(new File("cours.png"), 1, PAGE)), streamed::add).join();
+
+        QuizResult quiz = quizzes.get(0);
+        assertEquals("photosynthèse", quiz.getAnswer());
+        assertTrue(quiz.getQuestion().contains(ClozeQuizGenerator.BLANK), quiz.getQuestion());
+        assertFalse(quiz.getQuestion().contains("photosynthèse"), quiz.getQuestion());
+        assertEquals(quizzes, streamed);
+    }
+
+    @Test
+    void regenerateQuizAsync_shouldNeverReturnTheFirstQuizAgain() {
+        ClozeQuizGenerator generator = new ClozeQuizGenerator(List.of());
+        PageText page = new PageText(new File("cours.png"), 1, PAGE);
+        String first = generator.generateQuizzesAsync(List.of(page), null).join().get(0).getQuestion();
+
+        for (int i = 0; i < 50; i++) {
+            QuizResult regenerated = generator.regenerateQuizAsync(page).join();
+            assertNotNull(regenerated.getQuestion());
+            assertNotEquals(first, regenerated.getQuestion());
+        }
+    }
+
+    @Test
+    void candidates_shouldPreferTermsThatAreRareInTheUserQuestions() {
+        // La photosynthèse est déjà partout dans les questions de l'utilisateur : les chloroplastes sont plus spécifiques
+        ClozeQuizGenerator generator = new ClozeQuizGenerator(List.of(
+                "Qu'est-ce que la photosynthèse ? Une réaction",
+                "Où a lieu la photosynthèse ? Dans la feuille",
+                "La photosynthèse produit ? De l'oxygène"));
+
+        List<ClozeQuizGenerator.Cloze> candidates = generator.candidates(PAGE);
+
+        assertEquals("chloroplastes", candidates.get(0).answer());
+        assertEquals(3, candidates.size());
+    }
+
+    @Test
+    void generateQuizzesAsync_shouldGiveNoQuestion_whenTextHasNoSentence() {
+        ClozeQuizGenerator generator = new ClozeQuizGenerator(List.of());
+
+        QuizResult quiz = generator.generateQuizzesAsync(
+                List.of(new PageText(new File("logo.png"), 1, "12 / 04")), null).join().get(0);
+
+        assertNull(quiz.getQuestion());
+    }
+}
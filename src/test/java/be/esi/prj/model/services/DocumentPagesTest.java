@@ -0,0 +1,94 @@
+package be.esi.prj.model.services;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentPagesTest {
+
+    @Test
+    void isMultiPage_shouldAcceptPdfAndTiffOnly() {
+        assertTrue(DocumentPages.isMultiPage(new File("cours.PDF")));
+        assertTrue(DocumentPages.isMultiPage(new File("scan.tif")));
+        assertTrue(DocumentPages.isMultiPage(new File("scan.tiff")));
+        assertFalse(DocumentPages.isMultiPage(new File("photo.png")));
+    }
+
+    @Test
+    void renderPage_shouldRenderPdfPageAtRequestedDpi(@TempDir Path tempDir) throws Exception {
+        File pdf = pdf(tempDir, 3);
+
+        try (DocumentPages pages = DocumentPages.open(pdf, 72)) {
+            assertEquals(3, pages.getPageCount());
+            BufferedImage page = pages.renderPage(2);
+            // A4 is 595.3 x 841.9 points, one point per pixel at 72 DPI
+            assertEquals(595, page.getWidth());
+            assertEquals(841, page.getHeight());
+            assertEquals(BufferedImage.TYPE_BYTE_GRAY, page.getType());
+        }
+    }
+
+    @Test
+    void renderPage_shouldReadEveryTiffPage(@TempDir Path tempDir) throws Exception {
+        File tiff = tiff(tempDir, 400, 300, 500);
+
+        try (DocumentPages pages = DocumentPages.open(tiff, 300)) {
+            assertEquals(3, pages.getPageCount());
+            assertEquals(300, pages.renderPage(2).getWidth());
+            assertEquals(500, pages.renderPage(3).getWidth());
+            assertEquals(400, pages.renderPage(1).getWidth());
+        }
+    }
+
+    @Test
+    void renderPage_shouldRejectMissingPage(@TempDir Path tempDir) throws Exception {
+        try (DocumentPages pages = DocumentPages.open(pdf(tempDir, 1), 72)) {
+            assertThrows(IllegalArgumentException.class, () -> pages.renderPage(2));
+        }
+    }
+
+    static File pdf(Path directory, int pageCount) throws Exception {
+        File file = directory.resolve("cours.pdf").toFile();
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pageCount; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.addRect(50, 700, 400, 10);
+                    content.fill();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+
+    static File tiff(Path directory, int... pageWidths) throws Exception {
+        File file = directory.resolve("scan.tiff").toFile();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(output);
+            writer.prepareWriteSequence(null);
+            for (int width : pageWidths) {
+                writer.writeToSequence(new IIOImage(new BufferedImage(width, 200, BufferedImage.TYPE_BYTE_GRAY), null, null), null);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,73 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.utils.PageText;
+import be.esi.prj.utils.QuizResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FallbackQuizGeneratorTest {
+
+    private final QuizGenerator primary = mock(QuizGenerator.class);
+    private final QuizGenerator fallback = mock(QuizGenerator.class);
+    private final FallbackQuizGenerator generator = new FallbackQuizGenerator(primary, fallback);
+
+    private final PageText page1 = new PageText(new File("cours.pdf"), 1, "Texte 1");
+    private final PageText page2 = new PageText(new File("cours.pdf"), 2, "Texte 2");
+
+    @Test
+    void generateQuizzesAsync_shouldOnlyFallBackForPagesWithoutQuestion() {
+        QuizResult generated = new QuizResult(page1.file(), 1, "Question ?", "Réponse");
+        when(primary.generateQuizzesAsync(anyList(), any())).thenReturn(CompletableFuture.completedFuture(
+                List.of(generated, new QuizResult(page2.file(), 2, null, null))));
+        QuizResult offline = new QuizResult(page2.file(), 2, "Complétez : _____", "Texte");
+        when(fallback.generateQuizzesAsync(eq(List.of(page2)), any())).thenReturn(CompletableFuture.completedFuture(List.of(offline)));
+
+        List<QuizResult> quizzes = generator.generateQuizzesAsync(List.of(page1, page2), null).join();
+
+        assertEquals(List.of(generated, offline), quizzes);
+    }
+
+    @Test
+    void generateQuizzesAsync_shouldFallBackForAllPages_whenPrimaryFails() {
+        when(primary.generateQuizzesAsync(anyList(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("quota dépassé")));
+        List<QuizResult> offline = List.of(new QuizResult(page1.file(), 1, "Q1", "A1"), new QuizResult(page2.file(), 2, "Q2", "A2"));
+        when(fallback.generateQuizzesAsync(eq(List.of(page1, page2)), any())).thenReturn(CompletableFuture.completedFuture(offline));
+        List<QuizResult> streamed = new ArrayList<>();
+
+        List<QuizResult> quizzes = generator.generateQuizzesAsync(List.of(page1, page2), streamed::add).join();
+
+        assertEquals(offline, quizzes);
+        verify(fallback).generateQuizzesAsync(eq(List.of(page1, page2)), notNull());
+    }
+
+    @Test
+    void generateQuizzesAsync_shouldCancelPrimaryWithoutFallingBack() {
+        CompletableFuture<List<QuizResult>> pending = new CompletableFuture<>();
+        when(primary.generateQuizzesAsync(anyList(), any())).thenReturn(pending);
+
+        generator.generateQuizzesAsync(List.of(page1), null).cancel(true);
+
+        assertTrue(pending.isCancelled());
+        verifyNoInteractions(fallback);
+    }
+
+    @Test
+    void regenerateQuizAsync_shouldFallBack_whenPrimaryFails() {
+        when(primary.regenerateQuizAsync(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("hors ligne")));
+        QuizResult offline = new QuizResult(page1.file(), 1, "Q", "A");
+        when(fallback.regenerateQuizAsync(page1)).thenReturn(CompletableFuture.completedFuture(offline));
+
+        assertSame(offline, generator.regenerateQuizAsync(page1).join());
+    }
+}
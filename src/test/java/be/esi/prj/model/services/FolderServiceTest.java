@@ -7,6 +7,7 @@ import be.esi.prj.model.orm.DifficultyLevel;
 import be.esi.prj.model.orm.Folder;
 import be.esi.prj.model.orm.User;
 import be.esi.prj.model.repository.FolderRepository;
+import be.esi.prj.model.repository.FolderStats;
 import be.esi.prj.model.repository.RepositoryException;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityTransaction;
@@ -15,6 +16,7 @@ import org.junit.jupiter.api.*;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class FolderServiceTest {
 
@@ -147,6 +149,17 @@ public class FolderServiceTest {
         verify(folderRepo).findByUser(user);
     }
 
+    @Test
+    public void testGetFoldersForUserId_delegatesToRepo() {
+        List<Folder> list = Arrays.asList(folder);
+        when(folderRepo.findByUserId(3)).thenReturn(list);
+
+        List<Folder> result = folderService.getFoldersForUser(3);
+
+        assertEquals(list, result);
+        verify(folderRepo).findByUserId(3);
+    }
+
     @Test
     public void testStatistics_delegation() {
         when(folderRepo.getTotalQuestionsCount(1)).thenReturn(5);
@@ -161,4 +174,14 @@ public class FolderServiceTest {
         assertEquals(3, folderService.getHardQuestionsCount(1));
         assertEquals(4, folderService.getAgainQuestionsCount(1));
     }
+
+    @Test
+    public void testFolderStats_delegation() {
+        FolderStats stats = new FolderStats(1, 3, Map.of(DifficultyLevel.EASY, 3));
+        when(folderRepo.getFolderStats(1)).thenReturn(stats);
+        when(folderRepo.getFolderStatsByUser(user)).thenReturn(Map.of(1, stats));
+
+        assertEquals(stats, folderService.getFolderStats(1));
+        assertEquals(Map.of(1, stats), folderService.getFolderStatsForUser(user));
+    }
 }
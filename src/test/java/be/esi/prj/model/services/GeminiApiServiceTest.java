@@ -3,12 +3,36 @@ package be.esi.prj.model.services;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.http.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import be.esi.prj.utils.CircuitBreaker;
+import be.esi.prj.utils.PageText;
+import be.esi.prj.utils.QuizResult;
+import be.esi.prj.utils.ResilientHttpSender;
+import be.esi.prj.utils.TokenBucket;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 
 public class GeminiApiServiceTest {
 
@@ -29,6 +53,21 @@ public class GeminiApiServiceTest {
     static void afterAll() {
         // Restaure un client « normal » pour ne pas polluer d'autres tests
         GeminiApiService.setHttpClientForTests(HttpClient.newHttpClient());
+        GeminiApiService.setMaxInFlightRequests(GeminiApiService.DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+        GeminiApiService.setRequestTimeout(GeminiApiService.DEFAULT_REQUEST_TIMEOUT);
+        GeminiApiService.setHttpSender(new ResilientHttpSender(
+                new TokenBucket(GeminiApiService.DEFAULT_REQUESTS_PER_MINUTE, GeminiApiService.DEFAULT_REQUEST_BURST),
+                new CircuitBreaker(GeminiApiService.DEFAULT_CIRCUIT_FAILURE_THRESHOLD, GeminiApiService.DEFAULT_CIRCUIT_OPEN_DURATION),
+                GeminiApiService.DEFAULT_MAX_ATTEMPTS, GeminiApiService.DEFAULT_RETRY_BASE_DELAY));
+    }
+
+    @BeforeEach
+    void setUp() {
+        reset(mockClient, mockResponse);
+        when(mockResponse.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        // Pas de limite de débit et des retries quasi immédiats pour garder les tests rapides
+        GeminiApiService.setHttpSender(new ResilientHttpSender(new TokenBucket(Integer.MAX_VALUE, 100),
+                new CircuitBreaker(100, Duration.ofSeconds(30)), 3, Duration.ofMillis(1)));
     }
 
     @Test
@@ -37,8 +76,8 @@ public class GeminiApiServiceTest {
         String body = "{\"question\":\"Q?\",\"answer\":\"A.\"}";
         when(mockResponse.statusCode()).thenReturn(200);
         when(mockResponse.body()).thenReturn(body);
-        when(mockClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
-                .thenReturn(mockResponse);
+        when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(mockResponse));
 
         List<String> result = GeminiApiService.generateQuizFromText("unused");
         assertEquals(2, result.size());
@@ -51,8 +90,8 @@ public class GeminiApiServiceTest {
         // status 200 mais body pas JSON
         when(mockResponse.statusCode()).thenReturn(200);
         when(mockResponse.body()).thenReturn("pas du JSON");
-        when(mockClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
-                .thenReturn(mockResponse);
+        when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(mockResponse));
 
         List<String> quiz = GeminiApiService.generateQuizFromText("unused");
         assertEquals(Arrays.asList(null, null), quiz);
@@ -63,8 +102,8 @@ public class GeminiApiServiceTest {
         // status != 200
         when(mockResponse.statusCode()).thenReturn(500);
         when(mockResponse.body()).thenReturn("Server Error");
-        when(mockClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
-                .thenReturn(mockResponse);
+        when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(mockResponse));
 
         List<String> quiz = GeminiApiService.generateQuizFromText("unused");
         assertEquals(Arrays.asList(null, null), quiz);
@@ -73,10 +112,408 @@ public class GeminiApiServiceTest {
     @Test
     public void testGenerateQuizFromText_ioExceptionReturnsNulls() throws Exception {
         // IOException à l’envoi
-        when(mockClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
-                .thenThrow(new IOException("boom"));
+        when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("boom")));
 
         List<String> quiz = GeminiApiService.generateQuizFromText("unused");
         assertEquals(Arrays.asList(null, null), quiz);
     }
+
+    @Test
+    public void testGenerateQuizAsync_keepsSourceAndUsesTimeout() throws Exception {
+        String body = "{\"question\":\"Q?\",\"answer\":\"A.\"}";
+        when(mockResponse.statusCode()).thenReturn(200);
+        when(mockResponse.body()).thenReturn(body);
+        when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(mockResponse));
+
+        QuizResult quiz = GeminiApiService.generateQuizAsync(new File("cours.pdf"), 3, "texte",
+                Duration.ofSeconds(5)).get(1, TimeUnit.SECONDS);
+
+        assertEquals("Q?", quiz.getQuestion());
+        assertEquals(3, quiz.getPageNumber());
+        ArgumentCaptor<HttpRequest> request = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(mockClient).sendAsync(request.capture(), any(HttpResponse.BodyHandler.class));
+        assertEquals(Optional.of(Duration.ofSeconds(5)), request.getValue().timeout());
+    }
+
+    @Test
+    public void testGenerateQuizAsync_cancellationAbortsRequest() {
+        CompletableFuture<HttpResponse<String>> exchange = new CompletableFuture<>();
+        when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(exchange);
+
+        CompletableFuture<QuizResult> quiz = GeminiApiService.generateQuizAsync(new File("page.png"), 1, "texte");
+        quiz.cancel(true);
+
+        assertTrue(exchange.isCancelled());
+        assertEquals(0, GeminiApiService.getInFlightRequests());
+    }
+
+    @Test
+    public void testGenerateQuizAsync_capsRequestsInFlight() throws Exception {
+        GeminiApiService.setMaxInFlightRequests(1);
+        CompletableFuture<HttpResponse<String>> first = new CompletableFuture<>();
+        when(mockResponse.statusCode()).thenReturn(200);
+        when(mockResponse.body()).thenReturn("{\"question\":\"Q?\",\"answer\":\"A.\"}");
+        when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(first, CompletableFuture.completedFuture(mockResponse));
+
+        CompletableFuture<QuizResult> quiz1 = GeminiApiService.generateQuizAsync(new File("a.png"), 1, "a");
+        CompletableFuture<QuizResult> quiz2 = GeminiApiService.generateQuizAsync(new File("b.png"), 1, "b");
+
+        verify(mockClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+        assertFalse(quiz2.isDone());
+        first.complete(mockResponse);
+        assertEquals("Q?", quiz1.get(1, TimeUnit.SECONDS).getQuestion());
+        assertEquals("Q?", quiz2.get(1, TimeUnit.SECONDS).getQuestion());
+        verify(mockClient, times(2)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+        GeminiApiService.setMaxInFlightRequests(GeminiApiService.DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+    }
+
+    @Test
+    public void testPackBatches_respectsCharacterBudget() {
+        List<PageText> pages = List.of(page(1, "a".repeat(40)), page(2, "b".repeat(50)),
+                page(3, "c".repeat(200)), page(4, "d".repeat(10)));
+
+        List<List<PageText>> batches = GeminiApiService.packBatches(pages, 100);
+
+        assertEquals(List.of(List.of(pages.get(0), pages.get(1)), List.of(pages.get(2)), List.of(pages.get(3))), batches);
+    }
+
+    @Test
+    public void testBuildBatchPrompt_escapesOcrText() {
+        String body = GeminiApiService.buildBatchPrompt(List.of(page(1, "Il a dit \"bonjour\"\nà tous \\o/")));
+
+        String prompt = JsonParser.parseString(body).getAsJsonObject()
+                .getAsJsonArray("contents").get(0).getAsJsonObject()
+                .getAsJsonArray("parts").get(0).getAsJsonObject()
+                .get("text").getAsString();
+        assertTrue(prompt.contains("\"index\":0"));
+        assertTrue(prompt.contains("Il a dit \\\"bonjour\\\"\\nà tous"));
+    }
+
+    @Test
+    public void testParseQuizzesFromResponse_fansOutByIndex() {
+        String body = geminiBody("```json [{\"index\":1,\"question\":\"Q1?\",\"answer\":\"A1\"},"
+                + "{\"index\":0,\"question\":\"Q0?\",\"answer\":\"A0\"},"
+                + "{\"index\":7,\"question\":\"Q7?\",\"answer\":\"A7\"}] ```");
+
+        List<List<String>> quizzes = GeminiApiService.parseQuizzesFromResponse(body, 3);
+
+        assertEquals(List.of("Q0?", "A0"), quizzes.get(0));
+        assertEquals(List.of("Q1?", "A1"), quizzes.get(1));
+        assertNull(quizzes.get(2));
+    }
+
+    @Test
+    public void testGenerateQuizzesAsync_retriesOnlyMissingItem() throws Exception {
+        HttpResponse<String> batchResponse = mock(HttpResponse.class);
+        when(batchResponse.statusCode()).thenReturn(200);
+        when(batchResponse.body()).thenReturn(geminiBody("[{\"index\":0,\"question\":\"Q0?\",\"answer\":\"A0\"}]"));
+        when(mockResponse.statusCode()).thenReturn(200);
+        when(mockResponse.body()).thenReturn("{\"question\":\"Q1?\",\"answer\":\"A1\"}");
+        when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(batchResponse), CompletableFuture.completedFuture(mockResponse));
+
+        List<QuizResult> quizzes = GeminiApiService.generateQuizzesAsync(List.of(page(1, "texte 1"), page(2, "texte 2")))
+                .get(1, TimeUnit.SECONDS);
+
+        assertEquals(List.of("Q0?", "Q1?"), quizzes.stream().map(QuizResult::getQuestion).toList());
+        assertEquals(List.of(1, 2), quizzes.stream().map(QuizResult::getPageNumber).toList());
+        verify(mockClient, times(2)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    }
+
+    @Test
+    public void testGenerateQuizAsync_servesRepeatedTextFromCacheUnlessBypassed(@TempDir Path tempDir) throws Exception {
+        GeminiApiService.setGenerationCache(new GenerationCache(tempDir, 1024 * 1024, Duration.ofDays(1)));
+        try {
+            when(mockResponse.statusCode()).thenReturn(200);
+            when(mockResponse.body()).thenReturn("{\"question\":\"Q?\",\"answer\":\"A.\"}");
+            when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                    .thenReturn(CompletableFuture.completedFuture(mockResponse));
+            File file = new File("page.png");
+
+            GeminiApiService.generateQuizAsync(file, 1, "Le  texte\nreconnu").get(1, TimeUnit.SECONDS);
+            QuizResult cached = GeminiApiService.generateQuizAsync(file, 1, "Le texte reconnu").get(1, TimeUnit.SECONDS);
+            List<QuizResult> batch = GeminiApiService.generateQuizzesAsync(List.of(page(1, "Le texte reconnu")))
+                    .get(1, TimeUnit.SECONDS);
+
+            assertEquals("Q?", cached.getQuestion());
+            assertEquals("Q?", batch.get(0).getQuestion());
+            verify(mockClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+
+            GeminiApiService.generateQuizAsync(file, 1, "Le texte reconnu", false).get(1, TimeUnit.SECONDS);
+            verify(mockClient, times(2)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+            assertEquals(2, GeminiApiService.getGenerationCache().getHits());
+        } finally {
+            GeminiApiService.setGenerationCache(null);
+        }
+    }
+
+    @Test
+    public void testGenerateCandidateAsync_leavesCachedQuizInPlace(@TempDir Path tempDir) throws Exception {
+        GeminiApiService.setGenerationCache(new GenerationCache(tempDir, 1024 * 1024, Duration.ofDays(1)));
+        try {
+            HttpResponse<String> candidateResponse = mock(HttpResponse.class);
+            when(candidateResponse.statusCode()).thenReturn(200);
+            when(candidateResponse.body()).thenReturn("{\"question\":\"Autre Q?\",\"answer\":\"B.\"}");
+            when(mockResponse.statusCode()).thenReturn(200);
+            when(mockResponse.body()).thenReturn("{\"question\":\"Q?\",\"answer\":\"A.\"}");
+            when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                    .thenReturn(CompletableFuture.completedFuture(mockResponse), CompletableFuture.completedFuture(candidateResponse));
+            PageText page = page(1, "Le texte reconnu");
+
+            GeminiApiService.generateQuizAsync(page, true).get(1, TimeUnit.SECONDS);
+            QuizResult candidate = GeminiApiService.generateCandidateAsync(page).get(1, TimeUnit.SECONDS);
+            QuizResult cached = GeminiApiService.generateQuizAsync(page, true).get(1, TimeUnit.SECONDS);
+
+            assertEquals("Autre Q?", candidate.getQuestion());
+            assertEquals("Q?", cached.getQuestion());
+            assertEquals(1, GeminiApiService.getGenerationCache().getHits());
+            assertEquals(1, GeminiApiService.getGenerationCache().getMisses());
+        } finally {
+            GeminiApiService.setGenerationCache(null);
+        }
+    }
+
+    @Test
+    public void testGenerateQuizzesAsync_looksEachPageUpOnce(@TempDir Path tempDir) throws Exception {
+        GeminiApiService.setGenerationCache(new GenerationCache(tempDir, 1024 * 1024, Duration.ofDays(1)));
+        try {
+            HttpResponse<String> batchResponse = mock(HttpResponse.class);
+            when(batchResponse.statusCode()).thenReturn(200);
+            when(batchResponse.body()).thenReturn(geminiBody("[{\"index\":0,\"question\":\"Q0?\",\"answer\":\"A0\"}]"));
+            when(mockResponse.statusCode()).thenReturn(200);
+            when(mockResponse.body()).thenReturn("{\"question\":\"Q1?\",\"answer\":\"A1\"}");
+            when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                    .thenReturn(CompletableFuture.completedFuture(batchResponse), CompletableFuture.completedFuture(mockResponse));
+
+            // une page retentée seule après le lot, puis une page seule dans son lot
+            GeminiApiService.generateQuizzesAsync(List.of(page(1, "texte 1"), page(2, "texte 2"))).get(1, TimeUnit.SECONDS);
+            GeminiApiService.generateQuizzesAsync(List.of(page(3, "texte 3"))).get(1, TimeUnit.SECONDS);
+
+            assertEquals(3, GeminiApiService.getGenerationCache().getMisses());
+            assertEquals(0, GeminiApiService.getGenerationCache().getHits());
+        } finally {
+            GeminiApiService.setGenerationCache(null);
+        }
+    }
+
+    @Test
+    public void testGenerateQuizFromText_retriesTransientFailure() {
+        HttpResponse<String> unavailable = mock(HttpResponse.class);
+        when(unavailable.statusCode()).thenReturn(503);
+        when(unavailable.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        when(mockResponse.statusCode()).thenReturn(200);
+        when(mockResponse.body()).thenReturn("{\"question\":\"Q?\",\"answer\":\"A.\"}");
+        when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(unavailable))
+                .thenReturn(CompletableFuture.failedFuture(new HttpTimeoutException("timeout")))
+                .thenReturn(CompletableFuture.completedFuture(mockResponse));
+
+        assertEquals(List.of("Q?", "A."), GeminiApiService.generateQuizFromText("unused"));
+        verify(mockClient, times(3)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    }
+
+    @Test
+    public void testGenerateQuizFromText_honorsRetryAfter() {
+        HttpResponse<String> throttled = mock(HttpResponse.class);
+        when(throttled.statusCode()).thenReturn(429);
+        when(throttled.headers()).thenReturn(HttpHeaders.of(Map.of("Retry-After", List.of("1")), (name, value) -> true));
+        when(mockResponse.statusCode()).thenReturn(200);
+        when(mockResponse.body()).thenReturn("{\"question\":\"Q?\",\"answer\":\"A.\"}");
+        when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(throttled))
+                .thenReturn(CompletableFuture.completedFuture(mockResponse));
+
+        long start = System.nanoTime();
+        assertEquals(List.of("Q?", "A."), GeminiApiService.generateQuizFromText("unused"));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(950));
+    }
+
+    @Test
+    public void testGenerateQuizFromText_doesNotRetryServerError() {
+        when(mockResponse.statusCode()).thenReturn(500);
+        when(mockResponse.body()).thenReturn("Server Error");
+        when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(mockResponse));
+
+        GeminiApiService.generateQuizFromText("unused");
+        verify(mockClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    }
+
+    @Test
+    public void testGenerateQuizAsync_openCircuitHoldsRequests() throws Exception {
+        GeminiApiService.setHttpSender(new ResilientHttpSender(new TokenBucket(Integer.MAX_VALUE, 100),
+                new CircuitBreaker(2, Duration.ofMillis(300)), 1, Duration.ofMillis(1)));
+        HttpResponse<String> failing = mock(HttpResponse.class);
+        when(failing.statusCode()).thenReturn(500);
+        when(mockResponse.statusCode()).thenReturn(200);
+        when(mockResponse.body()).thenReturn("{\"question\":\"Q?\",\"answer\":\"A.\"}");
+        when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(failing))
+                .thenReturn(CompletableFuture.completedFuture(failing))
+                .thenReturn(CompletableFuture.completedFuture(mockResponse));
+
+        GeminiApiService.generateQuizFromText("a");
+        GeminiApiService.generateQuizFromText("b");
+        assertEquals(CircuitBreaker.State.OPEN, GeminiApiService.getCircuitState());
+
+        CompletableFuture<QuizResult> held = GeminiApiService.generateQuizAsync(new File("img.png"), 1, "c");
+        Thread.sleep(100);
+        assertFalse(held.isDone());
+        verify(mockClient, times(2)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+
+        assertEquals("Q?", held.get(5, TimeUnit.SECONDS).getQuestion());
+        assertEquals(CircuitBreaker.State.CLOSED, GeminiApiService.getCircuitState());
+    }
+
+    @Test
+    public void testGenerateQuizAsync_rateLimitSpacesRequests() throws Exception {
+        // 600 requêtes par minute sans rafale : une requête toutes les 100 ms
+        GeminiApiService.setHttpSender(new ResilientHttpSender(new TokenBucket(600, 1),
+                new CircuitBreaker(100, Duration.ofSeconds(30)), 1, Duration.ofMillis(1)));
+        when(mockResponse.statusCode()).thenReturn(200);
+        when(mockResponse.body()).thenReturn("{\"question\":\"Q?\",\"answer\":\"A.\"}");
+        when(mockClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(mockResponse));
+
+        long start = System.nanoTime();
+        List<CompletableFuture<QuizResult>> quizzes = List.of(
+                GeminiApiService.generateQuizAsync(new File("img.png"), 1, "a"),
+                GeminiApiService.generateQuizAsync(new File("img.png"), 1, "b"),
+                GeminiApiService.generateQuizAsync(new File("img.png"), 1, "c"));
+        CompletableFuture.allOf(quizzes.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+    }
+
+    @Test
+    public void testGenerateQuizzesAsync_streamsFirstQuizBeforeResponseEnds() throws Exception {
+        CountDownLatch firstQuizSeen = new CountDownLatch(1);
+        String modelText = "```json\n[{\"index\": 0, \"question\": \"Q0 {?}\", \"answer\": \"A0\"},"
+                + " {\"index\": 1, \"question\": \"Q1 ?\", \"answer\": \"A1\"}]\n```";
+        int split = modelText.indexOf("A0") + 1; // coupe le premier objet au milieu d'une chaîne
+        int secondObject = modelText.indexOf("{\"index\": 1");
+        try (StubStreamingServer server = new StubStreamingServer(List.of(
+                geminiBody(modelText.substring(0, split)),
+                geminiBody(modelText.substring(split, secondObject))), firstQuizSeen,
+                List.of(geminiBody(modelText.substring(secondObject))))) {
+            GeminiApiService.setHttpClientForTests(HttpClient.newHttpClient());
+            GeminiApiService.setModelUrlForTests(server.url());
+            List<QuizResult> streamed = new CopyOnWriteArrayList<>();
+
+            List<QuizResult> quizzes = GeminiApiService.generateQuizzesAsync(List.of(page(1, "texte 1"), page(2, "texte 2")),
+                    quiz -> {
+                        streamed.add(quiz);
+                        firstQuizSeen.countDown();
+                    }).get(5, TimeUnit.SECONDS);
+
+            assertEquals(List.of("Q0 {?}", "Q1 ?"), quizzes.stream().map(QuizResult::getQuestion).toList());
+            assertEquals(quizzes, streamed);
+            assertTrue(server.requestLine().startsWith("POST /models/test:streamGenerateContent?alt=sse"));
+        } finally {
+            GeminiApiService.setHttpClientForTests(mockClient);
+            GeminiApiService.setModelUrlForTests("https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash-lite");
+        }
+    }
+
+    /**
+     * Serves one streamGenerateContent response as chunked server-sent events: the first events are sent
+     * at once, the others only once {@code release} is counted down.
+     */
+    private static final class StubStreamingServer implements AutoCloseable {
+
+        private final ServerSocket socket = new ServerSocket(0);
+        private final Thread thread;
+        private volatile String requestLine = "";
+
+        StubStreamingServer(List<String> firstEvents, CountDownLatch release, List<String> lastEvents) throws IOException {
+            thread = new Thread(() -> {
+                try (Socket client = socket.accept()) {
+                    InputStream in = client.getInputStream();
+                    requestLine = readLine(in);
+                    int contentLength = 0;
+                    String header;
+                    while (!(header = readLine(in)).isEmpty()) {
+                        if (header.toLowerCase().startsWith("content-length:")) {
+                            contentLength = Integer.parseInt(header.substring(15).trim());
+                        }
+                    }
+                    in.readNBytes(contentLength);
+                    OutputStream out = client.getOutputStream();
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/event-stream\r\n"
+                            + "Transfer-Encoding: chunked\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                    for (String event : firstEvents) {
+                        writeChunk(out, "data: " + event + "\r\n\r\n");
+                    }
+                    release.await(5, TimeUnit.SECONDS);
+                    for (String event : lastEvents) {
+                        writeChunk(out, "data: " + event + "\r\n\r\n");
+                    }
+                    out.write("0\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                } catch (IOException | InterruptedException e) {
+                    // le test échouera sur le résultat attendu
+                }
+            }, "stub-gemini-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        String url() {
+            return "http://localhost:" + socket.getLocalPort() + "/models/test";
+        }
+
+        String requestLine() {
+            return requestLine;
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1 && c != '\n') {
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        private static void writeChunk(OutputStream out, String data) throws IOException {
+            byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+            out.write((Integer.toHexString(bytes.length) + "\r\n").getBytes(StandardCharsets.UTF_8));
+            out.write(bytes);
+            out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    private static PageText page(int pageNumber, String text) {
+        return new PageText(new File("cours.pdf"), pageNumber, text);
+    }
+
+    /**
+     * Wraps the text written by the model in a generateContent response.
+     */
+    private static String geminiBody(String modelText) {
+        JsonObject part = new JsonObject();
+        part.addProperty("text", modelText);
+        JsonArray parts = new JsonArray();
+        parts.add(part);
+        JsonObject content = new JsonObject();
+        content.add("parts", parts);
+        JsonObject candidate = new JsonObject();
+        candidate.add("content", content);
+        JsonArray candidates = new JsonArray();
+        candidates.add(candidate);
+        JsonObject root = new JsonObject();
+        root.add("candidates", candidates);
+        return root.toString();
+    }
 }
@@ -0,0 +1,76 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.utils.DiskLruCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenerationCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void keyFor_shouldIgnoreWhitespaceButNotPromptVersion() {
+        String key = GenerationCache.keyFor("La photosynthèse  produit\nde l'oxygène. ", "v1");
+
+        assertEquals(key, GenerationCache.keyFor("La photosynthèse produit de l'oxygène.", "v1"));
+        assertNotEquals(key, GenerationCache.keyFor("La photosynthèse produit de l'oxygène.", "v2"));
+        assertNotEquals(key, GenerationCache.keyFor("La respiration produit du CO2.", "v1"));
+    }
+
+    @Test
+    void get_shouldReturnStoredQuizAndReportSavedLatency() {
+        GenerationCache cache = new GenerationCache(tempDir, 1024, Duration.ofDays(1));
+        cache.recordGeneration(Duration.ofMillis(800));
+        cache.put("abc", List.of("Que produit la photosynthèse ?", "De l'oxygène"));
+
+        assertEquals(Optional.of(List.of("Que produit la photosynthèse ?", "De l'oxygène")), cache.get("abc"));
+        assertEquals(Optional.empty(), cache.get("def"));
+        assertEquals(0.5, cache.getHitRate());
+        assertEquals(Duration.ofMillis(800), cache.getSavedLatency());
+    }
+
+    @Test
+    void get_shouldDropExpiredEntries() {
+        Instant now = Instant.parse("2025-01-01T10:00:00Z");
+        new GenerationCache(tempDir, 1024, Duration.ofDays(30), Clock.fixed(now, ZoneOffset.UTC))
+                .put("abc", List.of("Question ?", "Réponse"));
+
+        GenerationCache later = new GenerationCache(tempDir, 1024, Duration.ofDays(30),
+                Clock.fixed(now.plus(Duration.ofDays(31)), ZoneOffset.UTC));
+
+        assertEquals(Optional.empty(), later.get("abc"));
+        assertEquals(1, later.getMisses());
+    }
+
+    @Test
+    void get_shouldReturnNullAnswer_whenQuizWasStoredWithoutOne() {
+        GenerationCache cache = new GenerationCache(tempDir, 1024, Duration.ofDays(1));
+        cache.put("abc", Arrays.asList("Que produit la photosynthèse ?", null));
+
+        assertEquals(Optional.of(Arrays.asList("Que produit la photosynthèse ?", null)), cache.get("abc"));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void get_shouldTreatCorruptEntryAsMissAndRemoveIt() {
+        new DiskLruCache(tempDir, 1024).put("abc", "{\"createdAt\": ");
+        GenerationCache cache = new GenerationCache(tempDir, 1024, Duration.ofDays(1));
+
+        assertEquals(Optional.empty(), cache.get("abc"));
+        assertEquals(1, cache.getMisses());
+        assertFalse(Files.exists(tempDir.resolve("abc.txt")));
+    }
+}
@@ -0,0 +1,105 @@
+package be.esi.prj.model.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImagePreprocessorTest {
+
+    @Test
+    void process_shouldProduceGrayImageWithOnlyBlackAndWhite() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(ImagePreprocessor.Options.defaults());
+
+        BufferedImage result = preprocessor.process(page(600, 400, 0));
+
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, result.getType());
+        for (int y = 0; y < result.getHeight(); y++) {
+            for (int x = 0; x < result.getWidth(); x++) {
+                int level = result.getRaster().getSample(x, y, 0);
+                assertTrue(level == 0 || level == 255, "Unexpected gray level " + level);
+            }
+        }
+    }
+
+    @Test
+    void process_shouldSkipDisabledSteps() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(new ImagePreprocessor.Options(false, false, 300, false, false));
+        BufferedImage source = page(600, 400, 0);
+
+        assertSame(source, preprocessor.process(source));
+        assertEquals(0, preprocessor.getAverageMillis(ImagePreprocessor.Step.BINARIZE));
+    }
+
+    @Test
+    void downscale_shouldShrinkShortSideToTarget() {
+        BufferedImage large = new BufferedImage(4000, 3000, BufferedImage.TYPE_BYTE_GRAY);
+
+        BufferedImage result = ImagePreprocessor.downscale(large, 1500);
+
+        assertEquals(1500, result.getHeight());
+        assertEquals(2000, result.getWidth());
+    }
+
+    @Test
+    void downscale_shouldKeepSmallImages() {
+        BufferedImage small = new BufferedImage(800, 600, BufferedImage.TYPE_BYTE_GRAY);
+
+        assertSame(small, ImagePreprocessor.downscale(small, 1500));
+    }
+
+    @Test
+    void estimateSkewDegrees_shouldFindRotationOfTextLines() {
+        BufferedImage skewed = ImagePreprocessor.toGrayscale(page(800, 600, 2.0));
+
+        double angle = ImagePreprocessor.estimateSkewDegrees(skewed);
+
+        assertEquals(2.0, angle, 0.3);
+    }
+
+    @Test
+    void load_shouldReturnNull_whenFormatIsNotAnImage(@TempDir Path tempDir) throws Exception {
+        File notAnImage = tempDir.resolve("notes.png").toFile();
+        Files.writeString(notAnImage.toPath(), "pas une image");
+
+        assertNull(new ImagePreprocessor(ImagePreprocessor.Options.defaults()).load(notAnImage));
+    }
+
+    @Test
+    void load_shouldDecodeImageFile(@TempDir Path tempDir) throws Exception {
+        File file = tempDir.resolve("page.png").toFile();
+        ImageIO.write(page(600, 400, 0), "png", file);
+
+        BufferedImage result = new ImagePreprocessor(ImagePreprocessor.Options.defaults()).load(file);
+
+        assertNotNull(result);
+        assertEquals(600, result.getWidth());
+    }
+
+    /**
+     * Draws horizontal "text lines" on a white page, rotated by the given angle.
+     */
+    private static BufferedImage page(int width, int height, double degrees) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.rotate(Math.toRadians(degrees), width / 2.0, height / 2.0);
+        g.setColor(Color.DARK_GRAY);
+        g.setStroke(new BasicStroke(4));
+        for (int y = 60; y < height - 60; y += 30) {
+            g.drawLine(60, y, width - 60, y);
+        }
+        g.dispose();
+        return image;
+    }
+}
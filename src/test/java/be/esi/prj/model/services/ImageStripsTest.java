@@ -0,0 +1,98 @@
+package be.esi.prj.model.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageStripsTest {
+
+    @Test
+    void split_shouldKeepSmallImageWhole() {
+        BufferedImage image = textPage(800, 900);
+
+        List<Rectangle> bands = ImageStrips.split(image, 4);
+
+        assertEquals(List.of(new Rectangle(0, 0, 800, 900)), bands);
+    }
+
+    @Test
+    void split_shouldKeepA4PageWhole() {
+        BufferedImage image = textPage(2480, 3508);
+
+        assertEquals(1, ImageStrips.split(image, 4).size());
+    }
+
+    @Test
+    void split_shouldCutTallImageBetweenTextLines() {
+        BufferedImage image = textPage(800, 2400);
+
+        List<Rectangle> bands = ImageStrips.split(image, 4);
+
+        assertEquals(4, bands.size());
+        assertEquals(0, bands.get(0).y);
+        Rectangle last = bands.get(bands.size() - 1);
+        assertEquals(2400, last.y + last.height);
+        for (int i = 1; i < bands.size(); i++) {
+            Rectangle previous = bands.get(i - 1);
+            Rectangle band = bands.get(i);
+            assertTrue(band.y <= previous.y + previous.height, "Bands must not leave rows out");
+            int cut = (band.y + previous.y + previous.height) / 2;
+            assertFalse(isTextRow(cut), "Cut at row " + cut + " goes through a text line");
+        }
+    }
+
+    @Test
+    void split_shouldNotUseMoreBandsThanEngines() {
+        assertEquals(2, ImageStrips.split(textPage(800, 2400), 2).size());
+    }
+
+    @Test
+    void stitch_shouldJoinTextsInOrderAndDropRepeatedBorderLine() {
+        String text = ImageStrips.stitch(List.of("Ligne 1\nLigne 2\n", "Ligne 2\nLigne 3", "  ", "Ligne 4"));
+
+        assertEquals("Ligne 1\nLigne 2\nLigne 3\nLigne 4", text);
+    }
+
+    @Test
+    void stitch_shouldKeepLongerReadingOfOverlappingLine() {
+        String text = ImageStrips.stitch(List.of("Ligne 1\nLa photosynthèse produit de l'oxy",
+                "La photosynthese produit de l'oxygène.\nLigne 3"));
+
+        assertEquals("Ligne 1\nLa photosynthese produit de l'oxygène.\nLigne 3", text);
+    }
+
+    @Test
+    void stitch_shouldKeepDifferentBorderLines() {
+        String text = ImageStrips.stitch(List.of("Ligne 1\nLa respiration cellulaire", "Les mitochondries\nLigne 3"));
+
+        assertEquals("Ligne 1\nLa respiration cellulaire\nLes mitochondries\nLigne 3", text);
+    }
+
+    /**
+     * Text lines are 20 pixels high and start every 50 pixels.
+     */
+    private static boolean isTextRow(int y) {
+        return y % 50 < 20;
+    }
+
+    private static BufferedImage textPage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.BLACK);
+        for (int y = 0; y < height; y++) {
+            if (isTextRow(y)) {
+                g.fillRect(20, y, width - 40, 1);
+            }
+        }
+        g.dispose();
+        return image;
+    }
+}
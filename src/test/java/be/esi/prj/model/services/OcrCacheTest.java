@@ -0,0 +1,64 @@
+package be.esi.prj.model.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OcrCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void keyFor_shouldDependOnContentOnly() throws Exception {
+        OcrCache cache = new OcrCache(tempDir.resolve("cache"), 1024);
+        File first = Files.write(tempDir.resolve("a.png"), new byte[]{1, 2, 3}).toFile();
+        File copy = Files.write(tempDir.resolve("b.png"), new byte[]{1, 2, 3}).toFile();
+        File other = Files.write(tempDir.resolve("c.png"), new byte[]{4, 5, 6}).toFile();
+
+        assertEquals(cache.keyFor(first), cache.keyFor(copy));
+        assertNotEquals(cache.keyFor(first), cache.keyFor(other));
+    }
+
+    @Test
+    void get_shouldCountHitsAndMisses() {
+        OcrCache cache = new OcrCache(tempDir.resolve("cache"), 1024);
+
+        assertEquals(Optional.empty(), cache.get("abc"));
+        cache.put("abc", "Texte extrait");
+
+        assertEquals(Optional.of("Texte extrait"), cache.get("abc"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void put_shouldEvictLeastRecentlyUsedEntries() {
+        OcrCache cache = new OcrCache(tempDir.resolve("cache"), 10);
+        cache.put("first", "12345");
+        cache.put("second", "12345");
+        cache.get("first");
+
+        cache.put("third", "12345");
+
+        assertTrue(cache.get("first").isPresent());
+        assertTrue(cache.get("second").isEmpty());
+        assertTrue(cache.get("third").isPresent());
+    }
+
+    @Test
+    void entries_shouldSurviveReopening() {
+        Path directory = tempDir.resolve("cache");
+        new OcrCache(directory, 1024).put("abc", "Texte extrait");
+
+        OcrCache reopened = new OcrCache(directory, 1024);
+
+        assertEquals(Optional.of("Texte extrait"), reopened.get("abc"));
+    }
+}
@@ -0,0 +1,97 @@
+package be.esi.prj.model.services;
+
+import net.sourceforge.tess4j.Tesseract;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares the per-image latency of the old "new Tesseract() per call" approach with the pooled engines.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Dbenchmark.images=/path/to/images}.
+ * The trained data must be available in {@code be/esi/prj/data}.
+ * </p>
+ */
+@Tag("benchmark")
+class OcrServiceBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    @Test
+    void pooledEnginesVersusPerCallConstruction() throws Exception {
+        List<File> images = benchmarkImages();
+        OcrService ocrService = new OcrService(1, TesseractPool.DEFAULT_IDLE_TIMEOUT, null, null);
+        String dataPath = new File(OcrService.class.getResource("/be/esi/prj/data").toURI()).getAbsolutePath();
+
+        // Warm-up so that both runs start with the same JIT and file system state
+        ocrService.scan(images.get(0));
+
+        long perCall = 0;
+        long pooled = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (File image : images) {
+                long start = System.nanoTime();
+                Tesseract tesseract = new Tesseract();
+                tesseract.setDatapath(dataPath);
+                tesseract.setLanguage("fra");
+                tesseract.doOCR(image);
+                perCall += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                ocrService.scan(image);
+                pooled += System.nanoTime() - start;
+            }
+        }
+        ocrService.shutdown();
+
+        int scans = ROUNDS * images.size();
+        System.out.printf("OCR per image: per-call construction %.1f ms, pooled engine %.1f ms (%d scans)%n",
+                perCall / 1e6 / scans, pooled / 1e6 / scans, scans);
+    }
+
+    @Test
+    void rawImagesVersusPreprocessedImages() throws Exception {
+        List<File> images = benchmarkImages();
+        ImagePreprocessor preprocessor = new ImagePreprocessor(ImagePreprocessor.Options.defaults());
+        OcrService raw = new OcrService(1, TesseractPool.DEFAULT_IDLE_TIMEOUT, null, null);
+        OcrService preprocessed = new OcrService(1, TesseractPool.DEFAULT_IDLE_TIMEOUT, null, preprocessor);
+
+        raw.scan(images.get(0));
+        preprocessed.scan(images.get(0));
+
+        long rawNanos = 0;
+        long preprocessedNanos = 0;
+        for (File image : images) {
+            long start = System.nanoTime();
+            raw.scan(image);
+            rawNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            preprocessed.scan(image);
+            preprocessedNanos += System.nanoTime() - start;
+        }
+        raw.shutdown();
+        preprocessed.shutdown();
+
+        System.out.printf("OCR per image: raw %.1f ms, preprocessed %.1f ms%n",
+                rawNanos / 1e6 / images.size(), preprocessedNanos / 1e6 / images.size());
+        for (ImagePreprocessor.Step step : ImagePreprocessor.Step.values()) {
+            System.out.printf("  %-10s %.1f ms%n", step, preprocessor.getAverageMillis(step));
+        }
+    }
+
+    private static List<File> benchmarkImages() {
+        String directory = System.getProperty("benchmark.images");
+        assumeTrue(directory != null, "Set -Dbenchmark.images to a directory of images");
+        assumeTrue(OcrService.class.getResource("/be/esi/prj/data") != null, "Trained data not found");
+
+        File[] files = new File(directory).listFiles((dir, name) -> name.toLowerCase().matches(".*\\.(png|jpe?g)"));
+        assumeTrue(files != null && files.length > 0, "No image found in " + directory);
+        return Arrays.asList(files);
+    }
+}
@@ -1,11 +1,19 @@
 package be.esi.prj.model.services;
 
-import net.sourceforge.tess4j.Tesseract;
 import net.sourceforge.tess4j.TesseractException;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.MockedConstruction;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -22,7 +30,7 @@ class OcrServiceTest {
     @Test
     void scan_shouldReturnExtractedText() throws Exception {
         // Arrange : on simule un Tesseract qui renvoie du texte
-        try (MockedConstruction<Tesseract> mocked = mockConstruction(Tesseract.class,
+        try (MockedConstruction<ReusableTesseract> mocked = mockConstruction(ReusableTesseract.class,
                 (mock, context) -> when(mock.doOCR(any(File.class))).thenReturn("Texte extrait"))
         ) {
             File fakeFile = new File("fake-path.png");
@@ -32,7 +40,7 @@ class OcrServiceTest {
 
             // Assert
             assertEquals("Texte extrait", result);
-            Tesseract tesseract = mocked.constructed().get(0);
+            ReusableTesseract tesseract = mocked.constructed().get(0);
             verify(tesseract).doOCR(fakeFile);
         }
     }
@@ -40,7 +48,7 @@ class OcrServiceTest {
     @Test
     void scan_shouldThrowTesseractException_whenOcrFails() throws Exception {
         // Arrange : on simule un Tesseract qui lance une exception
-        try (MockedConstruction<Tesseract> mocked = mockConstruction(Tesseract.class,
+        try (MockedConstruction<ReusableTesseract> mocked = mockConstruction(ReusableTesseract.class,
                 (mock, context) -> when(mock.doOCR(any(File.class))).thenThrow(new TesseractException("Erreur OCR")))
         ) {
             File fakeFile = new File("fake-path.png");
@@ -71,4 +79,103 @@ class OcrServiceTest {
         }
     }
 
+    @Test
+    void scan_shouldServeSameImageFromCache(@TempDir Path tempDir) throws Exception {
+        OcrCache cache = new OcrCache(tempDir.resolve("cache"), 1024);
+        OcrService cachedService = new OcrService(1, Duration.ofMinutes(1), cache, null);
+        File image = Files.write(tempDir.resolve("photo.png"), new byte[]{1, 2, 3}).toFile();
+        File sameImage = Files.write(tempDir.resolve("copie.png"), new byte[]{1, 2, 3}).toFile();
+
+        try (MockedConstruction<ReusableTesseract> mocked = mockConstruction(ReusableTesseract.class,
+                (mock, context) -> when(mock.doOCR(any(File.class))).thenReturn("Texte extrait"))
+        ) {
+            assertEquals("Texte extrait", cachedService.scan(image));
+            assertEquals("Texte extrait", cachedService.scan(sameImage));
+
+            verify(mocked.constructed().get(0), times(1)).doOCR(any(File.class));
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+        }
+    }
+
+    @Test
+    void scan_shouldGivePreprocessedImageToTesseract(@TempDir Path tempDir) throws Exception {
+        File image = tempDir.resolve("photo.png").toFile();
+        ImageIO.write(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB), "png", image);
+
+        try (MockedConstruction<ReusableTesseract> mocked = mockConstruction(ReusableTesseract.class,
+                (mock, context) -> when(mock.doOCR(any(BufferedImage.class))).thenReturn("Texte extrait"))
+        ) {
+            assertEquals("Texte extrait", ocrService.scan(image));
+
+            ReusableTesseract tesseract = mocked.constructed().get(0);
+            verify(tesseract).doOCR(any(BufferedImage.class));
+            verify(tesseract, never()).doOCR(any(File.class));
+        }
+    }
+
+    @Test
+    void scan_shouldRecognizeTallImageInBands_unlessDisabled(@TempDir Path tempDir) throws Exception {
+        File image = tempDir.resolve("long-screenshot.png").toFile();
+        ImageIO.write(new BufferedImage(400, 2000, BufferedImage.TYPE_INT_RGB), "png", image);
+        OcrService service = new OcrService(2, Duration.ofMinutes(1), null,
+                new ImagePreprocessor(new ImagePreprocessor.Options(true, false, 300, false, false)));
+        AtomicInteger calls = new AtomicInteger();
+
+        try (MockedConstruction<ReusableTesseract> mocked = mockConstruction(ReusableTesseract.class,
+                (mock, context) -> when(mock.doOCR(any(BufferedImage.class)))
+                        .thenAnswer(invocation -> "Bande " + calls.incrementAndGet()))
+        ) {
+            service.warmUp(); // construction mocks only apply to this thread, not to the fork-join workers
+
+            assertEquals(2, service.scan(image).lines().count());
+            assertEquals(2, calls.get());
+
+            service.setParallelStrips(false);
+            assertEquals("Bande 3", service.scan(image));
+        }
+    }
+
+    @Test
+    void warmUp_shouldInitializeOneEnginePerPoolSlot() throws Exception {
+        OcrService service = new OcrService(2, Duration.ofMinutes(1), null, null);
+
+        try (MockedConstruction<ReusableTesseract> mocked = mockConstruction(ReusableTesseract.class)) {
+            service.warmUp();
+
+            assertEquals(2, mocked.constructed().size());
+            mocked.constructed().forEach(engine -> verify(engine).initialize());
+        }
+    }
+
+    @Test
+    void scanPages_shouldRecognizePdfPageByPageAndCacheEveryPage(@TempDir Path tempDir) throws Exception {
+        File pdf = DocumentPagesTest.pdf(tempDir, 3);
+        OcrService service = new OcrService(1, Duration.ofMinutes(1),
+                new OcrCache(tempDir.resolve("cache"), 1024 * 1024),
+                new ImagePreprocessor(new ImagePreprocessor.Options(true, false, 72, false, false)));
+        AtomicInteger calls = new AtomicInteger();
+        List<String> pages = new ArrayList<>();
+
+        try (MockedConstruction<ReusableTesseract> mocked = mockConstruction(ReusableTesseract.class,
+                (mock, context) -> when(mock.doOCR(any(BufferedImage.class)))
+                        .thenAnswer(invocation -> "Page " + calls.incrementAndGet()))
+        ) {
+            int pageCount = service.scanPages(pdf, (pageNumber, text) -> pages.add(pageNumber + ":" + text));
+
+            assertEquals(3, pageCount);
+            assertEquals(List.of("1:Page 1", "2:Page 2", "3:Page 3"), pages);
+            assertEquals("Page 2", service.scanPage(pdf, 2)); // served by the cache
+            assertEquals(3, calls.get());
+        }
+    }
+
+    @Test
+    void scanPages_shouldThrowTesseractException_whenDocumentIsUnreadable(@TempDir Path tempDir) throws Exception {
+        File notAPdf = tempDir.resolve("cours.pdf").toFile();
+        Files.writeString(notAPdf.toPath(), "pas un pdf");
+
+        assertThrows(TesseractException.class, () -> ocrService.scanPages(notAPdf, (pageNumber, text) -> fail()));
+    }
+
 }
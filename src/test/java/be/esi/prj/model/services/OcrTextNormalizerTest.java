@@ -0,0 +1,52 @@
+package be.esi.prj.model.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OcrTextNormalizerTest {
+
+    @Test
+    void normalize_shouldJoinHyphenatedWordsAndCollapseWhitespace() {
+        OcrTextNormalizer normalizer = new OcrTextNormalizer(OcrTextNormalizer.DEFAULT_MAX_TOKENS);
+
+        String text = normalizer.normalize("La photo-\n  synthèse   se   produit\tdans les feuilles.\r\n\r\n\r\nDeuxième  paragraphe.");
+
+        assertEquals("La photosynthèse se produit dans les feuilles.\n\nDeuxième paragraphe.", text);
+    }
+
+    @Test
+    void normalize_shouldKeepHyphenBeforeCapitalizedLine() {
+        OcrTextNormalizer normalizer = new OcrTextNormalizer(OcrTextNormalizer.DEFAULT_MAX_TOKENS);
+
+        assertEquals("Le traité franco-\nAllemand de 1963.", normalizer.normalize("Le traité franco-\nAllemand de 1963."));
+    }
+
+    @Test
+    void normalize_shouldDropLowInformationLines() {
+        OcrTextNormalizer normalizer = new OcrTextNormalizer(OcrTextNormalizer.DEFAULT_MAX_TOKENS);
+
+        String text = normalizer.normalize("|| ~ ;\nLa cellule est l'unité du vivant.\n- 12 -\n•\nPage 3 / 10\n%$#@&*! x");
+
+        assertEquals("La cellule est l'unité du vivant.", text);
+    }
+
+    @Test
+    void normalize_shouldDropHeadersRepeatedOnFollowingPages() {
+        OcrTextNormalizer normalizer = new OcrTextNormalizer(OcrTextNormalizer.DEFAULT_MAX_TOKENS);
+
+        assertEquals("Biologie - Chapitre 2\nLes cellules se divisent par mitose.",
+                normalizer.normalize("Biologie - Chapitre 2\nLes cellules se divisent par mitose."));
+        assertEquals("La méiose produit les gamètes.",
+                normalizer.normalize("Biologie - Chapitre 2\nLa méiose produit les gamètes."));
+    }
+
+    @Test
+    void normalize_shouldCapTextAtEndOfSentence() {
+        OcrTextNormalizer normalizer = new OcrTextNormalizer(10); // 40 caractères
+
+        String text = normalizer.normalize("Première phrase assez longue. Seconde phrase qui dépasse la limite.");
+
+        assertEquals("Première phrase assez longue.", text);
+    }
+}
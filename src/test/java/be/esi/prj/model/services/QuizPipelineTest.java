@@ -0,0 +1,213 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.utils.IngestionExecutor;
+import be.esi.prj.utils.IngestionTask;
+import be.esi.prj.utils.PageText;
+import be.esi.prj.utils.QuizResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuizPipelineTest {
+
+    private final IngestionExecutor executor = new IngestionExecutor(2);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void takeQuiz_shouldReturnFirstQuizWhileSlowFileIsStillRecognized() throws Exception {
+        CountDownLatch slowFileReleased = new CountDownLatch(1);
+        QuizPipeline pipeline = new QuizPipeline((file, consumer) -> {
+            if (file.getName().equals("slow.png")) {
+                slowFileReleased.await();
+            }
+            consumer.accept(1, "Texte de " + file.getName());
+        }, QuizPipelineTest::quizzes, QuizPipeline.DEFAULT_QUEUE_CAPACITY);
+
+        pipeline.start(List.of(new File("slow.png"), new File("fast.png")), executor, 2, 2);
+
+        assertEquals("Texte de fast.png", pipeline.takeQuiz().getAnswer());
+        assertTrue(pipeline.getTimeToFirstQuiz().isPresent());
+        slowFileReleased.countDown();
+        assertEquals("Texte de slow.png", pipeline.takeQuiz().getAnswer());
+        assertNull(pipeline.takeQuiz());
+        assertNull(pipeline.takeQuiz());
+    }
+
+    @Test
+    void start_shouldStopReadingFiles_whileReviewIsBehind() throws Exception {
+        List<File> files = IntStream.range(0, 100).mapToObj(i -> new File("page" + i + ".png")).toList();
+        AtomicInteger extracted = new AtomicInteger();
+        QuizPipeline pipeline = new QuizPipeline((file, consumer) -> {
+            extracted.incrementAndGet();
+            consumer.accept(1, file.getName());
+        }, QuizPipelineTest::quizzes, 1);
+
+        pipeline.start(files, executor, 1, 1);
+        Thread.sleep(300);
+
+        // one quiz waiting for review, one being generated with the text it batched or carried,
+        // one text queued and one blocked in the OCR stage
+        assertTrue(extracted.get() <= 5, "Read " + extracted.get() + " files without any review");
+        int reviewed = 0;
+        while (pipeline.takeQuiz() != null) {
+            reviewed++;
+        }
+        assertEquals(100, reviewed);
+    }
+
+    @Test
+    void start_shouldLeaveOcrPoolFree_whileReviewIsBehind() throws Exception {
+        List<File> files = IntStream.range(0, 20).mapToObj(i -> new File("page" + i + ".png")).toList();
+        QuizPipeline pipeline = new QuizPipeline((file, consumer) -> consumer.accept(1, file.getName()),
+                QuizPipelineTest::quizzes, 1);
+
+        pipeline.start(files, executor, executor.getOcrWorkerCount(), 1);
+        Thread.sleep(300); // every stage waits for the review
+
+        // e.g. "Generate Again" recognizing a page while the pipeline is paused
+        CompletableFuture<String> ocrTask = executor.submit(IngestionTask.ocr("regeneration", () -> "page"));
+        assertEquals("page", ocrTask.get(1, TimeUnit.SECONDS));
+        pipeline.cancel();
+    }
+
+    @Test
+    void takeQuiz_shouldKeepPageNumbersAndSkipFailures() throws Exception {
+        QuizPipeline pipeline = new QuizPipeline((file, consumer) -> {
+            if (file.getName().equals("broken.pdf")) {
+                throw new IllegalStateException("Fichier corrompu");
+            }
+            consumer.accept(1, "Page 1");
+            consumer.accept(2, " ");
+            consumer.accept(3, "Page 3");
+            consumer.accept(4, "Sans quiz");
+        }, (pages, onQuiz) -> CompletableFuture.completedFuture(pages.stream()
+                .map(page -> new QuizResult(page.file(), page.pageNumber(),
+                        page.text().equals("Sans quiz") ? null : "Question ?", page.text()))
+                .toList()), QuizPipeline.DEFAULT_QUEUE_CAPACITY);
+
+        pipeline.start(List.of(new File("broken.pdf"), new File("cours.pdf")), executor, 1, 1);
+
+        List<String> sources = new ArrayList<>();
+        QuizResult quiz;
+        while ((quiz = pipeline.takeQuiz()) != null) {
+            sources.add(quiz.getSourceName() + " " + quiz.getAnswer());
+        }
+        assertEquals(List.of("cours.pdf (page 1) Page 1", "cours.pdf (page 3) Page 3"), sources);
+        assertEquals(2, pipeline.getGeneratedQuizCount());
+    }
+
+    @Test
+    void cancel_shouldAbortPendingGenerationsAndEndReview() throws Exception {
+        CompletableFuture<List<QuizResult>> pendingRequest = new CompletableFuture<>();
+        CountDownLatch requestSent = new CountDownLatch(1);
+        QuizPipeline pipeline = new QuizPipeline((file, consumer) -> consumer.accept(1, file.getName()),
+                (pages, onQuiz) -> {
+                    requestSent.countDown();
+                    return pendingRequest;
+                }, QuizPipeline.DEFAULT_QUEUE_CAPACITY);
+        List<File> files = IntStream.range(0, 50).mapToObj(i -> new File("page" + i + ".png")).toList();
+
+        pipeline.start(files, executor, 1, 1);
+        requestSent.await();
+        pipeline.cancel();
+
+        assertTrue(pendingRequest.isCancelled());
+        assertNull(pipeline.takeQuiz());
+        assertEquals(0, pipeline.getGeneratedQuizCount());
+    }
+
+    @Test
+    void generationWorker_shouldBatchTextsWaitingInQueue() throws Exception {
+        CountDownLatch textsQueued = new CountDownLatch(1);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        QuizPipeline pipeline = new QuizPipeline((file, consumer) -> {
+            for (int page = 1; page <= 5; page++) {
+                consumer.accept(page, "Texte " + page); // 7 caractères
+            }
+            textsQueued.countDown();
+        }, (pages, onQuiz) -> {
+            try {
+                textsQueued.await(); // the first request waits until the other pages are queued
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batchSizes.add(pages.size());
+            return quizzes(pages, onQuiz);
+        }, QuizPipeline.DEFAULT_QUEUE_CAPACITY);
+        pipeline.setBatchCharacterBudget(20);
+
+        pipeline.start(List.of(new File("cours.pdf")), executor, 1, 1);
+        int reviewed = 0;
+        while (pipeline.takeQuiz() != null) {
+            reviewed++;
+        }
+
+        assertEquals(5, reviewed);
+        assertEquals(5, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.size() < 5, "No texts were batched: " + batchSizes);
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 2), "Budget exceeded: " + batchSizes);
+    }
+
+    @Test
+    void takeQuiz_shouldReturnStreamedQuizBeforeItsBatchIsComplete() throws Exception {
+        CompletableFuture<List<QuizResult>> batch = new CompletableFuture<>();
+        QuizPipeline pipeline = new QuizPipeline((file, consumer) -> consumer.accept(1, "Texte"),
+                (pages, onQuiz) -> {
+                    QuizResult first = new QuizResult(pages.get(0).file(), 1, "Question ?", "Diffusée");
+                    onQuiz.accept(first);
+                    CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS))
+                            .thenRun(() -> batch.complete(List.of(first,
+                                    new QuizResult(pages.get(0).file(), 2, "Question ?", "Finale"))));
+                    return batch;
+                }, QuizPipeline.DEFAULT_QUEUE_CAPACITY);
+
+        pipeline.start(List.of(new File("cours.pdf")), executor, 1, 1);
+
+        assertEquals("Diffusée", pipeline.takeQuiz().getAnswer());
+        assertFalse(batch.isDone());
+        assertEquals("Finale", pipeline.takeQuiz().getAnswer()); // the streamed quiz is not reviewed twice
+        assertNull(pipeline.takeQuiz());
+    }
+
+    @Test
+    void extract_shouldSendEveryPassageOfDensePageToGeneration() throws Exception {
+        String paragraph = "Paragraphe " + "e".repeat(60) + ".";
+        QuizPipeline pipeline = new QuizPipeline((file, consumer) -> consumer.accept(1, paragraph + "\n\n" + paragraph),
+                (pages, onQuiz) -> CompletableFuture.completedFuture(pages.stream()
+                        .map(page -> new QuizResult(page, "Question ?", page.text()))
+                        .toList()), QuizPipeline.DEFAULT_QUEUE_CAPACITY);
+        pipeline.setTextSegmenter(new TextSegmenter(20, 5));
+
+        pipeline.start(List.of(new File("cours.png")), executor, 1, 2);
+
+        List<String> sources = new ArrayList<>();
+        QuizResult quiz;
+        while ((quiz = pipeline.takeQuiz()) != null) {
+            assertEquals(paragraph, quiz.getPassage());
+            sources.add(quiz.getSourceName());
+        }
+        assertEquals(List.of("cours.png (passage 1)", "cours.png (passage 2)"), sources.stream().sorted().toList());
+    }
+
+    private static CompletableFuture<List<QuizResult>> quizzes(List<PageText> pages, Consumer<QuizResult> onQuiz) {
+        return CompletableFuture.completedFuture(pages.stream()
+                .map(page -> new QuizResult(page.file(), page.pageNumber(), "Question ?", page.text()))
+                .toList());
+    }
+}
@@ -0,0 +1,120 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.utils.PageText;
+import be.esi.prj.utils.QuizResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class QuizPrefetcherTest {
+
+    private final QuizGenerator generator = mock(QuizGenerator.class);
+    private final List<CompletableFuture<QuizResult>> started = new ArrayList<>();
+
+    private final PageText page1 = new PageText(new File("cours.pdf"), 1, "Texte 1");
+    private final PageText page2 = new PageText(new File("cours.pdf"), 2, "Texte 2");
+
+    QuizPrefetcherTest() {
+        when(generator.regenerateQuizAsync(any())).thenAnswer(invocation -> {
+            CompletableFuture<QuizResult> candidate = new CompletableFuture<>();
+            started.add(candidate);
+            return candidate;
+        });
+        when(generator.isIdle()).thenReturn(true);
+    }
+
+    @Test
+    void prefetch_shouldStartTheConfiguredNumberOfCandidatesOnce() {
+        QuizPrefetcher prefetcher = new QuizPrefetcher(generator, 3);
+
+        prefetcher.prefetch(page1);
+        prefetcher.prefetch(page1);
+
+        verify(generator, times(3)).regenerateQuizAsync(page1);
+        assertEquals(3, prefetcher.getPendingCount());
+    }
+
+    @Test
+    void next_shouldReturnAReadyCandidateAndTopUpTheQueue() {
+        QuizPrefetcher prefetcher = new QuizPrefetcher(generator, 2);
+        prefetcher.prefetch(page1);
+        QuizResult ready = new QuizResult(page1, "Question 2 ?", "Réponse 2");
+        started.get(1).complete(ready);
+
+        CompletableFuture<QuizResult> next = prefetcher.next(page1);
+
+        assertSame(ready, next.getNow(null));
+        verify(generator, times(3)).regenerateQuizAsync(page1);
+        assertEquals(2, prefetcher.getPendingCount());
+    }
+
+    @Test
+    void next_shouldSkipFailedCandidates() {
+        QuizPrefetcher prefetcher = new QuizPrefetcher(generator, 2);
+        prefetcher.prefetch(page1);
+        started.get(0).completeExceptionally(new IOException("quota dépassé"));
+        started.get(1).complete(new QuizResult(page1, null, null));
+
+        CompletableFuture<QuizResult> next = prefetcher.next(page1);
+
+        assertFalse(next.isDone());
+        assertSame(started.get(2), next);
+        assertEquals(2, prefetcher.getPendingCount());
+    }
+
+    @Test
+    void next_shouldGenerateOnDemand_whenPrefetchingIsDisabled() {
+        QuizPrefetcher prefetcher = new QuizPrefetcher(generator, 0);
+
+        prefetcher.prefetch(page1);
+        prefetcher.next(page1);
+
+        verify(generator, times(1)).regenerateQuizAsync(page1);
+        assertEquals(0, prefetcher.getPendingCount());
+    }
+
+    @Test
+    void prefetch_shouldNotStartCandidates_whileGeneratorIsBusy() {
+        QuizPrefetcher prefetcher = new QuizPrefetcher(generator, 1);
+        when(generator.isIdle()).thenReturn(false);
+
+        prefetcher.prefetch(page1);
+        CompletableFuture<QuizResult> next = prefetcher.next(page1);
+
+        assertSame(started.get(0), next); // generated on demand
+        verify(generator, times(1)).regenerateQuizAsync(page1);
+        assertEquals(0, prefetcher.getPendingCount());
+    }
+
+    @Test
+    void discard_shouldCancelOnlyTheCandidatesOfThatText() {
+        QuizPrefetcher prefetcher = new QuizPrefetcher(generator, 1);
+        prefetcher.prefetch(page1);
+        prefetcher.prefetch(page2);
+
+        prefetcher.discard(page1);
+
+        assertTrue(started.get(0).isCancelled());
+        assertFalse(started.get(1).isCancelled());
+        assertEquals(1, prefetcher.getPendingCount());
+    }
+
+    @Test
+    void cancelAll_shouldCancelEveryCandidate() {
+        QuizPrefetcher prefetcher = new QuizPrefetcher(generator, 2);
+        prefetcher.prefetch(page1);
+        prefetcher.prefetch(page2);
+
+        prefetcher.cancelAll();
+
+        assertTrue(started.stream().allMatch(CompletableFuture::isCancelled));
+        assertEquals(0, prefetcher.getPendingCount());
+    }
+}
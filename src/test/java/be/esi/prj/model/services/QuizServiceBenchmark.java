@@ -0,0 +1,75 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.model.orm.Folder;
+import be.esi.prj.model.orm.Question;
+import be.esi.prj.model.orm.User;
+import be.esi.prj.utils.SqliteProfile;
+import be.esi.prj.utils.UnitOfWork;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares saving questions one transaction at a time with {@link QuizService#saveAll(List)}.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Dtest=QuizServiceBenchmark}. The database is a file in a temporary
+ * directory, with the pragmas of {@link SqliteProfile#configured()}.
+ * </p>
+ */
+@Tag("benchmark")
+class QuizServiceBenchmark {
+
+    private static final int ONE_BY_ONE = 1_000;
+    private static final int BULK = 10_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void oneTransactionPerQuestionVersusSaveAll() {
+        Map<String, Object> properties = SqliteProfile.configured().toPersistenceProperties();
+        properties.put("jakarta.persistence.jdbc.url", "jdbc:sqlite:" + tempDir.resolve("quizzes.db"));
+        properties.put("hibernate.hbm2ddl.auto", "create");
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("quizAppPU", properties);
+        try {
+            UnitOfWork unitOfWork = new UnitOfWork(emf::createEntityManager);
+            User user = new User("BENCH", "password");
+            Folder folder = new Folder("Benchmark", user);
+            unitOfWork.runInTransaction(em -> {
+                em.persist(user);
+                em.persist(folder);
+            });
+            QuizService quizService = new QuizService(unitOfWork);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ONE_BY_ONE; i++) {
+                quizService.createAndSaveQuiz("Question " + i + " ?", "Réponse " + i, user, folder);
+            }
+            double oneByOne = (System.nanoTime() - start) / 1e9;
+
+            List<Question> questions = IntStream.range(0, BULK)
+                    .mapToObj(i -> new Question("Question importée " + i + " ?", "Réponse " + i, user, folder))
+                    .toList();
+            start = System.nanoTime();
+            quizService.saveAll(questions);
+            double bulk = (System.nanoTime() - start) / 1e9;
+
+            long saved = unitOfWork.read(em -> em.createQuery("SELECT COUNT(q) FROM Question q", Long.class).getSingleResult());
+            assertEquals(ONE_BY_ONE + BULK, saved);
+            System.out.printf("One transaction per question: %d in %.2f s (%.0f/s, %.0f s for %d)%n",
+                    ONE_BY_ONE, oneByOne, ONE_BY_ONE / oneByOne, oneByOne * BULK / ONE_BY_ONE, BULK);
+            System.out.printf("saveAll: %d in %.2f s (%.0f/s)%n", BULK, bulk, BULK / bulk);
+        } finally {
+            emf.close();
+        }
+    }
+}
@@ -11,6 +11,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -63,6 +64,15 @@ class QuizServiceTest {
         assertEquals(expectedQuestions, result);
     }
 
+    @Test
+    void getDueQuestionsByUserId_shouldReturnListFromRepository() {
+        List<Question> expectedQuestions = Arrays.asList(new Question(), new Question());
+
+        when(mockRepository.getDueQuestions(1, 7)).thenReturn(expectedQuestions);
+
+        assertEquals(expectedQuestions, quizService.getDueQuestions(1, 7));
+    }
+
     @Test
     void createAndSaveQuiz_shouldRollbackTransaction_whenExceptionOccurs() {
         User user = new User();
@@ -79,4 +89,54 @@ class QuizServiceTest {
         verify(mockTransaction).rollback(); // Vérifie que le rollback a été déclenché
     }
 
+    @Test
+    void saveAll_shouldCommitOncePerChunk() {
+        List<Question> questions = IntStream.range(0, QuizService.SAVE_CHUNK_SIZE * 2 + 1)
+                .mapToObj(i -> new Question("Q" + i, "A" + i, new User(), new Folder()))
+                .toList();
+
+        quizService.saveAll(questions);
+
+        verify(mockRepository).saveAll(questions.subList(0, QuizService.SAVE_CHUNK_SIZE));
+        verify(mockRepository).saveAll(questions.subList(QuizService.SAVE_CHUNK_SIZE, QuizService.SAVE_CHUNK_SIZE * 2));
+        verify(mockRepository).saveAll(questions.subList(QuizService.SAVE_CHUNK_SIZE * 2, questions.size()));
+        verify(mockTransaction, times(3)).commit();
+    }
+
+    @Test
+    void saveAll_shouldKeepCommittedChunks_whenALaterChunkFails() {
+        List<Question> questions = IntStream.range(0, QuizService.SAVE_CHUNK_SIZE + 1)
+                .mapToObj(i -> new Question("Q" + i, "A" + i, new User(), new Folder()))
+                .toList();
+        doNothing().doThrow(new RuntimeException("disk full")).when(mockRepository).saveAll(anyList());
+        when(mockTransaction.isActive()).thenReturn(true);
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> quizService.saveAll(questions));
+
+        assertTrue(ex.getMessage().contains("questions " + QuizService.SAVE_CHUNK_SIZE));
+        verify(mockTransaction, times(1)).commit();
+        verify(mockTransaction, times(1)).rollback();
+    }
+
+    @Test
+    void saveAllForUserId_shouldGiveEveryQuestionAReferenceToTheUser() {
+        User reference = new User();
+        when(mockEm.getReference(User.class, 7)).thenReturn(reference);
+        List<Question> questions = List.of(new Question("Q1", "A1", null, new Folder()),
+                new Question("Q2", "A2", null, new Folder()));
+
+        quizService.saveAll(questions, 7);
+
+        assertTrue(questions.stream().allMatch(question -> question.getUser() == reference));
+        verify(mockRepository).saveAll(questions);
+        verify(mockTransaction).commit();
+    }
+
+    @Test
+    void getQuestionTextsByUserId_shouldReturnListFromRepository() {
+        when(mockRepository.getQuestionTexts(7)).thenReturn(List.of("Q1 A1"));
+
+        assertEquals(List.of("Q1 A1"), quizService.getQuestionTexts(7));
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package be.esi.prj.model.services;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuizStreamParserTest {
+
+    @Test
+    void acceptLine_shouldEmitEachQuizWhenItsObjectCloses() {
+        List<String> quizzes = new ArrayList<>();
+        QuizStreamParser parser = new QuizStreamParser(2, (index, question, answer) -> quizzes.add(index + ":" + question));
+
+        parser.acceptLine(event("[{\"index\": 0, \"question\": \"Pourquoi \\\"}\\\" ?"));
+        parser.acceptLine("");
+        assertTrue(quizzes.isEmpty());
+
+        parser.acceptLine(event("\", \"answer\": \"Parce que\"}, {\"index\": 1,"));
+        parser.acceptLine("");
+        assertEquals(List.of("0:Pourquoi \"}\" ?"), quizzes);
+
+        parser.acceptLine(event(" \"question\": \"Q1\", \"answer\": null}]"));
+        parser.acceptLine("");
+        assertEquals(List.of("0:Pourquoi \"}\" ?", "1:Q1"), quizzes);
+    }
+
+    @Test
+    void onSubscribe_shouldRestartTextButNotEmitQuizzesTwice() {
+        List<Integer> indexes = new ArrayList<>();
+        QuizStreamParser parser = new QuizStreamParser(3, (index, question, answer) -> indexes.add(index));
+
+        parser.onSubscribe(new NoOpSubscription());
+        parser.onNext(event("[{\"index\": 0, \"question\": \"Q0\"}, {\"index\": 1, \"quest"));
+        parser.onNext("");
+        parser.onSubscribe(new NoOpSubscription()); // retried request
+        parser.onNext(event("[{\"index\": 0, \"question\": \"Q0\"}, {\"index\": 1, \"question\": \"Q1\"},"));
+        parser.onNext(event(" {\"index\": 7, \"question\": \"hors lot\"}, {\"index\": 2, \"question\": null}]"));
+        parser.onComplete();
+
+        assertEquals(List.of(0, 1), indexes);
+        assertFalse(parser.hasReceived(2));
+    }
+
+    /**
+     * Wraps a fragment of model text in a streamGenerateContent event.
+     */
+    private static String event(String modelText) {
+        JsonObject part = new JsonObject();
+        part.addProperty("text", modelText);
+        return "data: {\"candidates\": [{\"content\": {\"parts\": [" + part + "], \"role\": \"model\"}}],"
+                + " \"usageMetadata\": {\"promptTokenCount\": 12}}";
+    }
+
+    private static final class NoOpSubscription implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.model.orm.DifficultyLevel;
+import be.esi.prj.model.orm.Folder;
+import be.esi.prj.model.orm.Question;
+import be.esi.prj.model.orm.ReviewHistory;
+import be.esi.prj.model.orm.User;
+import be.esi.prj.model.repository.ReviewHistoryRepository;
+import be.esi.prj.utils.UnitOfWork;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReviewJournalTest {
+
+    // Pas de sauvegarde en arrière-plan pendant les tests : l'EntityManager partagé n'est pas thread-safe
+    private static final int NEVER = Integer.MAX_VALUE;
+    private static final Duration ONE_HOUR = Duration.ofHours(1);
+
+    private static EntityManagerFactory emf;
+    private static EntityManager em;
+
+    @TempDir
+    Path tempDir;
+
+    private Path journalFile;
+    private ReviewJournal journal;
+    private User user;
+    private Question question;
+
+    @BeforeAll
+    public static void setupClass() {
+        emf = Persistence.createEntityManagerFactory("testPU");
+        em = emf.createEntityManager();
+    }
+
+    @BeforeEach
+    public void setup() {
+        journalFile = tempDir.resolve("review-journal.log");
+        journal = new ReviewJournal(UnitOfWork.of(em), journalFile, NEVER, ONE_HOUR);
+
+        em.getTransaction().begin();
+        new ReviewHistoryRepository(em).ensureUniqueIndex();
+        user = new User("journal_" + System.nanoTime(), "password123");
+        em.persist(user);
+        Folder folder = new Folder("Journal", user);
+        em.persist(folder);
+        question = new Question("What is a journal?", "An append-only log", user, folder);
+        em.persist(question);
+        em.getTransaction().commit();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        journal.close();
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+        if (em != null && em.isOpen()) {
+            em.close();
+        }
+        if (emf != null && emf.isOpen()) {
+            emf.close();
+        }
+    }
+
+    @Test
+    public void testRecord_isWrittenToTheFileButNotToTheDatabase() throws IOException {
+        journal.record(grade(DifficultyLevel.GOOD, 4));
+
+        assertEquals(1, journal.getPendingCount());
+        assertEquals(1, Files.readAllLines(journalFile).size());
+        assertNull(findHistory());
+    }
+
+    @Test
+    public void testFlush_savesTheLastGradeOfEachQuestionAndEmptiesTheJournal() {
+        journal.record(grade(DifficultyLevel.AGAIN, 0));
+        journal.record(grade(DifficultyLevel.GOOD, 4));
+        journal.flush();
+
+        ReviewHistory history = findHistory();
+        assertNotNull(history);
+        assertEquals(DifficultyLevel.GOOD, history.getDifficulty());
+        assertEquals(LocalDate.now().plusDays(4), history.getNextReviewDate());
+        assertEquals(DifficultyLevel.GOOD, em.find(Question.class, question.getQuestionId()).getDifficulty());
+        assertEquals(0, journal.getPendingCount());
+        assertFalse(Files.exists(journalFile));
+
+        // Une note suivante met à jour l'historique existant
+        journal.record(grade(DifficultyLevel.EASY, 9));
+        journal.flush();
+        assertEquals(DifficultyLevel.EASY, findHistory().getDifficulty());
+    }
+
+    @Test
+    public void testRecover_savesTheGradesLeftByACrash() throws IOException {
+        journal.record(grade(DifficultyLevel.HARD, 2));
+        // Ligne coupée par l'arrêt brutal
+        Files.writeString(journalFile, Files.readString(journalFile) + question.getQuestionId() + "\t" + user.getUserId() + "\tEA");
+
+        ReviewJournal restarted = new ReviewJournal(UnitOfWork.of(em), journalFile, NEVER, ONE_HOUR);
+        try {
+            restarted.recover();
+
+            ReviewHistory history = findHistory();
+            assertNotNull(history);
+            assertEquals(DifficultyLevel.HARD, history.getDifficulty());
+            assertEquals(0, restarted.getPendingCount());
+            assertFalse(Files.exists(journalFile));
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    public void testRecover_withoutJournalFile_doesNothing() {
+        journal.recover();
+
+        assertEquals(0, journal.getPendingCount());
+        assertNull(findHistory());
+    }
+
+    @Test
+    public void testGradeLine_roundTrips() {
+        ReviewGrade grade = grade(DifficultyLevel.EASY, 7);
+
+        assertEquals(grade, ReviewGrade.parse(grade.toLine()));
+        assertThrows(IllegalArgumentException.class, () -> ReviewGrade.parse("12\t3\tEASY"));
+    }
+
+    private ReviewGrade grade(DifficultyLevel difficulty, int days) {
+        return new ReviewGrade(question.getQuestionId(), user.getUserId(), difficulty,
+                LocalDate.now(), LocalDate.now().plusDays(days), 2.5);
+    }
+
+    private ReviewHistory findHistory() {
+        em.clear();
+        return new ReviewHistoryRepository(em).findReviewHistories(List.of(question.getQuestionId()), user.getUserId())
+                .get(question.getQuestionId());
+    }
+}
@@ -0,0 +1,98 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.model.orm.DifficultyLevel;
+import be.esi.prj.model.orm.Folder;
+import be.esi.prj.model.orm.Question;
+import be.esi.prj.model.orm.User;
+import be.esi.prj.model.repository.ReviewHistoryRepository;
+import be.esi.prj.utils.SqliteProfile;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares the commit latency of review saves with the SQLite defaults and with the tuned profile.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Dtest=ReviewServiceBenchmark}. Each profile gets its own database
+ * file in a temporary directory, on the disk holding {@code java.io.tmpdir}: the gap depends on how
+ * expensive an fsync is there.
+ * </p>
+ */
+@Tag("benchmark")
+class ReviewServiceBenchmark {
+
+    private static final int QUESTIONS = 50;
+    private static final int WARM_UP_SAVES = 20;
+    private static final int SAVES = 300;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void defaultPragmasVersusTunedProfile() {
+        for (SqliteProfile profile : SqliteProfile.values()) {
+            double[] latencies = measureSaves(profile);
+            Arrays.sort(latencies);
+            System.out.printf("Review save with %s pragmas: mean %.2f ms, median %.2f ms, p95 %.2f ms (%d saves)%n",
+                    profile, Arrays.stream(latencies).average().orElse(0),
+                    latencies[latencies.length / 2], latencies[(int) (latencies.length * 0.95)], latencies.length);
+        }
+    }
+
+    private double[] measureSaves(SqliteProfile profile) {
+        Map<String, Object> properties = profile.toPersistenceProperties();
+        properties.put("jakarta.persistence.jdbc.url", "jdbc:sqlite:" + tempDir.resolve(profile + ".db"));
+        properties.put("hibernate.hbm2ddl.auto", "create");
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("quizAppPU", properties);
+        try (EntityManager em = emf.createEntityManager()) {
+            String journalMode = em.createNativeQuery("PRAGMA journal_mode").getSingleResult().toString();
+            assertEquals(profile.getPragmas().get("journal_mode"), journalMode.toUpperCase());
+
+            User user = new User("BENCH", "password");
+            Folder folder = new Folder("Benchmark", user);
+            List<Question> questions = new ArrayList<>();
+            em.getTransaction().begin();
+            em.persist(user);
+            em.persist(folder);
+            for (int i = 0; i < QUESTIONS; i++) {
+                Question question = new Question("Question " + i + " ?", "Réponse " + i, user, folder);
+                em.persist(question);
+                questions.add(question);
+            }
+            em.getTransaction().commit();
+            em.clear();
+
+            UserService userService = mock(UserService.class);
+            when(userService.getCurrentUserId()).thenReturn(user.getUserId());
+            ReviewService reviewService = new ReviewService(em, new ReviewHistoryRepository(em), userService);
+            DifficultyLevel[] levels = DifficultyLevel.values();
+
+            double[] latencies = new double[SAVES];
+            for (int i = 0; i < WARM_UP_SAVES + SAVES; i++) {
+                long start = System.nanoTime();
+                reviewService.save(questions.get(i % QUESTIONS), levels[i % levels.length]);
+                long elapsed = System.nanoTime() - start;
+                em.clear();
+                if (i >= WARM_UP_SAVES) {
+                    latencies[i - WARM_UP_SAVES] = elapsed / 1e6;
+                }
+            }
+            return latencies;
+        } finally {
+            emf.close();
+        }
+    }
+}
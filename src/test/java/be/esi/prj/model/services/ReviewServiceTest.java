@@ -9,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.*;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -39,13 +40,14 @@ public class ReviewServiceTest {
         mockQuestion = new Question();
         mockQuestion.setQuestionId(100L);
 
-        when(userService.getCurrentUser()).thenReturn(mockUser);
+        when(userService.getCurrentUserId()).thenReturn(1);
         when(em.getTransaction()).thenReturn(transaction);
+        when(em.getReference(User.class, 1)).thenReturn(mockUser);
     }
 
     @Test
     public void testSave_NewReviewHistory_CreatedAndSaved() {
-        when(reviewRepository.findReviewHistory(mockQuestion, mockUser)).thenReturn(null);
+        when(reviewRepository.findReviewHistory(100L, 1)).thenReturn(null);
 
         reviewService.save(mockQuestion, DifficultyLevel.GOOD);
 
@@ -67,7 +69,7 @@ public class ReviewServiceTest {
         existing.setEaseFactor(2.5);
         existing.setDifficulty(DifficultyLevel.HARD);
 
-        when(reviewRepository.findReviewHistory(mockQuestion, mockUser)).thenReturn(existing);
+        when(reviewRepository.findReviewHistory(100L, 1)).thenReturn(existing);
 
         reviewService.save(mockQuestion, DifficultyLevel.EASY);
 
@@ -79,8 +81,9 @@ public class ReviewServiceTest {
 
     @Test
     void testSave_TransactionFails_ShouldRollback() {
-        when(reviewRepository.findReviewHistory(mockQuestion, mockUser)).thenReturn(null);
+        when(reviewRepository.findReviewHistory(100L, 1)).thenReturn(null);
         doThrow(RuntimeException.class).when(reviewRepository).save(any());
+        when(transaction.isActive()).thenReturn(true);
 
         assertThrows(RuntimeException.class, () ->
                 reviewService.save(mockQuestion, DifficultyLevel.GOOD)
@@ -92,7 +95,7 @@ public class ReviewServiceTest {
 
     @Test
     public void testSave_NewReviewHistory_CreatedAndSaved_GoodDifficulty() {
-        when(reviewRepository.findReviewHistory(mockQuestion, mockUser)).thenReturn(null);
+        when(reviewRepository.findReviewHistory(100L, 1)).thenReturn(null);
 
         reviewService.save(mockQuestion, DifficultyLevel.GOOD);
 
@@ -115,7 +118,7 @@ public class ReviewServiceTest {
         existing.setNextReviewDate(LocalDate.now());
         existing.setEaseFactor(2.5);
 
-        when(reviewRepository.findReviewHistory(mockQuestion, mockUser)).thenReturn(existing);
+        when(reviewRepository.findReviewHistory(100L, 1)).thenReturn(existing);
 
         reviewService.save(mockQuestion, DifficultyLevel.HARD);
 
@@ -130,15 +133,15 @@ public class ReviewServiceTest {
     @Test
     void testGetRemainingReviewTimes_WithHistory_ReturnsCorrectDays() {
         Question question = new Question();
-        User user = new User();
-        when(userService.getCurrentUser()).thenReturn(user);
+        question.setQuestionId(200L);
+        when(userService.getCurrentUserId()).thenReturn(2);
 
         ReviewHistory history = new ReviewHistory();
         history.setReviewDate(LocalDate.now().minusDays(2));  // reviewed 2 days ago
         history.setNextReviewDate(LocalDate.now());           // scheduled for today
         history.setEaseFactor(2.5);                            // default ease
 
-        when(reviewRepository.findReviewHistory(question, user)).thenReturn(history);
+        when(reviewRepository.findReviewHistory(200L, 2)).thenReturn(history);
 
         // When
         Map<DifficultyLevel, String> result = reviewService.getRemainingReviewTimes(question);
@@ -149,4 +152,52 @@ public class ReviewServiceTest {
         assertEquals("8d", result.get(DifficultyLevel.EASY));
     }
 
+    @Test
+    void testPreload_SessionQuestionsAreNotLookedUpAgain() {
+        Question reviewed = new Question();
+        reviewed.setQuestionId(101L);
+        ReviewHistory history = new ReviewHistory();
+        history.setReviewDate(LocalDate.now().minusDays(2));
+        history.setNextReviewDate(LocalDate.now());
+        history.setEaseFactor(2.5);
+        when(reviewRepository.findReviewHistories(List.of(100L, 101L), 1)).thenReturn(Map.of(101L, history));
+
+        reviewService.preload(List.of(mockQuestion, reviewed));
+        assertEquals("2d", reviewService.getRemainingReviewTimes(reviewed).get(DifficultyLevel.HARD));
+        reviewService.save(reviewed, DifficultyLevel.HARD);
+        reviewService.getRemainingReviewTimes(mockQuestion);
+        reviewService.save(mockQuestion, DifficultyLevel.GOOD);
+        // Le nouvel historique est réutilisé par la carte suivante
+        reviewService.save(mockQuestion, DifficultyLevel.EASY);
+
+        verify(reviewRepository, never()).findReviewHistory(anyLong(), anyInt());
+        verify(reviewRepository, times(1)).save(any());
+        verify(em).merge(history);
+        assertEquals(DifficultyLevel.HARD, history.getDifficulty());
+    }
+
+    @Test
+    void testSave_WithJournal_RecordsGradeWithoutTransaction() {
+        ReviewJournal journal = mock(ReviewJournal.class);
+        ReviewService journaled = new ReviewService(em, reviewRepository, userService, journal);
+        journaled.preload(List.of(mockQuestion));
+
+        journaled.save(mockQuestion, DifficultyLevel.GOOD);
+        journaled.save(mockQuestion, DifficultyLevel.EASY);
+
+        ArgumentCaptor<ReviewGrade> captor = ArgumentCaptor.forClass(ReviewGrade.class);
+        verify(journal, times(2)).record(captor.capture());
+        ReviewGrade first = captor.getAllValues().get(0);
+        ReviewGrade second = captor.getAllValues().get(1);
+        assertEquals(new ReviewGrade(100L, 1, DifficultyLevel.GOOD, LocalDate.now(), LocalDate.now().plusDays(4), 2.6), first);
+        // La deuxième note part de l'historique gardé en mémoire
+        assertEquals(DifficultyLevel.EASY, second.difficulty());
+        assertEquals(2.8, second.easeFactor(), 1e-9);
+        assertEquals(DifficultyLevel.EASY, mockQuestion.getDifficulty());
+        verify(reviewRepository, never()).save(any());
+        verify(transaction, never()).begin();
+
+        journaled.flushPendingReviews();
+        verify(journal).flush();
+    }
 }
@@ -0,0 +1,177 @@
+package be.esi.prj.model.services;
+
+import be.esi.prj.model.orm.DifficultyLevel;
+import be.esi.prj.model.orm.Folder;
+import be.esi.prj.model.orm.Question;
+import be.esi.prj.model.orm.User;
+import be.esi.prj.model.repository.ReviewHistoryRepository;
+import be.esi.prj.utils.SqliteProfile;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares saving a grade with {@link ReviewService#save} (SELECT of the history, then persist or two merges)
+ * and with {@link ReviewHistoryRepository#upsert}, one transaction per grade, then lets two writers grade the
+ * same cards at the same time with each approach.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Dtest=ReviewUpsertBenchmark}. The database is a file in a temporary
+ * directory, with the pragmas of {@link SqliteProfile#configured()}.
+ * </p>
+ */
+@Tag("benchmark")
+class ReviewUpsertBenchmark {
+
+    private static final int QUESTIONS = 50;
+    private static final int WARM_UP_SAVES = 50;
+    private static final int SAVES = 500;
+    private static final int CONCURRENT_CARDS = 20;
+    private static final int WRITERS = 2;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void findThenSaveVersusUpsert() throws Exception {
+        Map<String, Object> properties = SqliteProfile.configured().toPersistenceProperties();
+        properties.put("jakarta.persistence.jdbc.url", "jdbc:sqlite:" + tempDir.resolve("reviews.db"));
+        properties.put("hibernate.hbm2ddl.auto", "create");
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("quizAppPU", properties);
+        try (EntityManager em = emf.createEntityManager()) {
+            em.getTransaction().begin();
+            new ReviewHistoryRepository(em).ensureUniqueIndex();
+            User user = new User("BENCH", "password");
+            em.persist(user);
+            Folder folder = new Folder("Benchmark", user);
+            em.persist(folder);
+            List<Question> current = questions(em, user, folder, "Current");
+            List<Question> upserted = questions(em, user, folder, "Upsert");
+            em.getTransaction().commit();
+            em.clear();
+
+            UserService userService = mock(UserService.class);
+            when(userService.getCurrentUserId()).thenReturn(user.getUserId());
+            ReviewService reviewService = new ReviewService(em, new ReviewHistoryRepository(em), userService);
+            DifficultyLevel[] levels = DifficultyLevel.values();
+
+            double[] findThenSave = measure(i -> {
+                reviewService.save(current.get(i % QUESTIONS), levels[i % levels.length]);
+                em.clear();
+            });
+            ReviewHistoryRepository repository = new ReviewHistoryRepository(em);
+            double[] upsert = measure(i -> {
+                em.getTransaction().begin();
+                repository.upsert(upserted.get(i % QUESTIONS).getQuestionId(), user.getUserId(),
+                        levels[i % levels.length], LocalDate.now(), LocalDate.now().plusDays(i % 10), 2.5);
+                em.getTransaction().commit();
+            });
+            print("find + persist/merge", findThenSave);
+            print("upsert", upsert);
+
+            // Deux écrivains notent les mêmes cartes, chacun avec sa connexion
+            List<Question> cards = current.subList(0, CONCURRENT_CARDS);
+            AtomicInteger failedSaves = new AtomicInteger();
+            runConcurrently(emf, (writerEm, i) -> {
+                ReviewService writer = new ReviewService(writerEm, new ReviewHistoryRepository(writerEm), userService);
+                try {
+                    writer.save(cards.get(i % CONCURRENT_CARDS), DifficultyLevel.GOOD);
+                } catch (RuntimeException e) {
+                    failedSaves.incrementAndGet();
+                }
+                writerEm.clear();
+            });
+            List<Question> upsertCards = upserted.subList(0, CONCURRENT_CARDS);
+            runConcurrently(emf, (writerEm, i) -> {
+                writerEm.getTransaction().begin();
+                new ReviewHistoryRepository(writerEm).upsert(upsertCards.get(i % CONCURRENT_CARDS).getQuestionId(),
+                        user.getUserId(), DifficultyLevel.GOOD, LocalDate.now(), LocalDate.now().plusDays(4), 2.6);
+                writerEm.getTransaction().commit();
+            });
+            long upsertHistories = ((Number) em.createNativeQuery(
+                    "SELECT COUNT(*) FROM ReviewHistory rh JOIN Question q ON q.questionId = rh.question_Id WHERE q.questionText LIKE 'Upsert%'")
+                    .getSingleResult()).longValue();
+            assertEquals(QUESTIONS, upsertHistories);
+            System.out.printf("%d writers x %d grades on %d cards: find + persist/merge failed %d saves, upsert failed none (%d histories)%n",
+                    WRITERS, SAVES, CONCURRENT_CARDS, failedSaves.get(), upsertHistories);
+        } finally {
+            emf.close();
+        }
+    }
+
+    private static List<Question> questions(EntityManager em, User user, Folder folder, String prefix) {
+        List<Question> questions = new ArrayList<>();
+        for (int i = 0; i < QUESTIONS; i++) {
+            Question question = new Question(prefix + " question " + i + " ?", "Réponse " + i, user, folder);
+            em.persist(question);
+            questions.add(question);
+        }
+        return questions;
+    }
+
+    private interface Grade {
+        void run(int i);
+    }
+
+    private interface WriterGrade {
+        void run(EntityManager em, int i);
+    }
+
+    private static double[] measure(Grade grade) {
+        double[] latencies = new double[SAVES];
+        for (int i = 0; i < WARM_UP_SAVES + SAVES; i++) {
+            long start = System.nanoTime();
+            grade.run(i);
+            long elapsed = System.nanoTime() - start;
+            if (i >= WARM_UP_SAVES) {
+                latencies[i - WARM_UP_SAVES] = elapsed / 1e6;
+            }
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static void runConcurrently(EntityManagerFactory emf, WriterGrade grade) throws Exception {
+        ExecutorService writers = Executors.newFixedThreadPool(WRITERS);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                done.add(writers.submit(() -> {
+                    try (EntityManager em = emf.createEntityManager()) {
+                        for (int i = 0; i < SAVES; i++) {
+                            grade.run(em, i);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> writer : done) {
+                writer.get();
+            }
+        } finally {
+            writers.shutdown();
+        }
+    }
+
+    private static void print(String name, double[] latencies) {
+        System.out.printf("Review save with %s: mean %.2f ms, median %.2f ms, p95 %.2f ms (%d saves)%n",
+                name, Arrays.stream(latencies).average().orElse(0),
+                latencies[latencies.length / 2], latencies[(int) (latencies.length * 0.95)], latencies.length);
+    }
+}
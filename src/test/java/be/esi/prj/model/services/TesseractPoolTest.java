@@ -0,0 +1,83 @@
+package be.esi.prj.model.services;
+
+import net.sourceforge.tess4j.Tesseract;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TesseractPoolTest {
+
+    @Test
+    void borrow_shouldReuseReleasedEngine() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        TesseractPool pool = new TesseractPool(2, Duration.ofMinutes(1), () -> {
+            created.incrementAndGet();
+            return mock(Tesseract.class);
+        });
+
+        Tesseract first = pool.borrow();
+        pool.release(first);
+        Tesseract second = pool.borrow();
+
+        assertSame(first, second);
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    void borrow_shouldInitializeEngineOnlyWhenCreated() throws Exception {
+        TesseractPool pool = new TesseractPool(1, Duration.ofMinutes(1), () -> mock(ReusableTesseract.class));
+
+        Tesseract engine = pool.borrow();
+        pool.release(engine);
+        pool.release(pool.borrow());
+
+        verify((ReusableTesseract) engine, times(1)).initialize();
+    }
+
+    @Test
+    void borrow_shouldBlockWhenAllEnginesAreInUse() throws Exception {
+        TesseractPool pool = new TesseractPool(1, Duration.ofMinutes(1), () -> mock(Tesseract.class));
+        Tesseract engine = pool.borrow();
+
+        CompletableFuture<Tesseract> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.borrow();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS));
+        pool.release(engine);
+        assertSame(engine, waiting.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void borrow_shouldGiveThePermitBack_whenFactoryFails() {
+        TesseractPool pool = new TesseractPool(1, Duration.ofMinutes(1), () -> {
+            throw new RuntimeException("Unable to find Tesseract trained data directory!");
+        });
+
+        assertThrows(RuntimeException.class, pool::borrow);
+        assertThrows(RuntimeException.class, pool::borrow); // would block if the permit was lost
+    }
+
+    @Test
+    void evictIdleEngines_shouldCloseExpiredEngines() throws Exception {
+        TesseractPool pool = new TesseractPool(1, Duration.ZERO, () -> mock(ReusableTesseract.class));
+        Tesseract engine = pool.borrow();
+        pool.release(engine);
+
+        pool.evictIdleEngines();
+
+        assertEquals(0, pool.getIdleCount());
+        verify((ReusableTesseract) engine).close();
+    }
+}
@@ -0,0 +1,63 @@
+package be.esi.prj.model.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextSegmenterTest {
+
+    @Test
+    void segment_shouldKeepShortTextAsOnePassage() {
+        TextSegmenter segmenter = new TextSegmenter(100, 5);
+
+        assertEquals(List.of("Une phrase courte."), segmenter.segment("  Une phrase courte.\n"));
+        assertEquals(List.of(), segmenter.segment(" \n "));
+    }
+
+    @Test
+    void segment_shouldGroupParagraphsWithinBudget() {
+        String paragraph = "a".repeat(30) + "."; // 8 tokens
+        String text = String.join("\n\n", paragraph, paragraph, paragraph, paragraph);
+        TextSegmenter segmenter = new TextSegmenter(20, 5);
+
+        List<String> passages = segmenter.segment(text);
+
+        assertEquals(List.of(paragraph + "\n\n" + paragraph, paragraph + "\n\n" + paragraph), passages);
+    }
+
+    @Test
+    void segment_shouldCutLongParagraphBetweenSentences() {
+        String sentence = "Le mot " + "b".repeat(30) + " est long."; // 12 tokens
+        String paragraph = String.join(" ", sentence, sentence, sentence);
+        TextSegmenter segmenter = new TextSegmenter(20, 5);
+
+        List<String> passages = segmenter.segment(paragraph);
+
+        assertEquals(3, passages.size());
+        assertTrue(passages.stream().allMatch(passage -> passage.equals(sentence)), passages.toString());
+    }
+
+    @Test
+    void segment_shouldEnlargePassages_whenPageWouldGiveTooManyQuizzes() {
+        String paragraph = "c".repeat(39) + "."; // 10 tokens
+        String text = String.join("\n\n", List.of(paragraph, paragraph, paragraph, paragraph, paragraph, paragraph));
+        TextSegmenter segmenter = new TextSegmenter(10, 2);
+
+        List<String> passages = segmenter.segment(text);
+
+        assertEquals(2, passages.size());
+        assertTrue(passages.stream().allMatch(passage -> TextSegmenter.estimateTokens(passage) <= 35), passages.toString());
+    }
+
+    @Test
+    void segment_shouldMergeTinyLastPassage() {
+        String paragraph = "d".repeat(79) + "."; // 20 tokens
+        TextSegmenter segmenter = new TextSegmenter(20, 5);
+
+        List<String> passages = segmenter.segment(paragraph + "\n\n" + paragraph + "\n\nFin.");
+
+        assertEquals(List.of(paragraph, paragraph + "\n\nFin."), passages);
+    }
+}
@@ -163,6 +163,45 @@ public class UserServiceTest {
         assertFalse(result);
         assertEquals("Registration failed: Database error", userService.getMessage());
     }
-}
 
+    @Test
+    public void testAuthenticateUser_keepsSessionWithoutFurtherQueries() {
+        String username = "testuser";
+        String password = "password123";
+        User user = new User(username, userService.hashPassword(password));
+        user.setUserId(42);
+        when(userRepository.getUserByUsername(username.toUpperCase())).thenReturn(user);
+
+        assertTrue(userService.authenticateUser(username, password));
 
+        assertEquals(new UserSession(42, username.toUpperCase()), userService.getSession());
+        assertEquals(42, userService.getCurrentUserId());
+        verify(userRepository, times(1)).getUserByUsername(anyString());
+    }
+
+    @Test
+    public void testGetCurrentUser_loadsUserBySessionId() {
+        String username = "testuser";
+        String password = "password123";
+        User user = new User(username, userService.hashPassword(password));
+        user.setUserId(42);
+        when(userRepository.getUserByUsername(username.toUpperCase())).thenReturn(user);
+        when(userRepository.findById(42)).thenReturn(user);
+        userService.authenticateUser(username, password);
+
+        assertSame(user, userService.getCurrentUser());
+    }
+
+    @Test
+    public void testLogout_dropsSession() {
+        String username = "testuser";
+        String password = "password123";
+        when(userRepository.getUserByUsername(username.toUpperCase()))
+                .thenReturn(new User(username, userService.hashPassword(password)));
+        userService.authenticateUser(username, password);
+
+        userService.logout();
+
+        assertThrows(IllegalStateException.class, () -> userService.getCurrentUserId());
+    }
+}